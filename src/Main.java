@@ -3,33 +3,147 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.List;
 
+import org.ini4j.Profile.Section;
 import org.ini4j.Wini;
 
 import nn.NeuralNetworkBase;
+import nn.Precision;
+import env.ComparisonRunner;
+import env.Coordinator;
+import env.ElitistSelection;
 import env.Environment;
+import env.FitnessCache;
+import env.Parameters;
+import env.PrecisionCheck;
+import env.RankSelection;
+import env.SelectionStrategy;
+import env.Species;
+import env.SweepRunner;
+import env.TournamentSelection;
+import env.TrialEvaluator;
+import env.TrialEvolution;
+import env.TruncationSelection;
+import env.Worker;
 
 /**
  * Main class for the simulation. Creates an environment with prey and
  * predator neural network bases constructed from external files.
  * 
+ * Run with the argument "trials" to evolve prey headlessly instead, evaluating each
+ * generation with seeded trials, with the arguments "sweep spec.ini" to run a parameter
+ * sweep, or with the argument "compare" to compare prey neural networks. The argument
+ * "cluster" runs the island model across worker processes, which are started with the
+ * arguments "worker host:port". The argument "benchmark" times the prey sensor pass with
+ * prey in random order and sorted by location, and the argument "compile" reports the work
+ * removed from each network update by the network compiler. The argument "precision"
+ * measures how far prey results drift when the networks use a lower precision.
+ * 
  * @author Justin Morgan
  *
  */
 public class Main {
 	public static void main(String[] args) {
+		// Workers get everything they need from the coordinator
+		if (args.length > 1 && args[0].equals("worker")) {
+			int colon = args[1].lastIndexOf(':');
+			try {
+				if (colon < 0)
+					throw new NumberFormatException("No port given");
+				Worker worker = new Worker(args[1].substring(0, colon), Integer.parseInt(args[1].substring(colon + 1)));
+				worker.run();
+				if (worker.hasFailed())
+					System.exit(1);
+			} catch (NumberFormatException e) {
+				System.err.println("Usage: worker host:port (" + e.getMessage() + ")");
+				System.exit(1);
+			}
+			return;
+		}
+		
 		NeuralNetworkBase prey_nn_base = null, predator_nn_base = null;
 		String prey_nn_file = null, predator_nn_file = null;
+		SelectionStrategy selection = null;
+		Precision precision = Precision.DOUBLE;
+		boolean steady_state = false, evolve_predators = false;
+		int fitness_window = -1, corpse_timeout = -1;
+		FitnessCache fitness_cache = null;
+		File fitness_cache_file = null;
+		Parameters params = new Parameters();
+		Wini config = null;
 		try {
 			
 			// Read config.ini
-			Wini config = new Wini(new File("config.ini"));
+			config = new Wini(new File("config.ini"));
 			prey_nn_file = config.get("NN", "prey_nn");
 			predator_nn_file = config.get("NN", "predator_nn");
+			selection = parseSelection(config);
+			precision = parsePrecision(config.get("NN", "precision"));
+			parseParameters(config, params);
+			
+			String mode = config.get("Evolution", "mode");
+			if (mode != null && mode.trim().equalsIgnoreCase("steady"))
+				steady_state = true;
+			else if (mode != null && !mode.trim().equalsIgnoreCase("generational"))
+				throw new IOException("Unknown evolution mode \"" + mode.trim() + "\"");
+			String predators = config.get("Evolution", "predators");
+			if (predators != null && predators.trim().equalsIgnoreCase("evolve"))
+				evolve_predators = true;
+			else if (predators != null && !predators.trim().equalsIgnoreCase("random"))
+				throw new IOException("Unknown predator mode \"" + predators.trim() + "\"");
+			fitness_window = getInt(config, "Evolution", "fitness_window", -1);
+			corpse_timeout = getInt(config, "Evolution", "corpse_timeout", -1);
+			
+			String cache_policy = config.get("Cache", "policy");
+			if (cache_policy != null) {
+				fitness_cache = new FitnessCache(getInt(config, "Cache", "size", 4096), parseCachePolicy(cache_policy));
+				String cache_file = config.get("Cache", "file");
+				if (cache_file != null) {
+					fitness_cache_file = new File(cache_file.trim());
+					if (fitness_cache_file.exists())
+						fitness_cache.load(fitness_cache_file);
+				}
+			}
 			
 		} catch (IOException e) {
 			System.err.println("Error parsing config.ini: " + e.getMessage());
 			System.exit(1);
+		} catch (NumberFormatException e) {
+			System.err.println("Error parsing config.ini: " + e.getMessage());
+			System.exit(1);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Error parsing config.ini: " + e.getMessage());
+			System.exit(1);
+		}
+		
+		if (args.length > 0 && args[0].equals("cluster")) {
+			try {
+				runCluster(config, prey_nn_file, predator_nn_file, params);
+			} catch (IOException e) {
+				System.err.println("Error in cluster run: " + e.getMessage());
+				System.exit(1);
+			} catch (NumberFormatException e) {
+				System.err.println("Error parsing config.ini: " + e.getMessage());
+				System.exit(1);
+			}
+			return;
+		}
+		
+		if (args.length > 1 && args[0].equals("sweep")) {
+			try {
+				runSweep(new Wini(new File(args[1])), prey_nn_file, predator_nn_file, params);
+			} catch (IOException e) {
+				System.err.println("Error in sweep: " + e.getMessage());
+				System.exit(1);
+			} catch (IllegalArgumentException e) {
+				System.err.println("Error parsing " + args[1] + ": " + e.getMessage());
+				System.exit(1);
+			} catch (IllegalStateException e) {
+				System.err.println("Error parsing " + args[1] + ": " + e.getMessage());
+				System.exit(1);
+			}
+			return;
 		}
 			
 		try {
@@ -64,11 +178,510 @@ public class Main {
 			System.exit(1);
 		}
 		
+		params.applyTo(prey_nn_base);
+		params.applyTo(predator_nn_base);
+		prey_nn_base.precision = precision;
+		predator_nn_base.precision = precision;
+		
+		if (args.length > 0 && args[0].equals("precision")) {
+			try {
+				runPrecisionCheck(config, prey_nn_file, predator_nn_base, params);
+			} catch (IOException e) {
+				System.err.println("Error in precision check: " + e.getMessage());
+				System.exit(1);
+			} catch (ParseException e) {
+				System.err.println("Error parsing network file: " + e.getMessage() + " (line " + e.getErrorOffset() + ")");
+				System.exit(1);
+			} catch (NumberFormatException e) {
+				System.err.println("Error parsing config.ini: " + e.getMessage());
+				System.exit(1);
+			}
+			return;
+		}
+		
+		if (args.length > 0 && args[0].equals("compare")) {
+			try {
+				runComparison(config, predator_nn_base, params, precision);
+			} catch (IOException e) {
+				System.err.println("Error in comparison: " + e.getMessage());
+				System.exit(1);
+			} catch (ParseException e) {
+				System.err.println("Error parsing network file: " + e.getMessage() + " (line " + e.getErrorOffset() + ")");
+				System.exit(1);
+			} catch (IllegalArgumentException e) {
+				System.err.println("Error parsing config.ini: " + e.getMessage());
+				System.exit(1);
+			}
+			return;
+		}
+		
+		if (args.length > 0 && args[0].equals("trials")) {
+			if (fitness_cache == null)
+				fitness_cache = new FitnessCache(4096, FitnessCache.Policy.Off);
+			try {
+				runTrials(config, prey_nn_base, predator_nn_base, params, selection, fitness_cache, fitness_cache_file);
+			} catch (NumberFormatException e) {
+				System.err.println("Error parsing config.ini: " + e.getMessage());
+				System.exit(1);
+			}
+			return;
+		}
+		
+		if (args.length > 0 && args[0].equals("benchmark")) {
+			try {
+				runBenchmark(config, prey_nn_base, predator_nn_base, params);
+			} catch (NumberFormatException e) {
+				System.err.println("Error parsing config.ini: " + e.getMessage());
+				System.exit(1);
+			}
+			return;
+		}
+		
+		if (args.length > 0 && args[0].equals("compile")) {
+			try {
+				runCompileReport(config, prey_nn_base, predator_nn_base, params);
+			} catch (IOException e) {
+				System.err.println("Error parsing config.ini: " + e.getMessage());
+				System.exit(1);
+			} catch (ParseException e) {
+				System.err.println("Error parsing network file: " + e.getMessage() + " (line " + e.getErrorOffset() + ")");
+				System.exit(1);
+			}
+			return;
+		}
 		
 		// Set up environment
-		Environment env = new Environment(prey_nn_base, predator_nn_base);
+		Environment env = new Environment(prey_nn_base, predator_nn_base, params);
+		env.setSteadyState(steady_state);
+		env.setPredatorEvolution(evolve_predators);
+		if (fitness_window > 0)
+			env.setFitnessWindow(fitness_window);
+		if (corpse_timeout >= 0)
+			env.setCorpseTimeout(corpse_timeout);
+		if (selection != null)
+			env.setSelectionStrategy(selection);
+		try {
+			env.setTiles(getInt(config, "World", "tile_cols", 1), getInt(config, "World", "tile_rows", 1),
+					getInt(config, "World", "tile_threads", Runtime.getRuntime().availableProcessors()));
+			env.setSortInterval(getInt(config, "World", "sort_interval", 0));
+			parseSpecies(config, env, params, precision);
+		} catch (IOException e) {
+			System.err.println("Error parsing config.ini: " + e.getMessage());
+			System.exit(1);
+		} catch (ParseException e) {
+			System.err.println("Error parsing network file: " + e.getMessage() + " (line " + e.getErrorOffset() + ")");
+			System.exit(1);
+		} catch (NumberFormatException e) {
+			System.err.println("Error parsing config.ini: " + e.getMessage());
+			System.exit(1);
+		}
 		env.start();
 		
 		System.out.println("Environment set up successfully.");
 	}
+	
+	/**
+	 * Evolves prey headlessly, evaluating each candidate over several seeded trials run in
+	 * parallel. Options are read from the Trials section of the configuration.
+	 * 
+	 * @param config configuration file
+	 * @param prey_nn_base neural network base for prey animats
+	 * @param predator_nn_base neural network base for predator animats
+	 * @param params simulation parameters
+	 * @param selection selection strategy, or null for truncation
+	 * @param fitness_cache cache of trial results
+	 * @param fitness_cache_file file to save the cache to, or null
+	 */
+	private static void runTrials(Wini config, NeuralNetworkBase prey_nn_base, NeuralNetworkBase predator_nn_base,
+			Parameters params, SelectionStrategy selection, FitnessCache fitness_cache, File fitness_cache_file) {
+		int parents = getInt(config, "Trials", "parents", 5);
+		int population = getInt(config, "Trials", "population", 30);
+		int generations = getInt(config, "Trials", "generations", 50);
+		String seed = config.get("Trials", "seed");
+		long trial_seed = (seed != null) ? Long.parseLong(seed.trim()) : 1;
+		
+		TrialEvaluator evaluator = new TrialEvaluator(prey_nn_base, predator_nn_base, params, trial_seed,
+				getInt(config, "Trials", "trials_min", 3),
+				getInt(config, "Trials", "trials_max", 10),
+				getInt(config, "Trials", "trial_length", 0),
+				getInt(config, "Trials", "threads", Runtime.getRuntime().availableProcessors()),
+				fitness_cache);
+		if (selection == null)
+			selection = new TruncationSelection(parents);
+		
+		TrialEvolution evolution = new TrialEvolution(prey_nn_base, evaluator, selection, population, parents, trial_seed);
+		if (fitness_cache_file != null && fitness_cache.getPolicy() != FitnessCache.Policy.Off)
+			evolution.setCacheFile(fitness_cache, fitness_cache_file);
+		evolution.run(generations);
+	}
+	
+	/**
+	 * Compares the time taken by the prey sensor pass with prey in random order and sorted by
+	 * location, for each population size in the Benchmark section of the configuration.
+	 * 
+	 * @param config configuration file
+	 * @param prey_nn_base neural network base for prey animats
+	 * @param predator_nn_base neural network base for predator animats
+	 * @param params simulation parameters
+	 */
+	private static void runBenchmark(Wini config, NeuralNetworkBase prey_nn_base, NeuralNetworkBase predator_nn_base,
+			Parameters params) {
+		String populations = config.get("Benchmark", "populations");
+		if (populations == null)
+			populations = "1000,5000,20000";
+		int passes = getInt(config, "Benchmark", "passes", 20);
+		
+		System.out.println("Prey\tUnsorted (ns/prey)\tSorted (ns/prey)\tSpeedup");
+		for (String s : populations.split(",")) {
+			int count = Integer.parseInt(s.trim());
+			// Same seed for both, so both orders see the same world
+			double unsorted = new Environment(prey_nn_base, predator_nn_base, params, 1).benchmarkSensors(count, passes, false);
+			double sorted = new Environment(prey_nn_base, predator_nn_base, params, 1).benchmarkSensors(count, passes, true);
+			System.out.println(String.format("%d\t%.1f\t%.1f\t%.2f", count, unsorted, sorted, unsorted / sorted));
+		}
+	}
+	
+	/**
+	 * Prints, for the network of each prey species and the predator network, the work removed
+	 * from each update by pruning unused neurons, folding constant terms and sharing the
+	 * weights of linked connections.
+	 * 
+	 * @param config configuration file
+	 * @param prey_nn_base neural network base for prey animats
+	 * @param predator_nn_base neural network base for predator animats
+	 * @param params simulation parameters
+	 * @throws IOException if a species entry is malformed or a network file cannot be read
+	 * @throws ParseException if a network file cannot be parsed
+	 */
+	private static void runCompileReport(Wini config, NeuralNetworkBase prey_nn_base, NeuralNetworkBase predator_nn_base,
+			Parameters params) throws IOException, ParseException {
+		// The environment declares the neurons its animats set and read to each base
+		Environment env = new Environment(prey_nn_base, predator_nn_base, params, 1);
+		parseSpecies(config, env, params, prey_nn_base.precision);
+		for (Species s : env.getSpecies()) {
+			System.out.println(s.getName() + ":");
+			System.out.println(s.getNeuralNetworkBase().getCompiled().getReport());
+		}
+		System.out.println("Predator:");
+		System.out.println(predator_nn_base.getCompiled().getReport());
+	}
+	
+	/**
+	 * Evolves a prey population in double precision, then runs its genomes through the same
+	 * trials with the prey networks in each precision and prints how far the results drift.
+	 * Options are read from the Precision section of the configuration.
+	 * 
+	 * @param config configuration file
+	 * @param prey_nn_file prey neural network file
+	 * @param predator_nn_base neural network base for predator animats
+	 * @param params simulation parameters
+	 * @throws IOException if the prey network file cannot be read
+	 * @throws ParseException if the prey network file cannot be parsed
+	 */
+	private static void runPrecisionCheck(Wini config, String prey_nn_file, NeuralNetworkBase predator_nn_base,
+			Parameters params) throws IOException, ParseException {
+		Precision[] precisions = Precision.values();
+		NeuralNetworkBase[] bases = new NeuralNetworkBase[precisions.length];
+		for (int k = 0; k < precisions.length; k++) {
+			bases[k] = readNetwork(prey_nn_file);
+			params.applyTo(bases[k]);
+			bases[k].precision = precisions[k];
+		}
+		
+		// Predators keep the reference precision, so only the prey differ
+		predator_nn_base.precision = Precision.DOUBLE;
+		String seed = config.get("Precision", "seed");
+		PrecisionCheck check = new PrecisionCheck(bases, predator_nn_base, params,
+				getInt(config, "Precision", "generations", 5),
+				getInt(config, "Precision", "genomes", 10),
+				getInt(config, "Precision", "trials", 3),
+				getInt(config, "Precision", "trial_length", 0),
+				getInt(config, "Precision", "samples", 1000),
+				(seed != null) ? Long.parseLong(seed.trim()) : 1,
+				getInt(config, "Precision", "threads", Runtime.getRuntime().availableProcessors()));
+		check.run();
+	}
+	
+	/**
+	 * Runs the island model across worker processes. Options are read from the Cluster
+	 * section of the configuration.
+	 * 
+	 * @param config configuration file
+	 * @param prey_nn_file prey neural network file
+	 * @param predator_nn_file predator neural network file
+	 * @param params simulation parameters
+	 * @throws IOException if the run cannot be completed
+	 */
+	private static void runCluster(Wini config, String prey_nn_file, String predator_nn_file, Parameters params)
+			throws IOException {
+		String seed = config.get("Cluster", "seed");
+		Coordinator coordinator = new Coordinator(prey_nn_file, predator_nn_file, params,
+				getInt(config, "Cluster", "islands", 4),
+				getInt(config, "Cluster", "epochs", 10),
+				getInt(config, "Cluster", "interval", 5),
+				getInt(config, "Cluster", "migrants", 2),
+				(seed != null) ? Long.parseLong(seed.trim()) : 1,
+				getInt(config, "Cluster", "retries", 3),
+				getInt(config, "Cluster", "timeout", 600));
+		coordinator.run(getInt(config, "Cluster", "port", 5150), getInt(config, "Cluster", "local_workers", 0));
+	}
+	
+	/**
+	 * Compares prey neural networks on matched worlds, stopping as soon as the differences
+	 * are significant. Options are read from the Compare section of the configuration.
+	 * 
+	 * @param config configuration file
+	 * @param predator_nn_base neural network base for predator animats
+	 * @param params simulation parameters
+	 * @param precision precision of the prey networks
+	 * @throws IOException if a network file cannot be read, or an option is not recognized
+	 * @throws ParseException if a network file cannot be parsed
+	 */
+	private static void runComparison(Wini config, NeuralNetworkBase predator_nn_base, Parameters params,
+			Precision precision) throws IOException, ParseException {
+		String networks = config.get("Compare", "networks");
+		if (networks == null)
+			throw new IOException("No networks given in the Compare section");
+		String[] names = networks.split(",");
+		NeuralNetworkBase[] bases = new NeuralNetworkBase[names.length];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = names[i].trim();
+			bases[i] = readNetwork(names[i]);
+			params.applyTo(bases[i]);
+			bases[i].precision = precision;
+		}
+		
+		String metric_list = config.get("Compare", "metrics");
+		String[] metric_names = (metric_list != null) ? metric_list.split(",") : new String[] { "fitness", "survival", "depth" };
+		ComparisonRunner.Metric[] metrics = new ComparisonRunner.Metric[metric_names.length];
+		for (int m = 0; m < metric_names.length; m++) {
+			String name = metric_names[m].trim().toLowerCase();
+			if (name.equals("fitness"))
+				metrics[m] = ComparisonRunner.Metric.Fitness;
+			else if (name.equals("survival"))
+				metrics[m] = ComparisonRunner.Metric.Survival;
+			else if (name.equals("depth"))
+				metrics[m] = ComparisonRunner.Metric.HoleDepth;
+			else
+				throw new IOException("Unknown metric \"" + name + "\"");
+		}
+		
+		String seed = config.get("Compare", "seed");
+		ComparisonRunner comparison = new ComparisonRunner(names, bases, predator_nn_base, params, metrics,
+				getInt(config, "Compare", "generations", 5),
+				getInt(config, "Compare", "tail", 1),
+				(seed != null) ? Long.parseLong(seed.trim()) : 1,
+				getInt(config, "Compare", "threads", Runtime.getRuntime().availableProcessors()),
+				getDouble(config, "Compare", "alpha", 0.05),
+				getDouble(config, "Compare", "beta", 0.1),
+				getDouble(config, "Compare", "win_rate", 0.75));
+		comparison.run(getInt(config, "Compare", "rounds_max", 100));
+	}
+	
+	/**
+	 * Parses a neural network base from a file.
+	 * 
+	 * @param filename network file
+	 * @return neural network base
+	 * @throws IOException if the file cannot be read
+	 * @throws ParseException if the file cannot be parsed
+	 */
+	private static NeuralNetworkBase readNetwork(String filename) throws IOException, ParseException {
+		BufferedReader in = new BufferedReader(new FileReader(filename));
+		try {
+			NeuralNetworkBase base = new NeuralNetworkBase();
+			base.parseNetworkFromFile(in);
+			return base;
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Runs a parameter sweep described by a sweep specification. The Sweep section holds the
+	 * options of the sweep, and the Parameters section the values of each swept parameter:
+	 * a list of values separated by commas, or a range "min..max" for a random search.
+	 * 
+	 * @param spec sweep specification
+	 * @param prey_nn_file prey neural network file
+	 * @param predator_nn_file predator neural network file
+	 * @param params values of the parameters that are not swept
+	 * @throws IOException if the output file cannot be read
+	 */
+	private static void runSweep(Wini spec, String prey_nn_file, String predator_nn_file, Parameters params)
+			throws IOException {
+		String seed = spec.get("Sweep", "seed");
+		String output = spec.get("Sweep", "output");
+		SweepRunner sweep = new SweepRunner(prey_nn_file, predator_nn_file, params,
+				getInt(spec, "Sweep", "generations", 10),
+				getInt(spec, "Sweep", "tail", 3),
+				(seed != null) ? Long.parseLong(seed.trim()) : 1,
+				getInt(spec, "Sweep", "replicates", 1),
+				getInt(spec, "Sweep", "threads", Runtime.getRuntime().availableProcessors()));
+		
+		Section values = spec.get("Parameters");
+		if (values != null) {
+			for (String name : values.keySet()) {
+				String value = values.get(name).trim();
+				int range = value.indexOf("..");
+				if (range >= 0) {
+					sweep.addRange(name, Double.parseDouble(value.substring(0, range).trim()),
+							Double.parseDouble(value.substring(range + 2).trim()));
+				}
+				else {
+					String[] items = value.split(",");
+					double[] list = new double[items.length];
+					for (int i = 0; i < items.length; i++)
+						list[i] = Double.parseDouble(items[i].trim());
+					sweep.addValues(name, list);
+				}
+			}
+		}
+		
+		String mode = spec.get("Sweep", "mode");
+		List<Parameters> variants;
+		if (mode == null || mode.trim().equalsIgnoreCase("grid"))
+			variants = sweep.getGridVariants();
+		else if (mode.trim().equalsIgnoreCase("random"))
+			variants = sweep.getRandomVariants(getInt(spec, "Sweep", "samples", 20));
+		else
+			throw new IOException("Unknown sweep mode \"" + mode.trim() + "\"");
+		
+		sweep.run(variants, new File((output != null) ? output.trim() : "sweep.csv"));
+	}
+	
+	/**
+	 * Reads the optional Parameters section of the configuration.
+	 * 
+	 * @param config configuration file
+	 * @param params parameters to set
+	 * @throws IllegalArgumentException if a parameter is unknown or out of range
+	 */
+	private static void parseParameters(Wini config, Parameters params) {
+		Section section = config.get("Parameters");
+		if (section == null)
+			return;
+		for (String name : section.keySet())
+			params.set(name, Double.parseDouble(section.get(name).trim()));
+	}
+	
+	/**
+	 * Reads the optional Species section of the configuration, and gives the environment a
+	 * species for each entry. Each entry is the name of a species, set to its neural network
+	 * file and number of prey, separated by a comma.
+	 * 
+	 * @param config configuration file
+	 * @param env environment
+	 * @param params simulation parameters
+	 * @param precision precision of the prey networks
+	 * @throws IOException if an entry is malformed or a network file cannot be read
+	 * @throws ParseException if a network file cannot be parsed
+	 */
+	private static void parseSpecies(Wini config, Environment env, Parameters params, Precision precision)
+			throws IOException, ParseException {
+		Section section = config.get("Species");
+		if (section == null || section.isEmpty())
+			return;
+		
+		String[] names = section.keySet().toArray(new String[0]);
+		NeuralNetworkBase[] bases = new NeuralNetworkBase[names.length];
+		int[] quotas = new int[names.length];
+		for (int i = 0; i < names.length; i++) {
+			String[] value = section.get(names[i]).split(",");
+			if (value.length != 2)
+				throw new IOException("Species \"" + names[i] + "\" must be given as file,count");
+			bases[i] = readNetwork(value[0].trim());
+			params.applyTo(bases[i]);
+			bases[i].precision = precision;
+			quotas[i] = Integer.parseInt(value[1].trim());
+			if (quotas[i] < 1)
+				throw new IOException("Species \"" + names[i] + "\" must have at least one prey");
+		}
+		env.setSpecies(names, bases, quotas);
+	}
+	
+	/**
+	 * Reads the selection strategy from the Evolution section of the configuration. Returns
+	 * null if no strategy is given, in which case the environment's default is used.
+	 * 
+	 * @param config configuration file
+	 * @return selection strategy
+	 * @throws IOException if the strategy is not recognized
+	 */
+	private static SelectionStrategy parseSelection(Wini config) throws IOException {
+		String name = config.get("Evolution", "selection");
+		if (name == null)
+			return null;
+		
+		int parents = getInt(config, "Evolution", "parents", 5);
+		int tournament_size = getInt(config, "Evolution", "tournament_size", 3);
+		int elite_count = getInt(config, "Evolution", "elite_count", 2);
+		
+		name = name.trim().toLowerCase();
+		if (name.equals("truncation"))
+			return new TruncationSelection(parents);
+		else if (name.equals("tournament"))
+			return new TournamentSelection(tournament_size);
+		else if (name.equals("rank"))
+			return new RankSelection();
+		else if (name.equals("elitism"))
+			return new ElitistSelection(elite_count, new TruncationSelection(parents));
+		throw new IOException("Unknown selection strategy \"" + name + "\"");
+	}
+	
+	/**
+	 * Converts the name of a fitness cache policy.
+	 * 
+	 * @param name policy name
+	 * @return fitness cache policy
+	 * @throws IOException if the policy is not recognized
+	 */
+	private static FitnessCache.Policy parseCachePolicy(String name) throws IOException {
+		name = name.trim().toLowerCase();
+		if (name.equals("off"))
+			return FitnessCache.Policy.Off;
+		else if (name.equals("skip"))
+			return FitnessCache.Policy.Skip;
+		throw new IOException("Unknown fitness cache policy \"" + name + "\"");
+	}
+	
+	/**
+	 * Reads the precision of the neural networks. Returns double precision if none is given.
+	 * 
+	 * @param name precision name, or null
+	 * @return precision
+	 * @throws IOException if the precision is not recognized
+	 */
+	private static Precision parsePrecision(String name) throws IOException {
+		if (name == null)
+			return Precision.DOUBLE;
+		name = name.trim().toLowerCase();
+		if (name.equals("double"))
+			return Precision.DOUBLE;
+		else if (name.equals("float"))
+			return Precision.FLOAT;
+		else if (name.equals("int8"))
+			return Precision.INT8;
+		throw new IOException("Unknown precision \"" + name + "\"");
+	}
+	
+	/**
+	 * Reads an integer option, or returns a default value if it is not set.
+	 */
+	private static int getInt(Wini config, String section, String option, int default_value) {
+		String value = config.get(section, option);
+		if (value == null)
+			return default_value;
+		return Integer.parseInt(value.trim());
+	}
+	
+	/**
+	 * Reads a decimal option, or returns a default value if it is not set.
+	 */
+	private static double getDouble(Wini config, String section, String option, double default_value) {
+		String value = config.get(section, option);
+		if (value == null)
+			return default_value;
+		return Double.parseDouble(value.trim());
+	}
 }
@@ -2,6 +2,7 @@ package env;
 
 import java.awt.geom.Point2D;
 import java.util.Comparator;
+import java.util.Random;
 
 import nn.NeuralNetwork;
 import nn.NeuralNetworkBase;
@@ -27,8 +28,10 @@ public class Animat {
 	protected double fitness = 0.0;
 	protected double avg_energy = ENERGY_MAX;
 	protected int energy_samples = 1;
+	protected int id = -1; // given by the environment when the animat is placed
+	protected int parent_id = -1;
 	
-	protected boolean selected = false;
+	protected volatile boolean selected = false;
 	
 	/**
 	 * Constructs an animat with random neural network connection weights.
@@ -60,16 +63,161 @@ public class Animat {
 			else
 				this.controller.inheritConnections(parent.controller);
 		}
+		this.parent_id = parent.id;
 		this.env = env;
 	}
 	
+	/**
+	 * Restores the animat to the state of a newly constructed animat, with random neural
+	 * network connection weights. Used to reuse the animat for a new spawn.
+	 */
+	public void resetRandom() {
+		resetState();
+		if (this.controller != null) {
+			this.controller.reset();
+			this.controller.setRandomConnections();
+		}
+	}
+	
+	/**
+	 * Restores the animat to the state of a newly constructed animat, with random neural
+	 * network connection weights drawn from the given random number generator.
+	 * 
+	 * @param random random number generator
+	 */
+	public void resetRandom(Random random) {
+		resetState();
+		if (this.controller != null) {
+			this.controller.reset();
+			this.controller.setRandomConnections(random);
+		}
+	}
+	
+	/**
+	 * Restores the animat to the state of a newly constructed animat, with neural network
+	 * connection weights inherited from a parent. Used to reuse the animat for a new spawn.
+	 * 
+	 * @param parent parent animat
+	 * @param child apply mutations to weights
+	 */
+	public void resetFromParent(Animat parent, boolean child) {
+		resetState();
+		if (this.controller != null) {
+			this.controller.reset();
+			if (!child)
+				this.controller.copyConnections(parent.controller);
+			else
+				this.controller.inheritConnections(parent.controller);
+		}
+		this.parent_id = parent.id;
+	}
+	
+	/**
+	 * Restores the animat to the state of a newly constructed animat, with neural network
+	 * connection weights inherited from a parent. Mutations are drawn from the given random
+	 * number generator.
+	 * 
+	 * @param parent parent animat
+	 * @param child apply mutations to weights
+	 * @param random random number generator
+	 */
+	public void resetFromParent(Animat parent, boolean child, Random random) {
+		resetState();
+		if (this.controller != null) {
+			this.controller.reset();
+			if (!child)
+				this.controller.copyConnections(parent.controller);
+			else
+				this.controller.inheritConnections(parent.controller, random);
+		}
+		this.parent_id = parent.id;
+	}
+	
+	/**
+	 * Restores the animat to the state of a newly constructed animat, with the given neural
+	 * network connection weights. Used for genomes received from another process.
+	 * 
+	 * @param weights connection weights, in the order of getWeights()
+	 */
+	public void resetFromWeights(double[] weights) {
+		resetState();
+		if (this.controller != null) {
+			this.controller.reset();
+			this.controller.setWeights(weights);
+		}
+	}
+	
+	/**
+	 * Returns the id of the animat. Ids are given in the order animats are placed in the
+	 * environment, and do not change when the environment reorders its lists.
+	 * 
+	 * @return id, or -1 if the animat has not been placed
+	 */
+	public int getId() {
+		return this.id;
+	}
+	
+	/**
+	 * Sets the id of the animat.
+	 * 
+	 * @param id id
+	 */
+	public void setId(int id) {
+		this.id = id;
+	}
+	
+	/**
+	 * Returns the id of the parent the animat inherited its neural network from.
+	 * 
+	 * @return id, or -1 if the animat has no parent
+	 */
+	public int getParentId() {
+		return this.parent_id;
+	}
+	
+	/**
+	 * Returns the current neural network connection weights.
+	 * 
+	 * @return weights
+	 */
+	public double[] getWeights() {
+		return this.controller.getWeights();
+	}
+	
+	/**
+	 * Restores all state other than the neural network to its initial values. Subclasses
+	 * with state of their own extend this.
+	 */
+	protected void resetState() {
+		this.loc.setLocation(0, 0);
+		this.rot = 0.0;
+		this.energy = ENERGY_MAX;
+		this.energy_consumption = 0.0;
+		this.fitness = 0.0;
+		this.avg_energy = ENERGY_MAX;
+		this.energy_samples = 1;
+		this.selected = false;
+		this.id = -1;
+		this.parent_id = -1;
+	}
+	
 	/**
 	 * Sets the location.
 	 * 
 	 * @param loc 2D point
 	 */
 	public void setLocation(Point2D loc) {
-		this.loc = loc;
+		this.loc.setLocation(loc);
+	}
+	
+	/**
+	 * Sets the location.
+	 * 
+	 * @param x x position
+	 * @param y y position
+	 */
+	public void setLocation(double x, double y) {
+		this.loc.setLocation(x, y);
 	}
 	
 	/**
@@ -143,6 +291,23 @@ public class Animat {
 		}
 	}
 	
+	/**
+	 * Updates the fitness value of the animat from a rolling window of energy samples. Until
+	 * the window has filled this is the same as updateFitness(epoch_progress); after that,
+	 * older samples fade out so the fitness follows the recent energy of the animat.
+	 * 
+	 * @param epoch_progress elapsed fraction of the window
+	 * @param window_samples number of samples in the window
+	 */
+	public void updateFitness(double epoch_progress, int window_samples) {
+		if (this.energy > 0.0) {
+			int n = Math.min(this.energy_samples, window_samples);
+			this.avg_energy = (this.energy + n * this.avg_energy) / (n + 1);
+			this.energy_samples++;
+			this.fitness = this.avg_energy * Math.min(epoch_progress, 1.0);
+		}
+	}
+	
 	/**
 	 * Returns the fitness of the animat.
 	 * 
@@ -152,6 +317,26 @@ public class Animat {
 		return this.fitness;
 	}
 	
+	/**
+	 * Replaces the measured fitness of the animat, such as with a value from a fitness cache.
+	 * 
+	 * @param fitness fitness
+	 */
+	public void setFitness(double fitness) {
+		this.fitness = fitness;
+	}
+	
+	/**
+	 * Returns the hash of the animat's connection weights. This is the hash of its genome
+	 * only until Hebbian learning has changed the weights, so it is taken from animats that
+	 * have not run yet.
+	 * 
+	 * @return genome hash
+	 */
+	public long getGenomeHash() {
+		return this.controller.getGenomeHash();
+	}
+	
 	/**
 	 * Returns the energy of the animat.
 	 * 
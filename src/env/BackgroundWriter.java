@@ -0,0 +1,176 @@
+package env;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs report, checkpoint and export jobs one at a time on a dedicated thread, so that disk
+ * and formatting work never holds up the simulation or the window. Jobs wait in a bounded
+ * queue. When the queue is full, the overflow policy given with each job decides whether
+ * the caller waits for room, or the job is dropped. Each job can be given a callback that
+ * is told the result once the job has run.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class BackgroundWriter {
+	private final int QUEUE_CAPACITY = 64;
+	private final long CLOSE_TIMEOUT = 5000; // ms
+	
+	/**
+	 * What to do with a job when the queue is full.
+	 */
+	public enum OverflowPolicy {
+		Block, // Wait until the queue has room
+		Drop // Drop the job and report it as failed
+	}
+	
+	/**
+	 * A unit of work run on the writer thread.
+	 */
+	public interface Job {
+		/**
+		 * Runs the job.
+		 * 
+		 * @return message describing the result, or null
+		 * @throws IOException
+		 */
+		public String run() throws IOException;
+	}
+	
+	/**
+	 * Receives the result of a job. Called on the writer thread.
+	 */
+	public interface Callback {
+		public void completed(String message);
+		public void failed(String message);
+	}
+	
+	/**
+	 * Queued job and its callback.
+	 */
+	private class Task {
+		final Job job;
+		final Callback callback;
+		
+		Task(Job job, Callback callback) {
+			this.job = job;
+			this.callback = callback;
+		}
+	}
+	
+	private final BlockingQueue<Task> queue;
+	private final Thread thread;
+	private volatile boolean closed = false;
+	private volatile boolean running_job = false;
+	
+	/**
+	 * Constructs a new BackgroundWriter and starts its thread.
+	 * 
+	 * @param name name of the writer thread
+	 */
+	public BackgroundWriter(String name) {
+		this.queue = new ArrayBlockingQueue<Task>(QUEUE_CAPACITY);
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				processJobs();
+			}
+		}, name);
+		this.thread.setDaemon(true);
+		this.thread.start();
+		
+		// Finish pending writes when the program exits
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				close();
+			}
+		});
+	}
+	
+	/**
+	 * Runs queued jobs until the writer is closed and the queue is empty.
+	 */
+	private void processJobs() {
+		while (!this.closed || !this.queue.isEmpty()) {
+			Task task;
+			try {
+				task = this.queue.poll(100, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (task == null)
+				continue;
+			
+			this.running_job = true;
+			try {
+				String message = task.job.run();
+				if (task.callback != null)
+					task.callback.completed(message);
+			} catch (IOException e) {
+				if (task.callback != null)
+					task.callback.failed(e.getMessage());
+				else
+					System.err.println("Background write failed: " + e.getMessage());
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				if (task.callback != null)
+					task.callback.failed(e.toString());
+			} finally {
+				this.running_job = false;
+			}
+		}
+	}
+	
+	/**
+	 * Queues a job to be run on the writer thread.
+	 * 
+	 * @param job job
+	 * @param callback receives the result, or null
+	 * @param policy what to do if the queue is full
+	 * @return true if the job was queued, false if it was dropped
+	 */
+	public boolean submit(Job job, Callback callback, OverflowPolicy policy) {
+		Task task = new Task(job, callback);
+		if (!this.closed) {
+			if (policy == OverflowPolicy.Block) {
+				try {
+					this.queue.put(task);
+					return true;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			else if (this.queue.offer(task))
+				return true;
+		}
+		
+		if (callback != null)
+			callback.failed(this.closed ? "Writer closed" : "Write queue full");
+		return false;
+	}
+	
+	/**
+	 * Returns the number of jobs waiting or running.
+	 * 
+	 * @return queue depth
+	 */
+	public int getQueueDepth() {
+		return this.queue.size() + (this.running_job ? 1 : 0);
+	}
+	
+	/**
+	 * Stops accepting jobs and waits for queued jobs to finish.
+	 */
+	public void close() {
+		this.closed = true;
+		try {
+			this.thread.join(CLOSE_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package env;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Viewport of the simulation window onto the environment. The camera can be zoomed around
+ * a point in the window and panned by dragging. Positions in the window are converted to
+ * positions in the environment for selecting objects.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class Camera {
+	private final double ZOOM_MIN = 0.05;
+	private final double ZOOM_MAX = 8.0;
+	
+	private double zoom = 1.0;
+	private double offs_x = 0.0; // environment position at the left edge of the window
+	private double offs_y = 0.0; // environment position at the top edge of the window
+	private int version = 0;
+	
+	/**
+	 * Resets the camera to show the environment at its original scale.
+	 */
+	public void reset() {
+		this.zoom = 1.0;
+		this.offs_x = this.offs_y = 0.0;
+		this.version++;
+	}
+	
+	/**
+	 * Zooms by a factor, keeping the environment position under the given window position fixed.
+	 * 
+	 * @param factor zoom factor
+	 * @param sx window x position
+	 * @param sy window y position
+	 */
+	public void zoomAt(double factor, int sx, int sy) {
+		double wx = toWorldX(sx), wy = toWorldY(sy);
+		this.zoom = Math.max(ZOOM_MIN, Math.min(ZOOM_MAX, this.zoom * factor));
+		this.offs_x = wx - sx / this.zoom;
+		this.offs_y = wy - sy / this.zoom;
+		this.version++;
+	}
+	
+	/**
+	 * Moves the camera by a distance in the window.
+	 * 
+	 * @param dx window x distance
+	 * @param dy window y distance
+	 */
+	public void pan(int dx, int dy) {
+		this.offs_x -= dx / this.zoom;
+		this.offs_y -= dy / this.zoom;
+		this.version++;
+	}
+	
+	/**
+	 * Returns the zoom factor.
+	 * 
+	 * @return window pixels per environment unit
+	 */
+	public double getZoom() {
+		return this.zoom;
+	}
+	
+	/**
+	 * Returns a number that changes every time the camera moves.
+	 * 
+	 * @return version
+	 */
+	public int getVersion() {
+		return this.version;
+	}
+	
+	/**
+	 * Converts a window x position to an environment x position.
+	 * 
+	 * @param sx window x position
+	 * @return environment x position
+	 */
+	public double toWorldX(int sx) {
+		return this.offs_x + sx / this.zoom;
+	}
+	
+	/**
+	 * Converts a window y position to an environment y position.
+	 * 
+	 * @param sy window y position
+	 * @return environment y position
+	 */
+	public double toWorldY(int sy) {
+		return this.offs_y + sy / this.zoom;
+	}
+	
+	/**
+	 * Returns the transform from environment positions to window positions.
+	 * 
+	 * @return transform
+	 */
+	public AffineTransform getTransform() {
+		AffineTransform t = AffineTransform.getScaleInstance(this.zoom, this.zoom);
+		t.translate(-this.offs_x, -this.offs_y);
+		return t;
+	}
+	
+	/**
+	 * Returns the area of the environment visible in a window of the given size.
+	 * 
+	 * @param width window width
+	 * @param height window height
+	 * @return visible area
+	 */
+	public Rectangle2D getVisibleArea(int width, int height) {
+		return new Rectangle2D.Double(this.offs_x, this.offs_y, width / this.zoom, height / this.zoom);
+	}
+}
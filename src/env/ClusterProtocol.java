@@ -0,0 +1,222 @@
+package env;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Vector;
+
+/**
+ * Line-based text protocol between a Coordinator and its Workers. A worker connects to the
+ * coordinator and introduces itself, then receives island jobs one at a time until it is
+ * told to quit. Every message starts with a keyword; counts in the first line of a message
+ * give the number of lines that follow.
+ * 
+ * Coordinator to worker:
+ * 
+ *     JOB id island first_generation seed generations migrants
+ *     PARAMS name=value;...
+ *     PREY n           (n lines of the prey network file)
+ *     PREDATOR n       (n lines of the predator network file)
+ *     POPULATION n     (n genomes, or none for a random first generation)
+ *     END
+ * 
+ * or QUIT. Worker to coordinator, after HELLO name when it connects:
+ * 
+ *     REPORT id entry  (one per generation, as each one ends)
+ *     MIGRANTS n       (n genomes of the fittest prey of the last generation)
+ *     POPULATION n     (n genomes of the generation that follows)
+ *     DONE id
+ * 
+ * or FAILED id message. A genome is one line of connection weights separated by spaces.
+ * Each job only depends on its contents, so a job that fails can be sent again, to any
+ * worker, with the same result.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class ClusterProtocol {
+	
+	/**
+	 * A number of generations of one island, starting from a given population.
+	 */
+	public static class Job {
+		public int id;
+		public int island;
+		public int first_generation;
+		public long seed;
+		public int generations;
+		public int migrants;
+		public String params;
+		public String prey_nn;
+		public String predator_nn;
+		public double[][] population = new double[0][];
+		
+		/**
+		 * Writes the job.
+		 * 
+		 * @param out output
+		 */
+		public void write(PrintWriter out) {
+			out.println("JOB " + this.id + " " + this.island + " " + this.first_generation + " " + this.seed + " "
+					+ this.generations + " " + this.migrants);
+			out.println("PARAMS " + this.params);
+			writeText(out, "PREY", this.prey_nn);
+			writeText(out, "PREDATOR", this.predator_nn);
+			writeGenomes(out, "POPULATION", this.population);
+			out.println("END");
+			out.flush();
+		}
+		
+		/**
+		 * Reads the rest of a job, after its first line.
+		 * 
+		 * @param first first line
+		 * @param in input
+		 * @return job
+		 * @throws IOException if the connection fails or the message is malformed
+		 */
+		public static Job read(String first, BufferedReader in) throws IOException {
+			String[] f = split(first, "JOB", 7);
+			Job job = new Job();
+			job.id = parseInt(f[1]);
+			job.island = parseInt(f[2]);
+			job.first_generation = parseInt(f[3]);
+			job.seed = parseLong(f[4]);
+			job.generations = parseInt(f[5]);
+			job.migrants = parseInt(f[6]);
+			String params = readLine(in);
+			if (!params.startsWith("PARAMS "))
+				throw new IOException("Expected PARAMS, got \"" + params + "\"");
+			job.params = params.substring(7);
+			job.prey_nn = readText(in, "PREY");
+			job.predator_nn = readText(in, "PREDATOR");
+			job.population = readGenomes(in, "POPULATION");
+			expect(in, "END");
+			return job;
+		}
+	}
+	
+	/**
+	 * The outcome of a job.
+	 */
+	public static class Result {
+		public final Vector<String> reports = new Vector<String>();
+		public double[][] migrants;
+		public double[][] population;
+	}
+	
+	/**
+	 * Writes a block of text, preceded by its number of lines.
+	 */
+	static void writeText(PrintWriter out, String keyword, String text) {
+		String[] lines = text.split("\n", -1);
+		int n = lines.length;
+		if (n > 0 && lines[n - 1].isEmpty())
+			n--;
+		out.println(keyword + " " + n);
+		for (int i = 0; i < n; i++)
+			out.println(lines[i]);
+	}
+	
+	/**
+	 * Reads a block of text written by writeText().
+	 */
+	static String readText(BufferedReader in, String keyword) throws IOException {
+		int n = parseInt(split(readLine(in), keyword, 2)[1]);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < n; i++)
+			text.append(readLine(in)).append('\n');
+		return text.toString();
+	}
+	
+	/**
+	 * Writes a list of genomes, preceded by their number.
+	 */
+	static void writeGenomes(PrintWriter out, String keyword, double[][] genomes) {
+		out.println(keyword + " " + genomes.length);
+		StringBuilder line = new StringBuilder();
+		for (double[] genome : genomes) {
+			line.setLength(0);
+			for (int i = 0; i < genome.length; i++) {
+				if (i > 0)
+					line.append(' ');
+				line.append(genome[i]);
+			}
+			out.println(line);
+		}
+	}
+	
+	/**
+	 * Reads a list of genomes written by writeGenomes().
+	 */
+	static double[][] readGenomes(BufferedReader in, String keyword) throws IOException {
+		return readGenomes(readLine(in), in, keyword);
+	}
+	
+	/**
+	 * Reads a list of genomes whose first line has already been read.
+	 */
+	static double[][] readGenomes(String first, BufferedReader in, String keyword) throws IOException {
+		int n = parseInt(split(first, keyword, 2)[1]);
+		double[][] genomes = new double[n][];
+		for (int i = 0; i < n; i++) {
+			String line = readLine(in).trim();
+			String[] f = line.isEmpty() ? new String[0] : line.split(" ");
+			genomes[i] = new double[f.length];
+			try {
+				for (int k = 0; k < f.length; k++)
+					genomes[i][k] = Double.parseDouble(f[k]);
+			} catch (NumberFormatException e) {
+				throw new IOException("Malformed genome: " + e.getMessage());
+			}
+		}
+		return genomes;
+	}
+	
+	/**
+	 * Reads a line, treating the end of the stream as a lost connection.
+	 */
+	static String readLine(BufferedReader in) throws IOException {
+		String line = in.readLine();
+		if (line == null)
+			throw new EOFException("Connection closed");
+		return line;
+	}
+	
+	/**
+	 * Reads a line that must be the given keyword.
+	 */
+	static void expect(BufferedReader in, String keyword) throws IOException {
+		String line = readLine(in);
+		if (!line.equals(keyword))
+			throw new IOException("Expected " + keyword + ", got \"" + line + "\"");
+	}
+	
+	/**
+	 * Splits a line into fields separated by spaces, checking its keyword and the number of
+	 * fields.
+	 */
+	static String[] split(String line, String keyword, int fields) throws IOException {
+		String[] f = line.split(" ", fields);
+		if (f.length != fields || !f[0].equals(keyword))
+			throw new IOException("Expected " + keyword + " with " + (fields - 1) + " values, got \"" + line + "\"");
+		return f;
+	}
+	
+	static int parseInt(String s) throws IOException {
+		try {
+			return Integer.parseInt(s);
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed number: " + s);
+		}
+	}
+	
+	static long parseLong(String s) throws IOException {
+		try {
+			return Long.parseLong(s);
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed number: " + s);
+		}
+	}
+}
@@ -0,0 +1,298 @@
+package env;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import nn.NeuralNetworkBase;
+
+/**
+ * Compares two or more prey neural network bases. Each round gives every network a headless
+ * world with the same seed, so the networks are compared on matched worlds, and the worlds
+ * of a round run in parallel. Every pair of networks has a sequential sign test for each
+ * metric, fed with the paired results of each round. The comparison stops as soon as every
+ * test has reached a decision, or after a maximum number of rounds.
+ * 
+ * The significance given is shared between all of the tests, so that the chance of any
+ * wrong decision stays within it. One line per round is written to a report file, through
+ * a background writer.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class ComparisonRunner {
+	
+	/**
+	 * Metrics networks can be compared on. Higher values are better.
+	 */
+	public enum Metric {
+		Fitness, // average prey fitness
+		Survival, // fraction of prey alive at the end of a generation
+		HoleDepth; // average hole depth
+		
+		/**
+		 * Returns the value of the metric in a report entry.
+		 * 
+		 * @param entry report entry
+		 * @return value
+		 */
+		public double get(ReportEntry entry) {
+			switch (this) {
+				case Survival:
+					return entry.survival;
+				case HoleDepth:
+					return entry.avg_hole_depth;
+				default:
+					return entry.avg_fitness;
+			}
+		}
+	}
+	
+	private final String[] names;
+	private final NeuralNetworkBase[] bases;
+	private final NeuralNetworkBase predator_nn_base;
+	private final Parameters params;
+	private final Metric[] metrics;
+	private final int generations;
+	private final int tail;
+	private final long seed;
+	private final int threads;
+	private final ExecutorService workers;
+	private final BackgroundWriter writer = new BackgroundWriter("Comparison Writer");
+	
+	// Test for networks i < j and metric m, at [(i * n + j) * metrics.length + m]
+	private final SequentialSignTest[] tests;
+	private int rounds = 0;
+	
+	/**
+	 * Constructs a new ComparisonRunner. The neural network parameters should already have
+	 * been applied to the bases.
+	 * 
+	 * @param names names of the prey neural networks, used in the results
+	 * @param bases prey neural network bases
+	 * @param predator_nn_base neural network base for predator animats
+	 * @param params simulation parameters
+	 * @param metrics metrics to compare
+	 * @param generations generations each world is run for
+	 * @param tail number of final generations averaged for each result
+	 * @param seed seed the world seeds are derived from
+	 * @param threads number of worker threads
+	 * @param alpha chance of finding any difference that is not there
+	 * @param beta chance of missing a difference in each test
+	 * @param win_rate chance that the better network wins a round, for a difference to be found
+	 */
+	public ComparisonRunner(String[] names, NeuralNetworkBase[] bases, NeuralNetworkBase predator_nn_base,
+			Parameters params, Metric[] metrics, int generations, int tail, long seed, int threads,
+			double alpha, double beta, double win_rate) {
+		if (bases.length < 2)
+			throw new IllegalArgumentException("At least two networks are needed for a comparison");
+		this.names = names;
+		this.bases = bases;
+		this.predator_nn_base = predator_nn_base;
+		this.params = params;
+		this.metrics = metrics;
+		this.generations = Math.max(1, generations);
+		this.tail = Math.max(1, Math.min(tail, this.generations));
+		this.seed = seed;
+		this.threads = Math.max(1, threads);
+		
+		int n = bases.length;
+		int test_count = n * (n - 1) / 2 * metrics.length;
+		this.tests = new SequentialSignTest[n * n * metrics.length];
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				for (int m = 0; m < metrics.length; m++)
+					this.tests[(i * n + j) * metrics.length + m] = new SequentialSignTest(alpha / test_count, beta, win_rate);
+			}
+		}
+		
+		this.workers = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Comparison");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+	
+	/**
+	 * Runs rounds until every test has reached a decision or the maximum number of rounds
+	 * has been run, then prints the results and waits for the report to be written. Enough
+	 * rounds are run at once to keep every thread busy.
+	 * 
+	 * @param max_rounds maximum number of rounds
+	 */
+	public void run(int max_rounds) {
+		int n = this.bases.length;
+		final String filename = "compare-" + new SimpleDateFormat("yyyy-MM-dd-HHmmss").format(new Date()) + ".csv";
+		StringBuilder header = new StringBuilder("Round,Seed");
+		for (int i = 0; i < n; i++) {
+			for (Metric m : this.metrics)
+				header.append(',').append(this.names[i]).append(' ').append(m);
+		}
+		append(filename, header.append('\n').toString());
+		
+		int batch = Math.max(1, (this.threads + n - 1) / n);
+		while (this.rounds < max_rounds && !isDecided()) {
+			int count = Math.min(batch, max_rounds - this.rounds);
+			double[][] results = runRounds(this.rounds, count);
+			for (int r = 0; r < count; r++) {
+				long round_seed = getSeed(this.rounds);
+				this.rounds++;
+				
+				StringBuilder line = new StringBuilder();
+				line.append(this.rounds).append(',').append(round_seed);
+				for (int i = 0; i < n; i++) {
+					for (int m = 0; m < this.metrics.length; m++)
+						line.append(',').append(String.format("%.4f", results[r * n + i][m]));
+				}
+				System.out.println(line);
+				append(filename, line.append('\n').toString());
+				
+				for (int i = 0; i < n; i++) {
+					for (int j = i + 1; j < n; j++) {
+						for (int m = 0; m < this.metrics.length; m++)
+							this.tests[(i * n + j) * this.metrics.length + m].add(results[r * n + i][m], results[r * n + j][m]);
+					}
+				}
+			}
+		}
+		
+		printResults();
+		this.writer.close();
+	}
+	
+	/**
+	 * Returns true if every test has reached a decision.
+	 * 
+	 * @return true if the comparison is finished
+	 */
+	public boolean isDecided() {
+		for (SequentialSignTest t : this.tests) {
+			if (t != null && t.getResult() == SequentialSignTest.Result.Undecided)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the number of rounds run.
+	 * 
+	 * @return count
+	 */
+	public int getRounds() {
+		return this.rounds;
+	}
+	
+	/**
+	 * Prints the outcome of each test.
+	 */
+	private void printResults() {
+		int n = this.bases.length;
+		System.out.println("Comparison after " + this.rounds + " rounds" + (isDecided() ? ":" : " (not all decided):"));
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				for (int m = 0; m < this.metrics.length; m++) {
+					SequentialSignTest t = this.tests[(i * n + j) * this.metrics.length + m];
+					String outcome;
+					switch (t.getResult()) {
+						case FirstBetter:
+							outcome = this.names[i] + " is better";
+							break;
+						case SecondBetter:
+							outcome = this.names[j] + " is better";
+							break;
+						case NoDifference:
+							outcome = "no difference";
+							break;
+						default:
+							outcome = "undecided";
+					}
+					System.out.println(String.format("  %s vs %s, %s: %s (%d-%d, %d ties)", this.names[i], this.names[j],
+							this.metrics[m], outcome, t.getWins(), t.getLosses(), t.getTies()));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Runs the worlds of a number of rounds in parallel.
+	 * 
+	 * @return metrics of network i in round r, at [r * n + i]
+	 */
+	private double[][] runRounds(int first, int count) {
+		int n = this.bases.length;
+		List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>(count * n);
+		for (int r = 0; r < count; r++) {
+			final long round_seed = getSeed(first + r);
+			for (int i = 0; i < n; i++) {
+				final NeuralNetworkBase base = this.bases[i];
+				tasks.add(new Callable<double[]>() {
+					@Override
+					public double[] call() {
+						return runWorld(base, round_seed);
+					}
+				});
+			}
+		}
+		
+		double[][] results = new double[count * n][];
+		try {
+			List<Future<double[]>> futures = this.workers.invokeAll(tasks);
+			for (int k = 0; k < futures.size(); k++)
+				results[k] = futures.get(k).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while running comparison", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Error running comparison", e.getCause());
+		}
+		return results;
+	}
+	
+	/**
+	 * Runs one world and returns its metrics, averaged over the final generations.
+	 */
+	private double[] runWorld(NeuralNetworkBase base, long world_seed) {
+		Environment env = new Environment(base, this.predator_nn_base, this.params, world_seed);
+		Vector<ReportEntry> entries = env.runGenerations(this.generations);
+		ReportEntry mean = ReportEntry.mean(entries.subList(entries.size() - this.tail, entries.size()));
+		double[] values = new double[this.metrics.length];
+		for (int m = 0; m < this.metrics.length; m++)
+			values[m] = this.metrics[m].get(mean);
+		return values;
+	}
+	
+	private long getSeed(int round) {
+		return ReproductionEngine.mix(this.seed + round);
+	}
+	
+	/**
+	 * Appends text to the report file on the writer thread.
+	 */
+	private void append(final String filename, final String text) {
+		this.writer.submit(new BackgroundWriter.Job() {
+			@Override
+			public String run() throws IOException {
+				FileWriter out = new FileWriter(filename, true);
+				try {
+					out.write(text);
+				} finally {
+					out.close();
+				}
+				return null;
+			}
+		}, null, BackgroundWriter.OverflowPolicy.Block);
+	}
+}
@@ -0,0 +1,271 @@
+package env;
+
+import java.awt.geom.Point2D;
+import java.util.Vector;
+
+/**
+ * Finds contacts between objects in the environment once per epoch. A broad phase sorts food,
+ * holes and prey into grids, so each animat only tests the objects near it. Each contact found
+ * becomes a typed event, which the Environment then applies in order. Events are ordered by
+ * the animat that caused them, then by the position of the target in its list, so applying
+ * them gives the same result every time.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class ContactSystem {
+	
+	/**
+	 * Type of contact between two objects.
+	 */
+	public enum Type {
+		EatFood, // prey eats food (target: food)
+		EnterHole, // prey enters a hole (target: hole)
+		DigHole, // prey digs a new hole (target: none)
+		DigSeparationViolation, // prey tries to dig too close to a hole (target: hole)
+		Predation // predator bites prey (target: prey)
+	}
+	
+	/**
+	 * A single contact event.
+	 */
+	public static class Contact {
+		private Type type;
+		private Animat actor;
+		private Object target;
+		
+		public Type getType() {
+			return this.type;
+		}
+		
+		public Animat getActor() {
+			return this.actor;
+		}
+		
+		public Object getTarget() {
+			return this.target;
+		}
+	}
+	
+	private final double food_radius;
+	private final double enter_radius;
+	private final double separation;
+	private final double predation_radius;
+	
+	private Contact[] contacts = new Contact[0];
+	private int contact_count = 0;
+	
+	private final SpatialGrid food_grid = new SpatialGrid();
+	private final SpatialGrid hole_grid = new SpatialGrid();
+	private final SpatialGrid prey_grid = new SpatialGrid();
+	private Vector<Hole> grid_holes = null;
+	private int grid_hole_count = 0;
+	private Prey[] grid_prey = new Prey[0];
+	private int[] found = new int[16];
+	
+	/**
+	 * Constructs a new ContactSystem.
+	 * 
+	 * @param food_radius distance at which prey can eat food
+	 * @param enter_radius distance at which prey can enter a hole
+	 * @param separation minimum distance between holes
+	 * @param predation_radius distance at which predators can bite prey
+	 */
+	public ContactSystem(double food_radius, double enter_radius, double separation, double predation_radius) {
+		this.food_radius = food_radius;
+		this.enter_radius = enter_radius;
+		this.separation = separation;
+		this.predation_radius = predation_radius;
+	}
+	
+	/**
+	 * Finds the food and hole contacts of all living prey, replacing any previous events.
+	 * Prey eat when their "eat" output is on, and dig or enter holes when their "dig" or
+	 * "enterhole" outputs are on. Prey in a hole do neither.
+	 * 
+	 * @param prey_index prey lists
+	 * @param food set of food objects
+	 * @param holes set of hole objects
+	 */
+	public void findPreyContacts(PreyIndex prey_index, Vector<Food> food, Vector<Hole> holes) {
+		this.contact_count = 0;
+		
+		this.food_grid.clear();
+		for (int i = 0; i < food.size(); i++) {
+			Point2D loc = food.elementAt(i).getLocation();
+			this.food_grid.add(loc.getX(), loc.getY());
+		}
+		this.food_grid.build(this.food_radius);
+		
+		// Holes are only added during a generation, so the grid is rebuilt when there are new ones.
+		// Removals must call invalidateHoles().
+		if (this.grid_holes != holes || this.grid_hole_count != holes.size()) {
+			this.hole_grid.clear();
+			for (int i = 0; i < holes.size(); i++) {
+				Point2D loc = holes.elementAt(i).getLocation();
+				this.hole_grid.add(loc.getX(), loc.getY());
+			}
+			this.hole_grid.build(Math.max(this.enter_radius, this.separation));
+			this.grid_holes = holes;
+			this.grid_hole_count = holes.size();
+		}
+		
+		for (int n = 0; n < prey_index.getAliveCount(); n++) {
+			Prey p = prey_index.getAlive(n);
+			if (!p.isAlive() || p.in_hole())
+				continue;
+			Point2D p_loc = p.getLocation();
+			
+			// Food
+			if (p.getNeuronValue("eat") == 1.0) {
+				int count = query(this.food_grid, p_loc, this.food_radius);
+				for (int k = 0; k < count; k++)
+					add(Type.EatFood, p, food.elementAt(this.found[k]));
+			}
+			
+			// Holes
+			boolean dig = p.getNeuronValue("dig") > 0.55;
+			boolean enter = p.getNeuronValue("enterhole") == 1.0;
+			if (dig || enter) {
+				Hole nearest = null;
+				double distance_min = Double.POSITIVE_INFINITY;
+				int count = query(this.hole_grid, p_loc, Math.max(this.enter_radius, this.separation));
+				for (int k = 0; k < count; k++) {
+					Hole h = holes.elementAt(this.found[k]);
+					if (h.getOwner() != p && !h.isPublic())
+						continue;
+					
+					double distance = p_loc.distance(h.getLocation());
+					if (distance < distance_min) {
+						distance_min = distance;
+						nearest = h;
+					}
+				}
+				if (nearest != null && distance_min <= this.enter_radius)
+					add(Type.EnterHole, p, nearest);
+				else if (dig && distance_min >= this.separation)
+					add(Type.DigHole, p, null);
+				else if (dig)
+					add(Type.DigSeparationViolation, p, nearest);
+			}
+		}
+	}
+	
+	/**
+	 * Forces the hole grid to be rebuilt on the next search. Used when holes have been removed,
+	 * since the grid only notices when the number of holes changes.
+	 */
+	public void invalidateHoles() {
+		this.grid_holes = null;
+	}
+	
+	/**
+	 * Finds the prey that each living predator can bite, replacing any previous events.
+	 * Corpses can be bitten until they are gone, but prey deep enough in a hole cannot.
+	 * 
+	 * @param predators set of predator animats
+	 * @param prey_index prey lists
+	 */
+	public void findPredations(Vector<Predator> predators, PreyIndex prey_index) {
+		this.contact_count = 0;
+		if (predators.isEmpty())
+			return;
+		
+		int alive_count = prey_index.getAliveCount();
+		int listed_count = alive_count + prey_index.getDeadCount();
+		if (this.grid_prey.length < listed_count)
+			this.grid_prey = new Prey[listed_count];
+		this.prey_grid.clear();
+		for (int k = 0; k < listed_count; k++) {
+			Prey p = k < alive_count ? prey_index.getAlive(k) : prey_index.getDead(k - alive_count);
+			this.grid_prey[k] = p;
+			Point2D loc = p.getLocation();
+			this.prey_grid.add(loc.getX(), loc.getY());
+		}
+		this.prey_grid.build(this.predation_radius);
+		
+		for (int i = 0; i < predators.size(); i++) {
+			Predator r = predators.elementAt(i);
+			if (!r.isAlive())
+				continue;
+			
+			int count = query(this.prey_grid, r.getLocation(), this.predation_radius);
+			for (int k = 0; k < count; k++) {
+				Prey p = this.grid_prey[this.found[k]];
+				if (!p.isGone() && p.getDetectableDepth() > 0.0)
+					add(Type.Predation, r, p);
+			}
+		}
+		
+		for (int k = 0; k < listed_count; k++)
+			this.grid_prey[k] = null;
+	}
+	
+	/**
+	 * Queries a grid and stores the points found in ascending order of index.
+	 * 
+	 * @return number of points found
+	 */
+	private int query(SpatialGrid grid, Point2D loc, double radius) {
+		int count = grid.query(loc.getX(), loc.getY(), radius);
+		if (this.found.length < count)
+			this.found = new int[Math.max(count, this.found.length * 2)];
+		for (int k = 0; k < count; k++) {
+			int v = grid.getResult(k);
+			int j = k;
+			while (j > 0 && this.found[j - 1] > v) {
+				this.found[j] = this.found[j - 1];
+				j--;
+			}
+			this.found[j] = v;
+		}
+		return count;
+	}
+	
+	/**
+	 * Adds a contact event.
+	 */
+	private void add(Type type, Animat actor, Object target) {
+		if (this.contact_count == this.contacts.length) {
+			Contact[] nc = new Contact[Math.max(16, this.contact_count * 2)];
+			System.arraycopy(this.contacts, 0, nc, 0, this.contact_count);
+			for (int i = this.contact_count; i < nc.length; i++)
+				nc[i] = new Contact();
+			this.contacts = nc;
+		}
+		Contact c = this.contacts[this.contact_count++];
+		c.type = type;
+		c.actor = actor;
+		c.target = target;
+	}
+	
+	/**
+	 * Returns the number of events found by the last pass.
+	 * 
+	 * @return count
+	 */
+	public int getContactCount() {
+		return this.contact_count;
+	}
+	
+	/**
+	 * Returns an event found by the last pass.
+	 * 
+	 * @param i event number
+	 * @return contact event
+	 */
+	public Contact getContact(int i) {
+		return this.contacts[i];
+	}
+	
+	/**
+	 * Drops references to the objects in the events of the last pass.
+	 */
+	public void clear() {
+		for (int i = 0; i < this.contact_count; i++) {
+			this.contacts[i].actor = null;
+			this.contacts[i].target = null;
+		}
+		this.contact_count = 0;
+	}
+}
@@ -0,0 +1,403 @@
+package env;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Vector;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinator of a cluster run of the island model. The prey are split into islands, each
+ * evolving on its own. The run is divided into epochs of a few generations; in each epoch,
+ * every island is a job for a Worker, and at the end of the epoch the fittest prey of each
+ * island migrate to the next island in a ring, replacing some of its prey.
+ * 
+ * Workers connect over TCP and take jobs from a shared queue, so faster workers run more
+ * jobs. A job that fails, or whose worker disconnects or stops responding, goes back on the
+ * queue, up to a number of retries. Jobs are seeded, so a retried job has the same result.
+ * Results are only used once a job has finished, so a retry never duplicates reports. The
+ * report entries of every island are written to one report file, one line per island and
+ * generation, through a background writer.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class Coordinator {
+	private final int POLL_INTERVAL = 1; // seconds between checks for the end of the run
+	private final long QUIT_TIMEOUT = 5000; // ms to wait for workers to be told to quit
+	
+	private final String prey_nn;
+	private final String predator_nn;
+	private final Parameters params;
+	private final int islands;
+	private final int epochs;
+	private final int interval;
+	private final int migrant_count;
+	private final long seed;
+	private final int retries;
+	private final int timeout;
+	private final BackgroundWriter writer = new BackgroundWriter("Cluster Writer");
+	
+	private final BlockingQueue<ClusterProtocol.Job> pending = new LinkedBlockingQueue<ClusterProtocol.Job>();
+	private final Object lock = new Object();
+	
+	// Guarded by lock
+	private ClusterProtocol.Result[] results;
+	private int[] attempts;
+	private int remaining;
+	private String error = null;
+	private int connected = 0; // workers
+	private long unattended_since; // nanoTime when the last worker left, or the run started
+	
+	private final Vector<Thread> connections = new Vector<Thread>();
+	private volatile boolean finished = false;
+	private int next_job_id = 1;
+	
+	/**
+	 * Constructs a new Coordinator. The neural network parameters are applied by the workers.
+	 * 
+	 * @param prey_nn_file prey neural network file
+	 * @param predator_nn_file predator neural network file
+	 * @param params simulation parameters
+	 * @param islands number of islands
+	 * @param epochs number of epochs
+	 * @param interval generations in each epoch
+	 * @param migrant_count prey that migrate from each island at the end of each epoch
+	 * @param seed seed the seeds of the jobs are derived from
+	 * @param retries number of times a job is retried before the run fails
+	 * @param timeout seconds a worker may go without sending anything before its job is retried
+	 * @throws IOException if a network file cannot be read
+	 */
+	public Coordinator(String prey_nn_file, String predator_nn_file, Parameters params, int islands, int epochs,
+			int interval, int migrant_count, long seed, int retries, int timeout) throws IOException {
+		this.prey_nn = readFile(prey_nn_file);
+		this.predator_nn = readFile(predator_nn_file);
+		this.params = params;
+		this.islands = Math.max(1, islands);
+		this.epochs = Math.max(1, epochs);
+		this.interval = Math.max(1, interval);
+		this.migrant_count = (this.islands > 1) ? Math.max(0, migrant_count) : 0;
+		this.seed = seed;
+		this.retries = Math.max(0, retries);
+		this.timeout = Math.max(1, timeout);
+	}
+	
+	/**
+	 * Listens for workers and runs every epoch, then tells the workers to quit and waits for
+	 * the report to be written.
+	 * 
+	 * @param port port to listen on
+	 * @param local_workers number of workers to start in this process, connected over loopback
+	 * @throws IOException if the port cannot be opened, or a job fails too many times
+	 */
+	public void run(int port, int local_workers) throws IOException {
+		final ServerSocket server = new ServerSocket(port);
+		synchronized (this.lock) {
+			this.unattended_since = System.nanoTime();
+		}
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				accept(server);
+			}
+		}, "Coordinator");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		System.out.println("Coordinator listening on port " + server.getLocalPort());
+		
+		for (int i = 0; i < local_workers; i++) {
+			Thread t = new Thread(new Worker("localhost", server.getLocalPort()), "Local Worker " + (i + 1));
+			t.setDaemon(true);
+			t.start();
+		}
+		
+		String filename = "cluster-" + new SimpleDateFormat("yyyy-MM-dd-HHmmss").format(new Date()) + ".csv";
+		append(filename, "Island," + ReportEntry.HEADER + "\n");
+		
+		try {
+			double[][][] populations = new double[this.islands][0][];
+			for (int e = 0; e < this.epochs; e++) {
+				ClusterProtocol.Result[] epoch_results = runEpoch(e, populations);
+				
+				// Reports, and the fitness of the last generation of each island
+				StringBuilder summary = new StringBuilder("Epoch " + (e + 1) + ":");
+				for (int k = 0; k < this.islands; k++) {
+					for (String report : epoch_results[k].reports)
+						append(filename, (k + 1) + "," + report + "\n");
+					ReportEntry last = ReportEntry.parse(epoch_results[k].reports.lastElement());
+					summary.append(String.format(" %.4f", last.avg_fitness));
+				}
+				System.out.println(summary);
+				
+				// Migration around the ring
+				for (int k = 0; k < this.islands; k++) {
+					double[][] population = epoch_results[k].population;
+					double[][] migrants = epoch_results[(k + this.islands - 1) % this.islands].migrants;
+					int count = Math.min(migrants.length, population.length);
+					for (int m = 0; m < count; m++)
+						population[population.length - 1 - m] = migrants[m];
+					populations[k] = population;
+				}
+			}
+		} finally {
+			this.finished = true;
+			server.close();
+			quitWorkers(acceptor);
+			this.writer.close();
+		}
+	}
+	
+	/**
+	 * Waits for the connection threads to tell their workers to quit, which they do on their
+	 * next check for the end of the run. The threads are daemons, so without this the process
+	 * could exit first, and remote workers would try to reconnect instead of quitting. A thread
+	 * still busy with a job, which only happens when the run failed, is not waited for long.
+	 */
+	private void quitWorkers(Thread acceptor) {
+		long deadline = System.currentTimeMillis() + QUIT_TIMEOUT;
+		try {
+			// No connection is added once the acceptor has stopped
+			acceptor.join(QUIT_TIMEOUT);
+			for (Thread t : this.connections.toArray(new Thread[0])) {
+				long wait = deadline - System.currentTimeMillis();
+				if (wait <= 0)
+					break;
+				t.join(wait);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Queues the job of each island for an epoch and waits for all of them to finish. The epoch
+	 * fails if jobs are left and no worker has been connected for the timeout.
+	 */
+	private ClusterProtocol.Result[] runEpoch(int epoch, double[][][] populations) throws IOException {
+		synchronized (this.lock) {
+			this.results = new ClusterProtocol.Result[this.islands];
+			this.attempts = new int[this.islands];
+			this.remaining = this.islands;
+		}
+		for (int k = 0; k < this.islands; k++) {
+			ClusterProtocol.Job job = new ClusterProtocol.Job();
+			job.id = this.next_job_id++;
+			job.island = k;
+			job.first_generation = epoch * this.interval + 1;
+			job.seed = ReproductionEngine.mix(ReproductionEngine.mix(this.seed + k) + epoch);
+			job.generations = this.interval;
+			job.migrants = this.migrant_count;
+			job.params = this.params.toString();
+			job.prey_nn = this.prey_nn;
+			job.predator_nn = this.predator_nn;
+			job.population = populations[k];
+			this.pending.add(job);
+		}
+		
+		synchronized (this.lock) {
+			while (this.remaining > 0 && this.error == null) {
+				if (this.connected == 0 && System.nanoTime() - this.unattended_since > this.timeout * 1000000000L)
+					throw new IOException("No worker has been connected for " + this.timeout + " seconds");
+				try {
+					this.lock.wait(POLL_INTERVAL * 1000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for workers");
+				}
+			}
+			if (this.error != null)
+				throw new IOException(this.error);
+			return this.results;
+		}
+	}
+	
+	/**
+	 * Accepts worker connections until the server is closed, serving each on its own thread.
+	 */
+	private void accept(ServerSocket server) {
+		while (!this.finished) {
+			final Socket socket;
+			try {
+				socket = server.accept();
+			} catch (IOException e) {
+				if (!this.finished)
+					System.err.println("Coordinator: " + e.getMessage());
+				return;
+			}
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					serve(socket);
+				}
+			}, "Coordinator Connection");
+			t.setDaemon(true);
+			this.connections.add(t);
+			t.start();
+		}
+	}
+	
+	/**
+	 * Sends jobs to a worker until the run is finished or the connection fails. A job that
+	 * was in progress when the connection failed is queued again.
+	 */
+	private void serve(Socket socket) {
+		String name = socket.getRemoteSocketAddress().toString();
+		ClusterProtocol.Job job = null;
+		boolean counted = false;
+		try {
+			socket.setSoTimeout(this.timeout * 1000);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+			String hello = ClusterProtocol.readLine(in);
+			if (hello.startsWith("HELLO "))
+				name = hello.substring(6);
+			System.out.println("Worker connected: " + name);
+			synchronized (this.lock) {
+				this.connected++;
+				counted = true;
+			}
+			
+			while (true) {
+				job = this.pending.poll(POLL_INTERVAL, TimeUnit.SECONDS);
+				if (job == null) {
+					if (this.finished) {
+						out.println("QUIT");
+						out.flush();
+						return;
+					}
+					continue;
+				}
+				
+				job.write(out);
+				ClusterProtocol.Result result = new ClusterProtocol.Result();
+				String failure = readResult(in, job, result);
+				ClusterProtocol.Job done = job;
+				job = null;
+				if (failure == null)
+					completed(done, result);
+				else
+					failed(done, name + ": " + failure);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (SocketException e) {
+			if (!this.finished)
+				System.err.println("Worker " + name + " disconnected: " + e.getMessage());
+		} catch (IOException e) {
+			System.err.println("Worker " + name + ": " + e.getMessage());
+		} finally {
+			if (job != null)
+				failed(job, name + " was lost");
+			if (counted) {
+				synchronized (this.lock) {
+					this.connected--;
+					if (this.connected == 0)
+						this.unattended_since = System.nanoTime();
+				}
+			}
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Already closed
+			}
+		}
+	}
+	
+	/**
+	 * Reads the results of a job.
+	 * 
+	 * @return null if the job finished, or the message of a worker that failed it
+	 */
+	private String readResult(BufferedReader in, ClusterProtocol.Job job, ClusterProtocol.Result result)
+			throws IOException {
+		String prefix = "REPORT " + job.id + " ";
+		while (true) {
+			String line = ClusterProtocol.readLine(in);
+			if (line.startsWith(prefix))
+				result.reports.add(line.substring(prefix.length()));
+			else if (line.startsWith("MIGRANTS "))
+				result.migrants = ClusterProtocol.readGenomes(line, in, "MIGRANTS");
+			else if (line.startsWith("POPULATION "))
+				result.population = ClusterProtocol.readGenomes(line, in, "POPULATION");
+			else if (line.equals("DONE " + job.id)) {
+				if (result.migrants == null || result.population == null || result.reports.size() != job.generations)
+					return "Incomplete results";
+				return null;
+			}
+			else if (line.startsWith("FAILED " + job.id))
+				return line.substring(Math.min(line.length(), ("FAILED " + job.id).length() + 1));
+			else
+				throw new IOException("Unexpected message \"" + line + "\"");
+		}
+	}
+	
+	private void completed(ClusterProtocol.Job job, ClusterProtocol.Result result) {
+		synchronized (this.lock) {
+			if (this.results[job.island] == null) {
+				this.results[job.island] = result;
+				this.remaining--;
+				this.lock.notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Queues a job again, or ends the run if it has failed too many times.
+	 */
+	private void failed(ClusterProtocol.Job job, String message) {
+		synchronized (this.lock) {
+			if (this.finished || this.error != null)
+				return;
+			this.attempts[job.island]++;
+			System.err.println("Job " + job.id + " (island " + (job.island + 1) + ") failed: " + message);
+			if (this.attempts[job.island] > this.retries) {
+				this.error = "Job " + job.id + " failed " + this.attempts[job.island] + " times";
+				this.lock.notifyAll();
+				return;
+			}
+		}
+		this.pending.add(job);
+	}
+	
+	/**
+	 * Appends text to the report file on the writer thread.
+	 */
+	private void append(final String filename, final String text) {
+		this.writer.submit(new BackgroundWriter.Job() {
+			@Override
+			public String run() throws IOException {
+				FileWriter out = new FileWriter(filename, true);
+				try {
+					out.write(text);
+				} finally {
+					out.close();
+				}
+				return null;
+			}
+		}, null, BackgroundWriter.OverflowPolicy.Block);
+	}
+	
+	private static String readFile(String filename) throws IOException {
+		BufferedReader in = new BufferedReader(new FileReader(filename));
+		try {
+			StringBuilder text = new StringBuilder();
+			String line;
+			while ((line = in.readLine()) != null)
+				text.append(line).append('\n');
+			return text.toString();
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package env;
+
+import java.util.Random;
+
+/**
+ * Elitist selection. The fittest animats are carried into the next generation unchanged,
+ * as exact copies, and the parents of the remaining children are chosen by another strategy.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class ElitistSelection implements SelectionStrategy {
+	private final int elite_count;
+	private final SelectionStrategy rest;
+	private int[] top = new int[0];
+	private int[] rest_parents = new int[0];
+	private boolean[] rest_mutate = new boolean[0];
+	
+	/**
+	 * Constructs a new ElitistSelection.
+	 * 
+	 * @param elite_count number of animats copied unchanged
+	 * @param rest strategy for the remaining children
+	 */
+	public ElitistSelection(int elite_count, SelectionStrategy rest) {
+		this.elite_count = elite_count;
+		this.rest = rest;
+	}
+	
+	/**
+	 * Copies the fittest animats, then fills the remaining children with the other strategy.
+	 */
+	@Override
+	public void select(double[] fitness, int count, int children, Random random, int[] parents, boolean[] mutate) {
+		int k = Math.min(Math.min(this.elite_count, count), children);
+		if (this.top.length < k)
+			this.top = new int[k];
+		TruncationSelection.selectTop(fitness, count, k, this.top);
+		for (int c = 0; c < k; c++) {
+			parents[c] = this.top[c];
+			mutate[c] = false;
+		}
+		
+		int n = children - k;
+		if (n == 0)
+			return;
+		if (this.rest_parents.length < n) {
+			this.rest_parents = new int[n];
+			this.rest_mutate = new boolean[n];
+		}
+		this.rest.select(fitness, count, n, random, this.rest_parents, this.rest_mutate);
+		System.arraycopy(this.rest_parents, 0, parents, k, n);
+		System.arraycopy(this.rest_mutate, 0, mutate, k, n);
+	}
+}
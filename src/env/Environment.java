@@ -3,38 +3,44 @@ package env;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.RenderingHints;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.VolatileImage;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Random;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.Vector;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 import nn.NeuralNetworkBase;
 
 /**
  * The Environment class creates and draws the smiluation window, and handles the creation
- * and interaction of all objects in the simulation. 
+ * and interaction of all objects in the simulation. The simulation runs on its own thread
+ * and is drawn by the window at a capped frame rate, so the two do not slow each other down.
  * 
  * @author Justin Morgan
- * 
+ *
  */
 
-public class Environment extends JFrame {
-
-	/**
-	 *
-	 */
-	private static final long serialVersionUID = 1L;
+public class Environment {
 	
 	/* Rendering and Component Constants */
 	
@@ -42,6 +48,7 @@ public class Environment extends JFrame {
 	private final int VIEW_HEIGHT = 1000;
 	
 	private final int REFRESH_RATE = 17; // ms
+	private final long TICK_RATE_INTERVAL = 1000000000L; // ns
 	
 	private final int WATCHER_OFFS_X = 10;
 	private final int WATCHER_OFFS_Y = VIEW_HEIGHT - 230;
@@ -54,41 +61,63 @@ public class Environment extends JFrame {
 	private final int HOLE_SELECT_RADIUS = 20;
 	private final int FOOD_SELECT_RADIUS = 10;
 	
+	private final double ZOOM_STEP = 1.1;
+	private final double POINT_ZOOM = 0.5; // below this zoom, animats are drawn as points
+	private final double DENSITY_ZOOM = 0.2; // below this zoom, crowded areas are drawn as tiles
+	private final int POINT_SIZE = 3; // pixels
+	private final int DENSITY_TILE_SIZE = 16; // pixels
+	private final int DENSITY_TILE_MIN = 3; // prey
+	private final int DENSITY_TILE_MAX = 24; // prey
+	private final Color OUTSIDE_COLOR = new Color(30, 45, 30);
+	
+	private final double GRADIENT_CELL_SIZE = 4.0; // distance between gradient field samples
+	private final boolean GRADIENT_EXACT = false; // compute sensors directly from each source
+	
 	/* Simulation Constants */
 	
+	private final int WORLD_WIDTH = 1400;
+	private final int WORLD_HEIGHT = 1000;
+	
 	private final int GEN_EPOCH_LEN = 3600; // 1 minute
 	private final int MEASURE_FITNESS_INTERVAL = 60; // every second
+	private final int CORPSE_TIMEOUT = 600; // epochs a corpse remains in steady-state mode
+	private final int STEADY_TOURNAMENT_SIZE = 3; // default selection in steady-state mode
 	
 	/* Prey Constants */
 	
 	private final int PREY_COUNT = 30;
-	private final int PREY_PARENT_MAX = 5;
-	private final int PREY_CHILDREN_PER = 6;
-	public final double PREY_G_RADIUS = 120.0;
+	private final int PREY_PARENT_MAX; // from Parameters
+	private final int PREY_CHILDREN_PER; // from Parameters
+	public static final double PREY_G_RADIUS = 120.0;
 	private final double PREY_C_RADIUS = 20.0;
-	public final double PREY_SHOUT_MIN_RADIUS = 40.0;
-	public final double PREY_SHOUT_MAX_RADIUS = 800.0;
+	public static final double PREY_SHOUT_MIN_RADIUS = 40.0;
+	public static final double PREY_SHOUT_MAX_RADIUS = 800.0;
 	private final double PREY_ENERGY = 40.0;
+	private final int SHOUT_GRID_MIN = 16; // shouting prey needed before a grid is used to find them
+	private final double PREY_SENSOR_REACH = 10.0; // distance of a prey's sensors from its location
+	private final double MORTON_CELL_SIZE = 8.0; // cell size prey locations are rounded to when sorting
 	
 	/* Predator Constants */
 	
 	private final int PREDATOR_MAX = 6;
-	private final int PREDATOR_NEXT_EPOCH_MAX = 350;
+	private final int PREDATOR_NEXT_EPOCH_MAX; // from Parameters
 	private final double PREDATOR_START_ANGLE = 35.0;
-	public final double PREDATOR_G_RADIUS = 160.0;
-
+	public static final double PREDATOR_G_RADIUS = 160.0;
+	private final int PREDATOR_POPULATION = 8; // genomes in the co-evolving predator population
+	private final int PREDATOR_PARENT_MAX = 3;
+	
 	/* Food Constants */
 	
 	private final int FOOD_COUNT = 35;
-	public final double FOOD_G_RADIUS = 75.0;
+	public static final double FOOD_G_RADIUS = 75.0;
 	private final double FOOD_C_RADIUS = 15.0;
 	private final double FOOD_NEAREST_DISTANCE = 100.0;
-	private final double FOOD_ENERGY = 60.0;
+	private final double FOOD_ENERGY; // from Parameters
 	private final boolean FOOD_RESPAWN = true;
 	
 	/* Hole Constants */
 	
-	public final double HOLE_G_RADIUS = 150.0;
+	public static final double HOLE_G_RADIUS = 150.0;
 	private final double HOLE_ENTER_RADIUS = 15.0;
 	private final double HOLE_SEPARATION = 30.0;
 	
@@ -122,33 +151,126 @@ public class Environment extends JFrame {
 		}
 	}
 	
+	/**
+	 * SpeedState sets how many epochs the simulation runs for each frame drawn in the window.
+	 * States are raised with the '+' key and lowered with the '-' key. At Max speed, the
+	 * simulation runs as many epochs as it can in the time of one frame.
+	 */
+	public enum SpeedState {
+		x1(1),
+		x10(10),
+		x100(100),
+		Max(0);
+		
+		private final int epochs_per_frame;
+		
+		private SpeedState(int epochs_per_frame) {
+			this.epochs_per_frame = epochs_per_frame;
+		}
+		
+		/**
+		 * Returns the number of epochs run per frame, or 0 if unbounded.
+		 * 
+		 * @return epochs
+		 */
+		public int getEpochsPerFrame() {
+			return this.epochs_per_frame;
+		}
+		
+		public SpeedState faster() {
+			return values()[Math.min(ordinal() + 1, values().length - 1)];
+		}
+		
+		public SpeedState slower() {
+			return values()[Math.max(ordinal() - 1, 0)];
+		}
+	}
+	
 	/* Locals */
 	
 	// Controllers
+	private JFrame frame;
 	private ViewPanel viewPanel;
-	private Timer timer;
+	private Timer render_timer;
+	private Thread sim_thread;
 	private Watcher watcher;
+	private BackgroundWriter backgroundwriter;
 	private ReportWriter reportwriter;
-	private boolean started = false;
-	private DebugState debug = DebugState.None;
-	private Random random;
+	private Camera camera;
+	private SnapshotBuffer snapshots;
+	private String watcher_status = "";
+	private long watcher_status_time = 0;
+	private volatile boolean started = false;
+	private volatile DebugState debug = DebugState.None;
+	private volatile SpeedState speed = SpeedState.x1;
+	private Random random; // genomes and mutations
+	private Random world_random; // food, predators and placement
+	private final boolean headless;
+	private Vector<ReportEntry> headless_report = new Vector<ReportEntry>();
+	private int migrant_count = 0;
+	private double[][] migrants = new double[0][]; // fittest genomes of the last generation
 	
 	// Simulation
 	private int epoch;
 	private int generation_num;
+	private long world_epoch = 0; // epochs since the simulation started
+	private int next_prey_id = 0;
+	private int sort_interval = 0; // epochs between sorts of the alive prey, or 0 for never
+	private boolean steady_state = false;
+	private int fitness_window = GEN_EPOCH_LEN;
+	private int corpse_timeout = CORPSE_TIMEOUT;
 	private int next_predator_epoch;
-	private boolean pause = false;
+	private volatile boolean pause = false;
+	private volatile boolean skip = false;
 	private boolean retry = false;
+	private volatile double epochs_per_second = 0.0;
 	
 	// Neural Networks
 	private NeuralNetworkBase prey_nn_base;
 	private NeuralNetworkBase predator_nn_base;
 	
 	// Entities
+	private Vector<Species> species; // prey species sharing the world
 	private Vector<Prey> prey;
+	private Vector<Prey> prey_next; // filled with the next generation while prey holds the parents
+	private Vector<Prey> breeders; // living prey, in steady-state mode
+	private Vector<Prey> newborns; // replacements for dead prey, in steady-state mode
+	private HashSet<Prey> departed; // prey leaving this epoch, in steady-state mode
 	private Vector<Predator> predators;
 	private Vector<Food> food;
 	private Vector<Hole> holes;
+	private PreyIndex prey_index;
+	private ReproductionEngine reproduction;
+	private Vector<Predator> predator_genomes = null; // co-evolving predator population, or null for random predators
+	private Vector<Predator> predator_genomes_next;
+	private ReproductionEngine predator_reproduction;
+	private int next_predator_genome = 0;
+	private int[] predator_spawns = new int[0]; // predators spawned from each genome this generation
+	private int[] predator_bites = new int[0]; // bites made by those predators
+	
+	// Pools of objects reused between spawns
+	private ObjectPool<Prey> prey_pool; // pool of the first species
+	private ObjectPool<Predator> predator_pool;
+	private ObjectPool<Predator> predator_genome_pool;
+	private ObjectPool<Food> food_pool;
+	private ObjectPool<Hole> hole_pool;
+	private Vector<Food> food_eaten;
+	
+	// Prey shouting this epoch
+	private Prey[] shout_prey = new Prey[16];
+	private double[] shout_radius = new double[16];
+	private int shout_count = 0;
+	private double shout_radius_max = 0.0;
+	private SpatialGrid shout_grid;
+	private ContactSystem contacts;
+	private FoodPlacer food_placer;
+	private WorldPartition partition = null; // null to update prey on the simulation thread
+	private WorldPartition.TileTask tile_task;
+	
+	// Gradient fields of stationary sources
+	private GradientField food_field;
+	private GradientField hole_field; // public holes only
+	private int private_hole_count = 0;
 	
 	
 	/**
@@ -158,44 +280,296 @@ public class Environment extends JFrame {
 	 * @param predator_nn_base neural network base for predator animats
 	 */
 	public Environment(NeuralNetworkBase prey_nn_base, NeuralNetworkBase predator_nn_base) {
+		this(prey_nn_base, predator_nn_base, new Parameters());
+	}
+	
+	/**
+	 * Constructs an Environment object with the given parameters and initializes the
+	 * simulation window. The neural network parameters should already have been applied to
+	 * the bases.
+	 * 
+	 * @param prey_nn_base neural network base for prey animats
+	 * @param predator_nn_base neural network base for predator animats
+	 * @param params simulation parameters
+	 */
+	public Environment(NeuralNetworkBase prey_nn_base, NeuralNetworkBase predator_nn_base, Parameters params) {
+		this(prey_nn_base, predator_nn_base, params, new Random(), new Random(), false);
+	}
+	
+	/**
+	 * Constructs a headless Environment for running trials and sweeps. A headless environment
+	 * has no simulation window, report writer or background threads, and all of its
+	 * randomness comes from the seed, so a run with the same seed always has the same result.
+	 * The world (food, predators and the placement of prey) draws from its own generator, so
+	 * networks that draw a different number of random weights still meet the same world.
+	 * 
+	 * @param prey_nn_base neural network base for prey animats
+	 * @param predator_nn_base neural network base for predator animats
+	 * @param params simulation parameters
+	 * @param seed random seed
+	 */
+	public Environment(NeuralNetworkBase prey_nn_base, NeuralNetworkBase predator_nn_base, Parameters params, long seed) {
+		this(prey_nn_base, predator_nn_base, params, new Random(seed), new Random(ReproductionEngine.mix(seed)), true);
+	}
+	
+	private Environment(NeuralNetworkBase prey_nn_base, NeuralNetworkBase predator_nn_base, Parameters params,
+			Random random, Random world_random, boolean headless) {
+		prey_nn_base.setInterface(Prey.NN_INPUTS, Prey.NN_OUTPUTS);
+		predator_nn_base.setInterface(Predator.NN_INPUTS, Predator.NN_OUTPUTS);
 		this.prey_nn_base = prey_nn_base;
 		this.predator_nn_base = predator_nn_base;
-		initWindow();
+		this.headless = headless;
+		
+		this.PREY_PARENT_MAX = params.prey_parent_max;
+		this.PREY_CHILDREN_PER = params.prey_children_per;
+		this.PREDATOR_NEXT_EPOCH_MAX = params.predator_next_epoch_max;
+		this.FOOD_ENERGY = params.food_energy;
+		
+		this.watcher = new Watcher(WATCHER_OFFS_X, WATCHER_OFFS_Y);
+		if (!headless) {
+			this.backgroundwriter = new BackgroundWriter("Writer");
+			this.reportwriter = new ReportWriter(backgroundwriter, REPORT_STATUS_OFFS_X, REPORT_STATUS_OFFS_Y);
+			this.camera = new Camera();
+			this.snapshots = new SnapshotBuffer();
+		}
+		this.random = random;
+		this.world_random = world_random;
+		this.prey = new Vector<Prey>();
+		this.prey_next = new Vector<Prey>();
+		this.breeders = new Vector<Prey>();
+		this.newborns = new Vector<Prey>();
+		this.departed = new HashSet<Prey>();
+		this.predators = new Vector<Predator>();
+		this.food = new Vector<Food>();
+		this.holes = new Vector<Hole>();
+		this.food_eaten = new Vector<Food>();
+		this.prey_index = new PreyIndex();
+		this.reproduction = new ReproductionEngine(new TruncationSelection(PREY_PARENT_MAX));
+		this.predator_reproduction = new ReproductionEngine(new TruncationSelection(PREDATOR_PARENT_MAX));
+		
+		this.tile_task = new WorldPartition.TileTask() {
+			@Override
+			public void run(WorldPartition.Tile tile) {
+				for (int i = 0; i < tile.prey_count; i++) {
+					updatePrey(tile.prey[i], tile, tile.random);
+					tile.alive++;
+				}
+			}
+		};
+		
+		this.species = new Vector<Species>();
+		this.species.add(new Species("Prey", 0, prey_nn_base, PREY_COUNT, this));
+		this.prey_pool = this.species.elementAt(0).getPool();
+		this.predator_pool = new ObjectPool<Predator>() {
+			@Override
+			protected Predator create() {
+				return new Predator(Environment.this.predator_nn_base, Environment.this);
+			}
+		};
+		this.predator_genome_pool = new ObjectPool<Predator>() {
+			@Override
+			protected Predator create() {
+				return new Predator(Environment.this.predator_nn_base, Environment.this);
+			}
+		};
+		this.food_pool = new ObjectPool<Food>() {
+			@Override
+			protected Food create() {
+				return new Food(new Point2D.Double(), Environment.this);
+			}
+		};
+		this.hole_pool = new ObjectPool<Hole>() {
+			@Override
+			protected Hole create() {
+				return new Hole(new Point2D.Double(), null, Environment.this);
+			}
+		};
+		this.shout_grid = new SpatialGrid();
+		this.contacts = new ContactSystem(FOOD_C_RADIUS, HOLE_ENTER_RADIUS, HOLE_SEPARATION, PREY_C_RADIUS);
+		this.food_placer = new FoodPlacer(WORLD_WIDTH, WORLD_HEIGHT, HABITAT_ZONE_LEFT, HABITAT_ZONE_TOP,
+				HABITAT_ZONE_RIGHT, HABITAT_ZONE_BOTTOM, FOOD_NEAREST_DISTANCE, this.world_random, !headless);
+		
+		this.food_field = new GradientField(0, 0, WORLD_WIDTH, WORLD_HEIGHT, FOOD_G_RADIUS, GRADIENT_CELL_SIZE);
+		this.food_field.setExact(GRADIENT_EXACT);
+		this.hole_field = new GradientField(0, 0, WORLD_WIDTH, WORLD_HEIGHT, HOLE_G_RADIUS, GRADIENT_CELL_SIZE);
+		this.hole_field.setExact(GRADIENT_EXACT);
 	}
-
+	
 	/**
-	 * Creates the simulation window and the Watcher and ReportWriter components.
+	 * Sets the strategy used to choose the parents of each new generation of prey.
+	 * 
+	 * @param strategy selection strategy
 	 */
-	public void initWindow() {
-		setTitle("CS263C - Burrowing Animats");
+	public void setSelectionStrategy(SelectionStrategy strategy) {
+		this.reproduction.setStrategy(strategy);
+	}
+	
+	/**
+	 * Sets whether the simulation runs in steady-state mode. In steady-state mode there is no
+	 * turnover of the whole population: each prey that dies is replaced at once by the child
+	 * of a living prey, and fitness is measured over a rolling window of each prey's life.
+	 * Generations only mark when a report entry is added. Also sets the selection strategy
+	 * to the default for the mode, so this should be called before setSelectionStrategy().
+	 * 
+	 * @param steady_state true for steady-state mode
+	 */
+	public void setSteadyState(boolean steady_state) {
+		this.steady_state = steady_state;
+		if (steady_state)
+			this.reproduction.setStrategy(new TournamentSelection(STEADY_TOURNAMENT_SIZE));
+		else
+			this.reproduction.setStrategy(new TruncationSelection(PREY_PARENT_MAX));
+	}
+	
+	/**
+	 * Replaces the prey with several species sharing the world. Each species has its own
+	 * neural network base and number of prey per generation, and breeds only with its own
+	 * members. Should be set before the simulation is started. Headless trials, sweeps and
+	 * islands use only the first species.
+	 * 
+	 * @param names name of each species
+	 * @param nn_bases neural network base of each species
+	 * @param quotas number of prey of each species in each generation
+	 */
+	public void setSpecies(String[] names, NeuralNetworkBase[] nn_bases, int[] quotas) {
+		this.species.clear();
+		for (int i = 0; i < names.length; i++) {
+			nn_bases[i].setInterface(Prey.NN_INPUTS, Prey.NN_OUTPUTS);
+			this.species.add(new Species(names[i], i, nn_bases[i], quotas[i], this));
+		}
+		this.prey_nn_base = nn_bases[0];
+		this.prey_pool = this.species.elementAt(0).getPool();
+	}
+	
+	/**
+	 * Returns the prey species sharing the world.
+	 * 
+	 * @return species
+	 */
+	public Vector<Species> getSpecies() {
+		return this.species;
+	}
+	
+	/**
+	 * Sets whether predators evolve alongside the prey. By default every predator is spawned
+	 * with random connection weights. When predators evolve, they are spawned in turn from a
+	 * small population of genomes, and at the end of each generation the genomes whose
+	 * predators bit the most prey become the parents of the next population. Should be set
+	 * before the simulation is started.
+	 * 
+	 * @param evolve true to evolve predators
+	 */
+	public void setPredatorEvolution(boolean evolve) {
+		if (!evolve) {
+			this.predator_genomes = null;
+			return;
+		}
 		
-		setSize(VIEW_WIDTH, VIEW_HEIGHT);
-		this.setResizable(false);
-		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		setLocationRelativeTo(null);
+		this.predator_genomes = new Vector<Predator>();
+		this.predator_genomes_next = new Vector<Predator>();
+		for (int i = 0; i < PREDATOR_POPULATION; i++) {
+			Predator g = this.predator_genome_pool.acquire();
+			g.resetRandom(this.random);
+			this.predator_genomes.add(g);
+		}
+		this.next_predator_genome = 0;
+		this.predator_spawns = new int[PREDATOR_POPULATION];
+		this.predator_bites = new int[PREDATOR_POPULATION];
+	}
+	
+	/**
+	 * Sets the length of the window fitness is measured over in steady-state mode.
+	 * 
+	 * @param epochs window length
+	 */
+	public void setFitnessWindow(int epochs) {
+		this.fitness_window = Math.max(MEASURE_FITNESS_INTERVAL, epochs);
+	}
+	
+	/**
+	 * Sets how long a corpse remains in the environment in steady-state mode, if it is not
+	 * eaten first.
+	 * 
+	 * @param epochs corpse lifetime
+	 */
+	public void setCorpseTimeout(int epochs) {
+		this.corpse_timeout = Math.max(0, epochs);
+	}
+	
+	/**
+	 * Creates the simulation window.
+	 */
+	public void initWindow() {
+		this.frame = new JFrame();
+		this.frame.setTitle("CS263C - Burrowing Animats");
 		
-		this.watcher = new Watcher(WATCHER_OFFS_X, WATCHER_OFFS_Y);
-		this.reportwriter = new ReportWriter(REPORT_STATUS_OFFS_X, REPORT_STATUS_OFFS_Y);
-		this.random = new Random();
+		this.frame.setSize(VIEW_WIDTH, VIEW_HEIGHT);
+		this.frame.setResizable(false);
+		this.frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		this.frame.setLocationRelativeTo(null);
 		
 		this.viewPanel = new ViewPanel();
-		add(this.viewPanel);
+		this.frame.add(this.viewPanel);
 		
-		setVisible(true);
+		this.frame.setVisible(true);
 	}
 	
 	/**
-	 * Starts the main loop of the simulation.
+	 * Opens the simulation window and starts the main loop of the simulation. The main loop
+	 * runs on its own thread, and the window is redrawn at a capped frame rate independently
+	 * of how fast the simulation is running.
 	 */
 	public void start() {
+		initWindow();
+		
 		// Setup initial populations
 		spawnGeneration();
+		publishSnapshot();
 		
 		this.started = true;
 		
 		// Start main loop
-		timer = new Timer();
-		timer.scheduleAtFixedRate(new MainLoop(this), 0, REFRESH_RATE);
+		sim_thread = new Thread(new MainLoop(), "Simulation");
+		sim_thread.setDaemon(true);
+		sim_thread.start();
+		
+		// Redraw the latest state once per frame. Repaints requested while a frame is still
+		// being drawn are coalesced by Swing, so slow frames are dropped rather than
+		// holding back the simulation.
+		render_timer = new Timer(REFRESH_RATE, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				viewPanel.repaint();
+			}
+		});
+		render_timer.start();
+	}
+	
+	/**
+	 * Ends the current generation, adding it to the report, and begins the next one. In
+	 * steady-state mode the population carries on, and only the generation count changes.
+	 */
+	private void nextGeneration() {
+		// Update report for last generation
+		if (!headless)
+			reportwriter.addGeneration(generation_num, prey, holes, species);
+		else
+			headless_report.add(ReportWriter.createEntry(generation_num, prey, holes));
+		if (migrant_count > 0)
+			recordMigrants();
+		if (predator_genomes != null)
+			evolvePredators();
+		
+		if (steady_state) {
+			generation_num++;
+			epoch = 0;
+			return;
+		}
+		
+		// Begin new generation
+		spawnGeneration();
+		retry = false;
+		watcher.resetTarget();
 	}
 	
 	/**
@@ -203,289 +577,840 @@ public class Environment extends JFrame {
 	 * and spawns new prey in the habitat zone and food in the foraging zone. If called after the first
 	 * generation, parents with the highest fitness level from the previous generation are chosen
 	 * to reproduce.
+	 * 
+	 * Parents are chosen by the selection strategy, which by default takes the fittest prey.
+	 * Objects from the previous generation are returned to their pools and reused, so that once
+	 * the pools have filled, a new generation allocates nothing.
 	 */
 	public void spawnGeneration() {
 		// Prey
 		if (this.generation_num > 0) {
-			Collections.sort(this.prey, new AnimatComparator());
-			Vector<Prey> children = new Vector<Prey>();
-			
-			for (int i = 0; i < PREY_PARENT_MAX; i++) {
-				for (int j = 0; j < PREY_CHILDREN_PER; j++) {
-					Prey pc = new Prey(this.prey_nn_base, this.prey.elementAt(i), true, this);
-					pc.setLocation(new Point2D.Double(
-							HABITAT_ZONE_LEFT + this.random.nextDouble() * (HABITAT_ZONE_RIGHT - HABITAT_ZONE_LEFT),
-							HABITAT_ZONE_TOP + this.random.nextDouble() * (HABITAT_ZONE_BOTTOM - HABITAT_ZONE_TOP)
-									));
-					pc.setRot(this.random.nextDouble() * 360.0);
-					children.add(pc);
+			Vector<Prey> children = this.prey_next;
+			if (this.species.size() == 1) {
+				this.reproduction.reproduce(this.prey, children, PREY_PARENT_MAX * PREY_CHILDREN_PER, this.prey_pool, this.random);
+			}
+			else {
+				// Each species breeds only with its own members, and keeps its quota
+				for (Species s : this.species) {
+					s.gatherMembers(this.prey);
+					this.reproduction.reproduce(s.members, children, s.getQuota(), s.getPool(), this.random);
+					s.members.clear();
 				}
 			}
-
+			
+			for (Prey pc : children)
+				placeNewborn(pc);
+			
+			// The parents are no longer needed once the children have inherited from them
+			releasePrey(this.prey);
+			this.prey_next = this.prey;
 			this.prey = children;
 		}
 		else {
-			this.prey = new Vector<Prey>();
-			for (int i = 0; i < PREY_COUNT; i++) {
-				Prey p = new Prey(this.prey_nn_base, this);
-				p.setLocation(new Point2D.Double(
-						HABITAT_ZONE_LEFT + this.random.nextDouble() * (HABITAT_ZONE_RIGHT - HABITAT_ZONE_LEFT),
-						HABITAT_ZONE_TOP + this.random.nextDouble() * (HABITAT_ZONE_BOTTOM - HABITAT_ZONE_TOP)
-								));
-				p.setRot(this.random.nextDouble() * 360.0);
-				this.prey.add(p);
+			releasePrey(this.prey);
+			for (Species s : this.species) {
+				for (int i = 0; i < s.getQuota(); i++) {
+					Prey p = s.getPool().acquire();
+					p.resetRandom(this.random);
+					placeNewborn(p);
+					this.prey.add(p);
+				}
 			}
 		}
 		
+		resetWorld();
+	}
+	
+	/**
+	 * Returns each prey in a set to the pool of its species, and clears the set.
+	 * 
+	 * @param prey set of prey animats
+	 */
+	private void releasePrey(Vector<Prey> prey) {
+		for (int i = 0; i < prey.size(); i++) {
+			Prey p = prey.elementAt(i);
+			p.getSpecies().getPool().release(p);
+		}
+		prey.clear();
+	}
+	
+	/**
+	 * Places a newly spawned prey at a random position in the habitat zone, facing a random
+	 * direction, and gives it the next prey id.
+	 * 
+	 * @param p prey object
+	 */
+	private void placeNewborn(Prey p) {
+		p.setLocation(
+				HABITAT_ZONE_LEFT + this.world_random.nextDouble() * (HABITAT_ZONE_RIGHT - HABITAT_ZONE_LEFT),
+				HABITAT_ZONE_TOP + this.world_random.nextDouble() * (HABITAT_ZONE_BOTTOM - HABITAT_ZONE_TOP)
+						);
+		p.setRot(this.world_random.nextDouble() * 360.0);
+		p.setBirthEpoch(this.world_epoch);
+		p.setId(this.next_prey_id++);
+	}
+	
+	/**
+	 * Replaces the predator population with the children of the genomes whose predators bit
+	 * the most prey per spawn this generation. Genomes that were not spawned are given the
+	 * mean of those that were. Nothing changes if no predator was spawned.
+	 */
+	private void evolvePredators() {
+		int n = this.predator_genomes.size();
+		double total = 0.0;
+		int spawned = 0;
+		for (int i = 0; i < n; i++) {
+			if (this.predator_spawns[i] == 0)
+				continue;
+			double fitness = (double)this.predator_bites[i] / this.predator_spawns[i];
+			this.predator_genomes.elementAt(i).setFitness(fitness);
+			total += fitness;
+			spawned++;
+		}
+		if (spawned == 0)
+			return;
+		for (int i = 0; i < n; i++) {
+			if (this.predator_spawns[i] == 0)
+				this.predator_genomes.elementAt(i).setFitness(total / spawned);
+		}
+		
+		Vector<Predator> children = this.predator_genomes_next;
+		this.predator_reproduction.reproduce(this.predator_genomes, children, n, this.predator_genome_pool, this.random);
+		this.predator_genome_pool.releaseAll(this.predator_genomes);
+		this.predator_genomes.clear();
+		this.predator_genomes_next = this.predator_genomes;
+		this.predator_genomes = children;
+		
+		// Predators still alive in steady-state mode came from the old genomes, so their
+		// bites are no longer credited to a genome
+		for (int i = 0; i < this.predators.size(); i++)
+			this.predators.elementAt(i).setGenomeIndex(-1);
+		
+		Arrays.fill(this.predator_spawns, 0);
+		Arrays.fill(this.predator_bites, 0);
+	}
+	
+	/**
+	 * Clears the predators, holes and food of the last generation, spawns new food, and
+	 * starts the generation count of the new prey.
+	 */
+	private void resetWorld() {
 		// Predators (clear)
-		this.predators = new Vector<Predator>();
-		this.next_predator_epoch = this.random.nextInt(PREDATOR_NEXT_EPOCH_MAX - 1) + 1;
+		this.predator_pool.releaseAll(this.predators);
+		this.predators.clear();
+		this.next_predator_epoch = this.world_random.nextInt(PREDATOR_NEXT_EPOCH_MAX - 1) + 1;
 		
 		// Food
-		this.food = new Vector<Food>();
+		this.food_pool.releaseAll(this.food);
+		this.food.clear();
+		this.food_field.clear();
+		this.food_placer.clear();
 		for (int i = 0; i < FOOD_COUNT; i++)
 			spawnOneFood();
 		
 		// Holes (clear)
-		this.holes = new Vector<Hole>();
+		this.hole_pool.releaseAll(this.holes);
+		this.holes.clear();
+		this.hole_field.clear();
+		this.private_hole_count = 0;
+		
+		this.prey_index.reset(this.prey);
+		if (this.partition != null)
+			this.partition.seed(this.world_random);
 		
 		// Update parameters
 		this.generation_num++;
 		this.epoch = 0;
 	}
 	
+	/**
+	 * Runs one trial of a genome: a generation in which every prey is a copy of the genome,
+	 * run until the generation would end or every prey has died. Used by headless
+	 * environments; the environment can run further trials, but each trial only depends on
+	 * the seed when the environment is new.
+	 * 
+	 * @param genome animat whose connection weights are copied
+	 * @param epochs length of the trial, or 0 for a full generation
+	 * @return mean fitness of the prey
+	 */
+	public double runTrial(Animat genome, int epochs) {
+		releasePrey(this.prey);
+		for (int i = 0; i < PREY_COUNT; i++) {
+			Prey p = this.prey_pool.acquire();
+			p.resetFromParent(genome, false);
+			placeNewborn(p);
+			this.prey.add(p);
+		}
+		resetWorld();
+		this.retry = false;
+		
+		int end = (epochs > 0) ? Math.min(epochs, GEN_EPOCH_LEN - 1) : GEN_EPOCH_LEN - 1;
+		while (this.epoch < end && !this.retry)
+			step();
+		
+		double fitness_total = 0.0;
+		for (Prey p : this.prey)
+			fitness_total += p.getFitness();
+		return fitness_total / this.prey.size();
+	}
+	
+	/**
+	 * Runs the simulation for a number of generations. Used by headless environments, which
+	 * keep the report entries of each generation instead of writing them.
+	 * 
+	 * @param generations number of generations
+	 * @return report entry of each generation
+	 */
+	public Vector<ReportEntry> runGenerations(int generations) {
+		this.headless_report.clear();
+		if (this.generation_num == 0)
+			spawnGeneration();
+		while (this.headless_report.size() < generations)
+			step();
+		return this.headless_report;
+	}
+	
+	/**
+	 * Replaces the prey with a new generation made from the given genomes, unchanged, and
+	 * starts the generation. Used to continue the evolution of a population received from
+	 * another process.
+	 * 
+	 * @param genomes connection weights of each prey
+	 * @param generation number of the new generation
+	 */
+	public void setPopulation(double[][] genomes, int generation) {
+		releasePrey(this.prey);
+		for (double[] genome : genomes) {
+			Prey p = this.prey_pool.acquire();
+			p.resetFromWeights(genome);
+			placeNewborn(p);
+			this.prey.add(p);
+		}
+		this.generation_num = generation - 1;
+		resetWorld();
+		this.retry = false;
+	}
+	
+	/**
+	 * Returns the connection weights of each prey in the current generation. Between calls
+	 * to runGenerations(), the current generation has just been spawned, so these are the
+	 * genomes the prey were born with.
+	 * 
+	 * @return genomes
+	 */
+	public double[][] getPopulation() {
+		double[][] genomes = new double[this.prey.size()][];
+		for (int i = 0; i < this.prey.size(); i++)
+			genomes[i] = this.prey.elementAt(i).getWeights();
+		return genomes;
+	}
+	
+	/**
+	 * Splits the world into tiles whose prey are updated in parallel. A grid of one tile
+	 * updates prey on the simulation thread, as by default. Should be set before the
+	 * simulation is started.
+	 * 
+	 * @param cols number of columns of tiles
+	 * @param rows number of rows of tiles
+	 * @param threads number of threads that update tiles
+	 */
+	public void setTiles(int cols, int rows, int threads) {
+		if (cols * rows <= 1) {
+			this.partition = null;
+			return;
+		}
+		this.partition = new WorldPartition(WORLD_WIDTH, WORLD_HEIGHT, cols, rows, threads);
+		this.partition.seed(this.world_random);
+	}
+	
+	/**
+	 * Sets how often the list of living prey is sorted by location, so that prey close
+	 * together in the world are updated one after another. The order of the prey set, and
+	 * the ids of the prey, do not change.
+	 * 
+	 * @param epochs epochs between sorts, or 0 to never sort
+	 */
+	public void setSortInterval(int epochs) {
+		this.sort_interval = epochs;
+	}
+	
+	/**
+	 * Measures the time taken to update the sensors of a large population of prey spread
+	 * over the whole world, in random order or sorted by location. Used by headless
+	 * environments; the current generation is replaced.
+	 * 
+	 * @param prey_count number of prey
+	 * @param passes number of timed passes over the prey
+	 * @param sorted sort the prey by location first
+	 * @return mean time per prey per pass, in nanoseconds
+	 */
+	public double benchmarkSensors(int prey_count, int passes, boolean sorted) {
+		releasePrey(this.prey);
+		for (int i = 0; i < prey_count; i++) {
+			Prey p = this.prey_pool.acquire();
+			p.resetRandom(this.random);
+			placeNewborn(p);
+			p.setLocation(this.world_random.nextDouble() * WORLD_WIDTH, this.world_random.nextDouble() * WORLD_HEIGHT);
+			this.prey.add(p);
+		}
+		// After a few generations the pools hand out prey in no particular order
+		Collections.shuffle(this.prey, this.world_random);
+		resetWorld();
+		if (sorted)
+			this.prey_index.sortAlive(MORTON_CELL_SIZE);
+		collectShouts();
+		
+		// One untimed pass, so the timed passes are compiled
+		for (int n = 0; n < this.prey_index.getAliveCount(); n++)
+			updatePreySensors(this.prey_index.getAlive(n), null);
+		
+		long start = System.nanoTime();
+		for (int pass = 0; pass < passes; pass++) {
+			for (int n = 0; n < this.prey_index.getAliveCount(); n++)
+				updatePreySensors(this.prey_index.getAlive(n), null);
+		}
+		return (double)(System.nanoTime() - start) / ((double)passes * this.prey_index.getAliveCount());
+	}
+	
+	/**
+	 * Sets the number of the fittest prey whose genomes are kept at the end of each
+	 * generation, to be sent to other islands.
+	 * 
+	 * @param count number of migrants
+	 */
+	public void setMigrantCount(int count) {
+		this.migrant_count = count;
+	}
+	
+	/**
+	 * Returns the genomes of the fittest prey of the last generation that ended, fittest
+	 * first.
+	 * 
+	 * @return genomes
+	 */
+	public double[][] getMigrants() {
+		return this.migrants;
+	}
+	
+	/**
+	 * Keeps the genomes of the fittest prey of the generation that is ending.
+	 */
+	private void recordMigrants() {
+		Vector<Prey> sorted = new Vector<Prey>(this.prey);
+		Collections.sort(sorted, new AnimatComparator());
+		int count = Math.min(this.migrant_count, sorted.size());
+		this.migrants = new double[count][];
+		for (int i = 0; i < count; i++)
+			this.migrants[i] = sorted.elementAt(i).getWeights();
+	}
+	
 	/**
 	 * Creates one food object in the foraging zone.
 	 */
 	private void spawnOneFood() {
-		boolean success = false;
-		while (!success) {
-			double x, y;
-			int region = this.random.nextInt() % 4;
-			if (region == 0) {
-				x = this.random.nextDouble() * VIEW_WIDTH;
-				y = this.random.nextDouble() * HABITAT_ZONE_TOP;
-			}
-			else if (region == 1) {
-				x = this.random.nextDouble() * HABITAT_ZONE_LEFT;
-				y = this.random.nextDouble() * (HABITAT_ZONE_BOTTOM - HABITAT_ZONE_TOP) + HABITAT_ZONE_TOP;
-			}
-			else if (region == 2) {
-				x = this.random.nextDouble() * (VIEW_WIDTH - HABITAT_ZONE_RIGHT) + HABITAT_ZONE_RIGHT;
-				y = this.random.nextDouble() * (HABITAT_ZONE_BOTTOM - HABITAT_ZONE_TOP) + HABITAT_ZONE_TOP;
-			}
-			else {
-				x = this.random.nextDouble() * VIEW_WIDTH;
-				y = this.random.nextDouble() * (VIEW_HEIGHT - HABITAT_ZONE_BOTTOM) + HABITAT_ZONE_BOTTOM;
-			}
-			
-			// Food must be spaced apart to discourage clustering
-			success = true;
-			for (Food f : this.food) {
-				if (f.getLocation().distance(x, y) <= FOOD_NEAREST_DISTANCE) {
-					success = false;
-					break;
-				}
-			}
-			if (!success)
-				continue;
-			
-			this.food.add(new Food(new Point2D.Double(x, y), this));
-		}
+		// Food must be spaced apart to discourage clustering
+		if (!this.food_placer.place())
+			return; // Foraging zone is full
+		
+		double x = this.food_placer.getX(), y = this.food_placer.getY();
+		Food f = this.food_pool.acquire();
+		f.reset(x, y);
+		this.food.add(f);
+		this.food_field.add(x, y);
 	}
 	
 	
 	/**
 	 * The main loop class for the simulation. Responsible for keeping track of
 	 * elapsed epochs in the current generation and updating all objects in the environment.
+	 * Each frame, the loop runs the number of epochs set by the speed state, then sleeps
+	 * for the remainder of the frame. If the epochs take longer than a frame, the loop
+	 * continues immediately with the next frame instead.
 	 * 
 	 * @author Justin Morgan
-	 *
+	 * 
 	 */
-	private class MainLoop extends TimerTask {
-		private Environment env;
-		
-		public MainLoop(Environment env) {
-			this.env = env;
-		}
+	private class MainLoop implements Runnable {
+		private long rate_start = System.nanoTime();
+		private int rate_epochs = 0;
 		
 		/**
-		 * Runs each time the timer expires.
+		 * Runs the simulation until the program exits.
 		 */
 		@Override
 		public void run() {
-			
-			/* Begin Main Loop */
-
-			if (pause) {
-				viewPanel.repaint();
-				return;
-			}
-			
-			epoch++;
-			if (epoch == GEN_EPOCH_LEN || retry) {
-				// Update report for last generation
-				reportwriter.addGeneration(generation_num, prey, holes);
+			while (true) {
+				long frame_end = System.nanoTime() + REFRESH_RATE * 1000000L;
 				
-				// Begin new generation
-				spawnGeneration();
-				retry = false;
-				watcher.resetTarget();
-			}
-
-			for (Food f : food)
-				f.update();
-			
-			// Update prey
-			double prey_alive = 0;
-			for (Prey p : prey) {
-				if (!p.isAlive())
-					continue;
-				
-				updatePreySensors(p);
-				checkPreyCollision(p);
-				p.update();
-				
-				Point2D loc = p.getLocation();
-				double x = loc.getX(), y = loc.getY();
+				if (skip) {
+					skip = false;
+					nextGeneration();
+				}
 				
-				// Bounds check (bounce off environment wall)
-				if (x < 0 || x > VIEW_WIDTH || y < 0 || y > VIEW_HEIGHT) {
-					double rot = -45.0 + random.nextDouble() * 90.0;
-					if (x < 0)
-						x = 0;
-					if (x > VIEW_WIDTH) {
-						x = VIEW_WIDTH;
-						rot += 180.0;
-					}
-					if (y < 0) {
-						y = 0;
-						rot += 90.0;
+				SpeedState s = speed;
+				if (!pause) {
+					if (s.getEpochsPerFrame() > 0) {
+						for (int i = 0; i < s.getEpochsPerFrame() && !pause && !skip; i++)
+							tick();
 					}
-					if (y > VIEW_HEIGHT) {
-						y = VIEW_HEIGHT;
-						rot += 270.0;
+					else {
+						do {
+							tick();
+						} while (!pause && !skip && System.nanoTime() < frame_end);
 					}
-					p.setRot(rot);
 				}
+				else
+					publishSnapshot(); // Keep selections up to date while paused
 				
-				if (epoch % MEASURE_FITNESS_INTERVAL == 0)
-					p.updateFitness((double)epoch / GEN_EPOCH_LEN);
+				measureRate();
 				
+				long remaining = frame_end - System.nanoTime();
+				if (remaining > 0 && (pause || s != SpeedState.Max)) {
+					try {
+						Thread.sleep(remaining / 1000000L, (int)(remaining % 1000000L));
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Updates the number of epochs run per second, shown in the simulation window.
+		 */
+		private void measureRate() {
+			long now = System.nanoTime();
+			if (now - rate_start >= TICK_RATE_INTERVAL) {
+				epochs_per_second = rate_epochs * 1000000000.0 / (now - rate_start);
+				rate_start = now;
+				rate_epochs = 0;
+			}
+		}
+		
+		/**
+		 * Runs one epoch of the simulation.
+		 */
+		private void tick() {
+			rate_epochs++;
+			step();
+		}
+	}
+	
+	/**
+	 * Runs one epoch of the simulation.
+	 */
+	private void step() {
+		/* Begin Main Loop */
+		
+		epoch++;
+		world_epoch++;
+		if (epoch == GEN_EPOCH_LEN || retry)
+			nextGeneration();
+		
+		for (Food f : food)
+			f.update();
+		
+		// Prey contacts
+		contacts.findPreyContacts(prey_index, food, holes);
+		applyPreyContacts();
+		
+		// Update prey
+		collectShouts();
+		int prey_alive = 0;
+		if (partition != null) {
+			partition.assign(prey_index);
+			partition.buildHalos(predators, PREDATOR_G_RADIUS, shout_grid, shout_radius, shout_count, PREY_SENSOR_REACH);
+			prey_alive = partition.update(tile_task);
+		}
+		else {
+			for (int n = 0; n < prey_index.getAliveCount(); n++) {
+				Prey p = prey_index.getAlive(n);
+				if (!p.isAlive())
+					continue;
+				updatePrey(p, null, world_random);
 				prey_alive++;
 			}
-			if (prey_alive == 0)
-				retry = true;
-
-			// Update predators
-			synchronized(predators) {
-				for (Iterator<Predator> i = predators.iterator(); i.hasNext(); ) {
-					Predator r = i.next();
-					
-					if (!r.isAlive()) {
-						i.remove(); // Predators do not leave a corpse
-						continue;
-					}
-					
-					updatePredatorSensors(r);
-					checkPredatorCollision(r);
-					r.update();
-					
-					Point2D loc = r.getLocation();
-					double x = loc.getX(), y = loc.getY();
-					
-					// Bounds check (bounce off environment wall)
-					if (x < -PREDATOR_G_RADIUS || x > VIEW_WIDTH + PREDATOR_G_RADIUS || y < -PREDATOR_G_RADIUS || y > VIEW_HEIGHT + PREDATOR_G_RADIUS) {
-						double rot = -45.0 + random.nextDouble() * 90.0;
-						if (x < -PREDATOR_G_RADIUS)
-							x = -PREDATOR_G_RADIUS;
-						if (x > VIEW_WIDTH + PREDATOR_G_RADIUS) {
-							x = VIEW_WIDTH + PREDATOR_G_RADIUS;
-							rot += 180.0;
-						}
-						if (y < -PREDATOR_G_RADIUS) {
-							y = PREDATOR_G_RADIUS;
-							rot += 90.0;
-						}
-						if (y > VIEW_HEIGHT + PREDATOR_G_RADIUS) {
-							y = VIEW_HEIGHT + PREDATOR_G_RADIUS;
-							rot += 270.0;
-						}
-						r.setRot(rot);
-					}
-				}
-				next_predator_epoch--;
-				if (next_predator_epoch == 0) {
-					if (predators.size() < PREDATOR_MAX) {
-						// Spawn a new predator on the edge of the environment
-						Predator r = new Predator(predator_nn_base, this.env);
-						double x, y;
-						double rot = -PREDATOR_START_ANGLE + random.nextDouble() * PREDATOR_START_ANGLE * 2;
-						int side = random.nextInt() % 4;
-						if (side == 0) {
-							//x = 1;
-							x = -PREDATOR_G_RADIUS;
-							y = random.nextDouble() * VIEW_HEIGHT;
-						}
-						else if (side == 1) {
-							x = random.nextDouble() * VIEW_WIDTH;
-							//y = 1;
-							y = -PREDATOR_G_RADIUS;
-							rot += 90.0;
-						}
-						else if (side == 2) {
-							//x = VIEW_WIDTH - 1;
-							x = VIEW_WIDTH + PREDATOR_G_RADIUS;
-							y = random.nextDouble() * VIEW_HEIGHT;
-							rot += 180.0;
-						}
-						else {
-							x = random.nextDouble() * VIEW_WIDTH;
-							//y = VIEW_HEIGHT - 1;
-							y = VIEW_HEIGHT + PREDATOR_G_RADIUS;
-							rot += 270.0;
-						}
-						r.setLocation(new Point2D.Double(x, y));
-						r.setRot(rot);
-						predators.add(r);
-					}
-					next_predator_epoch = random.nextInt(PREDATOR_NEXT_EPOCH_MAX - 1) + 1;
+		}
+		if (prey_alive == 0 && !steady_state)
+			retry = true;
+		
+		// Predator contacts
+		contacts.findPredations(predators, prey_index);
+		applyPredations();
+		
+		// Update predators
+		for (Iterator<Predator> i = predators.iterator(); i.hasNext(); ) {
+			Predator r = i.next();
+			
+			if (!r.isAlive()) {
+				i.remove(); // Predators do not leave a corpse
+				this.watcher.resetTarget(r);
+				predator_pool.release(r);
+				continue;
+			}
+			
+			updatePredatorSensors(r);
+			r.update();
+			
+			Point2D loc = r.getLocation();
+			double x = loc.getX(), y = loc.getY();
+			
+			// Bounds check (bounce off environment wall)
+			if (x < -PREDATOR_G_RADIUS || x > WORLD_WIDTH + PREDATOR_G_RADIUS || y < -PREDATOR_G_RADIUS || y > WORLD_HEIGHT + PREDATOR_G_RADIUS) {
+				double rot = -45.0 + world_random.nextDouble() * 90.0;
+				if (x < -PREDATOR_G_RADIUS)
+					x = -PREDATOR_G_RADIUS;
+				if (x > WORLD_WIDTH + PREDATOR_G_RADIUS) {
+					x = WORLD_WIDTH + PREDATOR_G_RADIUS;
+					rot += 180.0;
+				}
+				if (y < -PREDATOR_G_RADIUS) {
+					y = PREDATOR_G_RADIUS;
+					rot += 90.0;
+				}
+				if (y > WORLD_HEIGHT + PREDATOR_G_RADIUS) {
+					y = WORLD_HEIGHT + PREDATOR_G_RADIUS;
+					rot += 270.0;
+				}
+				r.setRot(rot);
+			}
+		}
+		next_predator_epoch--;
+		if (next_predator_epoch == 0) {
+			if (predators.size() < PREDATOR_MAX) {
+				// Spawn a new predator on the edge of the environment
+				Predator r = predator_pool.acquire();
+				if (predator_genomes != null) {
+					// Copy the next genome into a pooled predator, so its network is not rebuilt
+					int g = next_predator_genome;
+					next_predator_genome = (g + 1) % predator_genomes.size();
+					r.resetFromParent(predator_genomes.elementAt(g), false);
+					r.setGenomeIndex(g);
+					predator_spawns[g]++;
+				}
+				else
+					r.resetRandom(world_random);
+				double x, y;
+				double rot = -PREDATOR_START_ANGLE + world_random.nextDouble() * PREDATOR_START_ANGLE * 2;
+				int side = world_random.nextInt() % 4;
+				if (side == 0) {
+					//x = 1;
+					x = -PREDATOR_G_RADIUS;
+					y = world_random.nextDouble() * WORLD_HEIGHT;
+				}
+				else if (side == 1) {
+					x = world_random.nextDouble() * WORLD_WIDTH;
+					//y = 1;
+					y = -PREDATOR_G_RADIUS;
+					rot += 90.0;
+				}
+				else if (side == 2) {
+					//x = WORLD_WIDTH - 1;
+					x = WORLD_WIDTH + PREDATOR_G_RADIUS;
+					y = world_random.nextDouble() * WORLD_HEIGHT;
+					rot += 180.0;
+				}
+				else {
+					x = world_random.nextDouble() * WORLD_WIDTH;
+					//y = WORLD_HEIGHT - 1;
+					y = WORLD_HEIGHT + PREDATOR_G_RADIUS;
+					rot += 270.0;
+				}
+				r.setLocation(x, y);
+				r.setRot(rot);
+				predators.add(r);
+			}
+			next_predator_epoch = world_random.nextInt(PREDATOR_NEXT_EPOCH_MAX - 1) + 1;
+		}
+		
+		// Move prey that died or were eaten this epoch out of the alive list
+		if (steady_state)
+			expireCorpses();
+		prey_index.compact();
+		if (steady_state)
+			replaceDeadPrey();
+		if (sort_interval > 0 && world_epoch % sort_interval == 0)
+			prey_index.sortAlive(MORTON_CELL_SIZE);
+		
+		if (!headless)
+			publishSnapshot();
+		
+		/* End Main Loop */
+	}
+	
+	/**
+	 * Updates the sensors, neural network, position and fitness of a living prey.
+	 * 
+	 * @param p prey object
+	 * @param tile tile that owns the prey, or null when prey are updated on the simulation
+	 *        thread
+	 * @param random random number generator for bounces off the walls
+	 */
+	private void updatePrey(Prey p, WorldPartition.Tile tile, Random random) {
+		updatePreySensors(p, tile);
+		p.update();
+		
+		Point2D loc = p.getLocation();
+		double x = loc.getX(), y = loc.getY();
+		
+		// Bounds check (bounce off environment wall)
+		if (x < 0 || x > WORLD_WIDTH || y < 0 || y > WORLD_HEIGHT) {
+			double rot = -45.0 + random.nextDouble() * 90.0;
+			if (x < 0)
+				x = 0;
+			if (x > WORLD_WIDTH) {
+				x = WORLD_WIDTH;
+				rot += 180.0;
+			}
+			if (y < 0) {
+				y = 0;
+				rot += 90.0;
+			}
+			if (y > WORLD_HEIGHT) {
+				y = WORLD_HEIGHT;
+				rot += 270.0;
+			}
+			p.setRot(rot);
+		}
+		
+		if (epoch % MEASURE_FITNESS_INTERVAL == 0) {
+			if (steady_state)
+				p.updateFitness((double)(world_epoch - p.getBirthEpoch()) / fitness_window, fitness_window / MEASURE_FITNESS_INTERVAL);
+			else
+				p.updateFitness((double)epoch / GEN_EPOCH_LEN);
+		}
+	}
+	
+	/**
+	 * Hides corpses that have remained longer than the corpse timeout, so that they are
+	 * removed by the next compaction. Used in steady-state mode.
+	 */
+	private void expireCorpses() {
+		for (int n = 0; n < this.prey_index.getDeadCount(); n++) {
+			Prey p = this.prey_index.getDead(n);
+			if (this.world_epoch - p.getDeathEpoch() >= this.corpse_timeout)
+				p.hide();
+		}
+	}
+	
+	/**
+	 * Removes the holes left behind by prey that have left the environment, in one pass over
+	 * the holes. Holes of departing prey lose their owner, and holes with no owner are returned
+	 * to the pool once they are empty. Used in steady-state mode, where holes are otherwise
+	 * never cleared.
+	 */
+	private void releaseAbandonedHoles() {
+		int kept = 0;
+		for (int i = 0; i < this.holes.size(); i++) {
+			Hole h = this.holes.elementAt(i);
+			if (h.getOwner() != null && this.departed.contains(h.getOwner()))
+				h.disown();
+			
+			if (h.getOwner() == null && h.getOccupyCount() == 0) {
+				if (h.isPublic())
+					this.hole_field.remove(h.getLocation().getX(), h.getLocation().getY());
+				else
+					this.private_hole_count--;
+				this.watcher.resetTarget(h);
+				this.hole_pool.release(h);
+			} else
+				this.holes.set(kept++, h);
+		}
+		
+		if (kept < this.holes.size()) {
+			this.holes.setSize(kept);
+			this.contacts.invalidateHoles();
+		}
+		this.departed.clear();
+	}
+	
+	/**
+	 * Replaces the prey that died this epoch with children of the living prey, and returns
+	 * prey that have left the environment to the pool. Used in steady-state mode.
+	 */
+	private void replaceDeadPrey() {
+		int died = this.prey_index.getDiedCount();
+		for (int i = 0; i < died; i++)
+			this.prey_index.getDied(i).setDeathEpoch(this.world_epoch);
+		
+		int removed = this.prey_index.getRemovedCount();
+		if (removed > 0) {
+			this.departed.clear();
+			for (int i = 0; i < removed; i++) {
+				Prey p = this.prey_index.getRemoved(i);
+				p.leave_hole();
+				this.departed.add(p);
+			}
+			releaseAbandonedHoles();
+		}
+		
+		for (int i = 0; i < removed; i++) {
+			Prey p = this.prey_index.getRemoved(i);
+			this.prey.remove(p);
+			this.watcher.resetTarget(p);
+			p.getSpecies().getPool().release(p);
+		}
+		
+		if (died == 0)
+			return;
+		
+		// Each species replaces its own dead, so the quotas are kept
+		for (Species s : this.species) {
+			int replace = 0;
+			for (int i = 0; i < died; i++) {
+				if (this.prey_index.getDied(i).getSpecies() == s)
+					replace++;
+			}
+			if (replace == 0)
+				continue;
+			
+			for (int n = 0; n < this.prey_index.getAliveCount(); n++) {
+				Prey p = this.prey_index.getAlive(n);
+				if (p.isAlive() && p.getSpecies() == s)
+					this.breeders.add(p);
+			}
+			if (this.breeders.isEmpty()) {
+				// Nothing left to breed from, so start again from random prey
+				for (int i = 0; i < replace; i++) {
+					Prey p = s.getPool().acquire();
+					p.resetRandom(this.random);
+					this.newborns.add(p);
 				}
 			}
-			
-			// Redraw environment
-			viewPanel.repaint();
-			
-			/* End Main Loop */
+			else
+				this.reproduction.reproduce(this.breeders, this.newborns, replace, s.getPool(), this.random);
+			this.breeders.clear();
+		}
+		
+		for (Prey pc : this.newborns) {
+			placeNewborn(pc);
+			this.prey.add(pc);
+			this.prey_index.add(pc);
+		}
+		this.newborns.clear();
+	}
+	
+	/**
+	 * Copies the state of all visible objects into the back buffer of the snapshot buffer
+	 * and publishes it to the simulation window.
+	 */
+	private void publishSnapshot() {
+		WorldSnapshot s = this.snapshots.getBackBuffer();
+		
+		s.generation_num = this.generation_num;
+		s.epoch = this.epoch;
+		s.next_predator_epoch = this.next_predator_epoch;
+		
+		// The Watcher status is formatted at most once per frame
+		long now = System.nanoTime();
+		if (now - this.watcher_status_time >= REFRESH_RATE * 1000000L) {
+			this.watcher_status = this.watcher.getStatus();
+			this.watcher_status_time = now;
+		}
+		s.watcher_status = this.watcher_status;
+		
+		// Prey
+		int n = 0, alive = 0;
+		int alive_count = this.prey_index.getAliveCount();
+		int listed_count = alive_count + this.prey_index.getDeadCount();
+		s.ensurePreyCapacity(listed_count);
+		for (int k = 0; k < listed_count; k++) {
+			Prey p = k < alive_count ? this.prey_index.getAlive(k) : this.prey_index.getDead(k - alive_count);
+			if (p.isHidden())
+				continue;
+			Point2D loc = p.getLocation();
+			s.prey_x[n] = (float)loc.getX();
+			s.prey_y[n] = (float)loc.getY();
+			s.prey_rot[n] = (float)Math.toRadians(p.getRot());
+			byte flags = 0;
+			if (p.isAlive()) {
+				flags |= WorldSnapshot.ALIVE;
+				alive++;
+				double r = p.getShoutRadius();
+				if (r > 0.0)
+					flags |= WorldSnapshot.SHOUTING;
+				s.prey_shout_radius[n] = (float)r;
+			}
+			if (p.isSelected())
+				flags |= WorldSnapshot.SELECTED;
+			s.prey_flags[n] = flags;
+			s.prey_ref[n] = p;
+			n++;
 		}
+		for (int i = n; i < s.prey_count; i++)
+			s.prey_ref[i] = null;
+		s.prey_count = n;
+		s.prey_alive = alive;
+		
+		// Predators
+		n = 0;
+		s.ensurePredatorCapacity(this.predators.size());
+		for (Predator r : this.predators) {
+			Point2D loc = r.getLocation();
+			s.predator_x[n] = (float)loc.getX();
+			s.predator_y[n] = (float)loc.getY();
+			s.predator_rot[n] = (float)Math.toRadians(r.getRot());
+			s.predator_flags[n] = r.isSelected() ? WorldSnapshot.SELECTED : 0;
+			s.predator_ref[n] = r;
+			n++;
+		}
+		for (int i = n; i < s.predator_count; i++)
+			s.predator_ref[i] = null;
+		s.predator_count = n;
+		
+		// Food
+		n = 0;
+		s.ensureFoodCapacity(this.food.size());
+		for (Food f : this.food) {
+			Point2D loc = f.getLocation();
+			s.food_x[n] = (float)loc.getX();
+			s.food_y[n] = (float)loc.getY();
+			s.food_level[n] = f.getColorLevel();
+			s.food_ref[n] = f;
+			n++;
+		}
+		for (int i = n; i < s.food_count; i++)
+			s.food_ref[i] = null;
+		s.food_count = n;
+		
+		// Holes
+		n = 0;
+		s.ensureHoleCapacity(this.holes.size());
+		for (Hole h : this.holes) {
+			Point2D loc = h.getLocation();
+			s.hole_x[n] = (float)loc.getX();
+			s.hole_y[n] = (float)loc.getY();
+			s.hole_level[n] = h.getColorLevel();
+			s.hole_ref[n] = h;
+			n++;
+		}
+		for (int i = n; i < s.hole_count; i++)
+			s.hole_ref[i] = null;
+		s.hole_count = n;
+		
+		this.snapshots.publish();
 	}
 	
 	/**
-	 * Updates sensors of a prey animat.
+	 * Updates sensors of a prey animat. When the prey is updated by a tile, predators and
+	 * shouts are read from the tile's halo.
 	 * 
 	 * @param p prey object
+	 * @param tile tile that owns the prey, or null
 	 */
-	private void updatePreySensors(Prey p) {
+	private void updatePreySensors(Prey p, WorldPartition.Tile tile) {
 		Point2D lsensor_loc = p.getLeftSensorLoc();
 		Point2D rsensor_loc = p.getRightSensorLoc();
 		
 		// Nearest food
-		double l_food_max = 0.0, r_food_max = 0.0;
-		for (Food f : this.food) { 
-			Point2D f_loc = f.getLocation();
-			double lpower = getSensorPower(lsensor_loc, f_loc, FOOD_G_RADIUS);
-			if (l_food_max < lpower)
-				l_food_max = lpower;
-			double rpower = getSensorPower(rsensor_loc, f_loc, FOOD_G_RADIUS);
-			if (r_food_max < rpower)
-				r_food_max = rpower;
-		}
-		p.setNeuronValue("foodleft", l_food_max);
-		p.setNeuronValue("foodright", r_food_max);
+		p.setNeuronValue("foodleft", this.food_field.sample(lsensor_loc.getX(), lsensor_loc.getY()));
+		p.setNeuronValue("foodright", this.food_field.sample(rsensor_loc.getX(), rsensor_loc.getY()));
 		
 		// Nearest predator
 		double l_predator_max = 0.0, r_predator_max = 0.0;
-		for (Predator r : this.predators) {
+		int predator_count = (tile != null) ? tile.predator_count : this.predators.size();
+		for (int i = 0; i < predator_count; i++) {
+			Predator r = (tile != null) ? tile.predators[i] : this.predators.elementAt(i);
 			Point2D r_loc = r.getLocation();
 			double lpower = getSensorPower(lsensor_loc, r_loc, PREDATOR_G_RADIUS);
 			if (l_predator_max < lpower)
@@ -499,33 +1424,52 @@ public class Environment extends JFrame {
 		
 		// Other prey shouting
 		double hearshout_max = 0.0;
-		for (Prey p_other : this.prey) {
-			if (p.equals(p_other) || !p_other.isAlive())
-				continue;
-
-			double shout_value = p_other.getNeuronValue("shout");
-			if (shout_value > 0.5) {
-				double hearshout = getSensorPower(p.getLocation(), p_other.getLocation(),
-						PREY_SHOUT_MIN_RADIUS + (shout_value - 0.5) * (PREY_SHOUT_MAX_RADIUS - PREY_SHOUT_MIN_RADIUS));
+		Point2D p_loc = p.getLocation();
+		if (tile != null) {
+			// Shouts as they were at the start of the epoch, since other tiles may be updating
+			for (int k = 0; k < tile.shout_count; k++) {
+				int i = tile.shouts[k];
+				if (this.shout_prey[i] == p)
+					continue;
+				double hearshout = getSensorPower(p_loc, this.shout_grid.getX(i), this.shout_grid.getY(i), this.shout_radius[i]);
+				if (hearshout_max < hearshout)
+					hearshout_max = hearshout;
+			}
+		}
+		else if (this.shout_count > SHOUT_GRID_MIN) {
+			int found = this.shout_grid.query(p_loc.getX(), p_loc.getY(), this.shout_radius_max);
+			for (int k = 0; k < found; k++) {
+				double hearshout = getShoutPower(p, this.shout_grid.getResult(k));
+				if (hearshout_max < hearshout)
+					hearshout_max = hearshout;
+			}
+		}
+		else {
+			for (int i = 0; i < this.shout_count; i++) {
+				double hearshout = getShoutPower(p, i);
 				if (hearshout_max < hearshout)
 					hearshout_max = hearshout;
 			}
 		}
 		p.setNeuronValue("hearshout", hearshout_max);
 		
-		// Nearest hole
-		double l_hole_max = 0.0, r_hole_max = 0.0;
-		for (Hole h : this.holes) {
-			if (h.getOwner() != p && !h.isPublic())
-				continue;
-			
-			Point2D h_loc = h.getLocation();
-			double lpower = getSensorPower(lsensor_loc, h_loc, HOLE_G_RADIUS);
-			if (l_hole_max < lpower)
-				l_hole_max = lpower;
-			double rpower = getSensorPower(rsensor_loc, h_loc, HOLE_G_RADIUS);
-			if (r_hole_max < rpower)
-				r_hole_max = rpower;
+		// Nearest hole. Public holes are read from the gradient field; the prey's own private
+		// holes, if there are any, are checked directly.
+		double l_hole_max = this.hole_field.sample(lsensor_loc.getX(), lsensor_loc.getY());
+		double r_hole_max = this.hole_field.sample(rsensor_loc.getX(), rsensor_loc.getY());
+		if (this.private_hole_count > 0) {
+			for (Hole h : this.holes) {
+				if (h.getOwner() != p || h.isPublic())
+					continue;
+				
+				Point2D h_loc = h.getLocation();
+				double lpower = getSensorPower(lsensor_loc, h_loc, HOLE_G_RADIUS);
+				if (l_hole_max < lpower)
+					l_hole_max = lpower;
+				double rpower = getSensorPower(rsensor_loc, h_loc, HOLE_G_RADIUS);
+				if (r_hole_max < rpower)
+					r_hole_max = rpower;
+			}
 		}
 		p.setNeuronValue("holeleft", l_hole_max);
 		p.setNeuronValue("holeright", r_hole_max);
@@ -546,11 +1490,65 @@ public class Environment extends JFrame {
 				by = HABITAT_ZONE_TOP;
 			else if (y > HABITAT_ZONE_BOTTOM)
 				by = HABITAT_ZONE_BOTTOM;
-			p.setNeuronValue("habitatleft", getSensorPower(lsensor_loc, new Point2D.Double(bx, by), HABITAT_ZONE_G_RADIUS));
-			p.setNeuronValue("habitatright", getSensorPower(rsensor_loc, new Point2D.Double(bx, by), HABITAT_ZONE_G_RADIUS));
+			p.setNeuronValue("habitatleft", getSensorPower(lsensor_loc, bx, by, HABITAT_ZONE_G_RADIUS));
+			p.setNeuronValue("habitatright", getSensorPower(rsensor_loc, bx, by, HABITAT_ZONE_G_RADIUS));
 		}
 	}
 	
+	/**
+	 * Collects the prey that are shouting at the start of the epoch, along with the radius
+	 * of each shout. If there are many, they are also added to a grid sized by the largest
+	 * radius, so that each listener only checks the shouts that could reach it.
+	 */
+	private void collectShouts() {
+		this.shout_count = 0;
+		this.shout_radius_max = 0.0;
+		this.shout_grid.clear();
+		
+		for (int n = 0; n < this.prey_index.getAliveCount(); n++) {
+			Prey p = this.prey_index.getAlive(n);
+			if (!p.isAlive())
+				continue;
+			
+			double r = p.getShoutRadius();
+			if (r == 0.0)
+				continue;
+			
+			if (this.shout_count == this.shout_prey.length) {
+				this.shout_prey = Arrays.copyOf(this.shout_prey, this.shout_count * 2);
+				this.shout_radius = Arrays.copyOf(this.shout_radius, this.shout_count * 2);
+			}
+			this.shout_prey[this.shout_count] = p;
+			this.shout_radius[this.shout_count] = r;
+			this.shout_count++;
+			if (this.shout_radius_max < r)
+				this.shout_radius_max = r;
+			
+			Point2D loc = p.getLocation();
+			this.shout_grid.add(loc.getX(), loc.getY());
+		}
+		
+		if (this.shout_count > SHOUT_GRID_MIN)
+			this.shout_grid.build(this.shout_radius_max);
+		
+		for (int i = this.shout_count; i < this.shout_prey.length && this.shout_prey[i] != null; i++)
+			this.shout_prey[i] = null;
+	}
+	
+	/**
+	 * Calculates how loudly a prey hears one of the shouts collected this epoch.
+	 * 
+	 * @param p listening prey
+	 * @param i index of the shout
+	 * @return sensor value
+	 */
+	private double getShoutPower(Prey p, int i) {
+		Prey p_other = this.shout_prey[i];
+		if (p == p_other || !p_other.isAlive())
+			return 0.0;
+		return getSensorPower(p.getLocation(), this.shout_grid.getX(i), this.shout_grid.getY(i), this.shout_radius[i]);
+	}
+	
 	/**
 	 * Updates sensors of a predator animat.
 	 * 
@@ -561,7 +1559,10 @@ public class Environment extends JFrame {
 		Point2D rsensor_loc = r.getRightSensorLoc();
 		
 		double l_prey_max = 0.0, r_prey_max = 0.0;
-		for (Prey p : this.prey) {
+		int alive_count = this.prey_index.getAliveCount();
+		int listed_count = alive_count + this.prey_index.getDeadCount();
+		for (int k = 0; k < listed_count; k++) {
+			Prey p = k < alive_count ? this.prey_index.getAlive(k) : this.prey_index.getDead(k - alive_count);
 			if (p.isGone())
 				continue;
 			
@@ -591,7 +1592,20 @@ public class Environment extends JFrame {
 	 * @return sensor value
 	 */
 	private double getSensorPower(Point2D sensorloc, Point2D sourceloc, double sourceradius) {
-		double d = sensorloc.distance(sourceloc) / sourceradius;
+		return getSensorPower(sensorloc, sourceloc.getX(), sourceloc.getY(), sourceradius);
+	}
+	
+	/**
+	 * Calculates the activation of a sensor from a source at the given position.
+	 * 
+	 * @param sensorloc 2D position of the sensor
+	 * @param sx x position of the source
+	 * @param sy y position of the source
+	 * @param sourceradius radius of the gradient from the source
+	 * @return sensor value
+	 */
+	private double getSensorPower(Point2D sensorloc, double sx, double sy, double sourceradius) {
+		double d = sensorloc.distance(sx, sy) / sourceradius;
 		if (d <= 1.0)
 			return 1.0 - d; //Math.pow(2, 1.0 - d) - 1;
 		return 0.0;
@@ -609,95 +1623,118 @@ public class Environment extends JFrame {
 	}
 	
 	/**
-	 * Handles prey collision with other objects in the environment
-	 * 
-	 * @param p prey object
+	 * Applies the food and hole contacts found for the prey this epoch, in order. Food that
+	 * is already gone is skipped, and new holes are checked against holes dug earlier in the
+	 * same batch, so the result is the same as handling each prey in turn. Prey that are no
+	 * longer digging or entering leave their hole.
 	 */
-	private void checkPreyCollision(Prey p) {
-		Point2D p_loc = p.getLocation();
+	private void applyPreyContacts() {
+		int dug_start = this.holes.size();
 		
-		// Food
-		boolean add = false;
-		if (!p.in_hole()) {
-			synchronized(food) {
-				for (Iterator<Food> i = this.food.iterator(); i.hasNext(); ) {
-					Food f = i.next();
+		for (int i = 0; i < this.contacts.getContactCount(); i++) {
+			ContactSystem.Contact c = this.contacts.getContact(i);
+			Prey p = (Prey)c.getActor();
+			
+			switch (c.getType()) {
+			case EatFood:
+				Food f = (Food)c.getTarget();
+				if (f.isGone())
+					break;
+				f.consume();
+				p.giveEnergy(FOOD_ENERGY);
+				if (f.isGone()) {
 					Point2D f_loc = f.getLocation();
+					this.food.remove(f);
+					this.food_field.remove(f_loc.getX(), f_loc.getY());
+					this.food_placer.remove(f_loc.getX(), f_loc.getY());
+					this.food_eaten.add(f);
+					if (FOOD_RESPAWN)
+						spawnOneFood();
+				}
+				break;
+				
+			case EnterHole:
+				p.occupy_hole((Hole)c.getTarget());
+				break;
+				
+			case DigHole:
+				// Another prey may have dug nearby earlier in this batch
+				Point2D p_loc = p.getLocation();
+				Hole nearest = null;
+				double distance_min = Double.POSITIVE_INFINITY;
+				for (int k = dug_start; k < this.holes.size(); k++) {
+					Hole h = this.holes.elementAt(k);
+					if (h.getOwner() != p && !h.isPublic())
+						continue;
 					
-					if (p_loc.distance(f_loc) <=  FOOD_C_RADIUS && p.getNeuronValue("eat") == 1.0) {
-						f.consume();
-						p.giveEnergy(FOOD_ENERGY);
-						if (f.isGone()) {
-							try {
-								i.remove();
-							} catch (IllegalStateException e) {
-								e.printStackTrace();
-								System.err.println("Food: " + food.size());
-								break;
-							}
-							add = true;
-						}
+					double distance = p_loc.distance(h.getLocation());
+					if (distance < distance_min) {
+						distance_min = distance;
+						nearest = h;
 					}
 				}
-				if (add && FOOD_RESPAWN)
-					spawnOneFood();
+				if (nearest != null && distance_min <= HOLE_ENTER_RADIUS)
+					p.occupy_hole(nearest);
+				else if (distance_min >= HOLE_SEPARATION) {
+					Hole h_new = this.hole_pool.acquire();
+					h_new.reset(p_loc.getX(), p_loc.getY(), p);
+					this.holes.add(h_new);
+					if (h_new.isPublic())
+						this.hole_field.add(p_loc.getX(), p_loc.getY());
+					else
+						this.private_hole_count++;
+					p.occupy_hole(h_new);
+				}
+				break;
+				
+			case DigSeparationViolation:
+				// Too close to another hole to dig
+				break;
+				
+			default:
+				break;
 			}
 		}
+		this.contacts.clear();
 		
-		// Holes
-		boolean dig = p.getNeuronValue("dig") > 0.55;
-		boolean enter = p.getNeuronValue("enterhole") == 1.0;
-		synchronized(holes) {
-			if (dig || enter) {
-				if (!p.in_hole()) {
-					Hole nearest = null;
-					double distance_min = Double.POSITIVE_INFINITY;
-					for (Hole h : this.holes) {
-						if (h.getOwner() != p && !h.isPublic())
-							continue;
-						
-						Point2D h_loc = h.getLocation();
-						double distance = p_loc.distance(h_loc);
-						if (distance < distance_min) {
-							distance_min = distance;
-							nearest = h;
-						}
-					}
-					if (nearest != null && distance_min <= HOLE_ENTER_RADIUS)
-						p.occupy_hole(nearest);
-					else if (dig && distance_min >= HOLE_SEPARATION) {
-						Hole h_new = new Hole(new Point2D.Double(p_loc.getX(), p_loc.getY()), p, this);
-						this.holes.add(h_new);
-						p.occupy_hole(h_new);
-					}
-				}
-			}
-			else if (p.in_hole())
+		// Eaten food is only reused once no event in the batch can refer to it
+		for (int i = 0; i < this.food_eaten.size(); i++)
+			this.watcher.resetTarget(this.food_eaten.elementAt(i));
+		this.food_pool.releaseAll(this.food_eaten);
+		this.food_eaten.clear();
+		
+		for (int n = 0; n < this.prey_index.getAliveCount(); n++) {
+			Prey p = this.prey_index.getAlive(n);
+			if (!p.isAlive() || !p.in_hole())
+				continue;
+			
+			boolean dig = p.getNeuronValue("dig") > 0.55;
+			boolean enter = p.getNeuronValue("enterhole") == 1.0;
+			if (!dig && !enter)
 				p.leave_hole();
 		}
 	}
 	
 	/**
-	 * Handles predator collision with prey animats.
-	 * 
-	 * @param r predator object
+	 * Applies the predator bites found this epoch, in order. Prey that are already gone
+	 * are skipped.
 	 */
-	private void checkPredatorCollision(Predator r) {
-		Point2D r_loc = r.getLocation();
-		
-		for (Iterator<Prey> i = this.prey.iterator(); i.hasNext(); ) {
-			Prey p = i.next();
+	private void applyPredations() {
+		for (int i = 0; i < this.contacts.getContactCount(); i++) {
+			ContactSystem.Contact c = this.contacts.getContact(i);
+			Predator r = (Predator)c.getActor();
+			Prey p = (Prey)c.getTarget();
 			if (p.isGone())
 				continue;
-			Point2D p_loc = p.getLocation();
 			
-			if (r_loc.distance(p_loc) <= PREY_C_RADIUS && p.getDetectableDepth() > 0.0) {
-				p.consume();
-				r.giveEnergy(PREY_ENERGY);
-				if (p.isGone())
-					p.hide();
-			}
+			p.consume();
+			r.giveEnergy(PREY_ENERGY);
+			if (this.predator_genomes != null && r.getGenomeIndex() >= 0)
+				this.predator_bites[r.getGenomeIndex()]++;
+			if (p.isGone())
+				p.hide();
 		}
+		this.contacts.clear();
 	}
 	
 	
@@ -705,7 +1742,7 @@ public class Environment extends JFrame {
 	 * Handles keyboard actions that affect the simulation display.
 	 * 
 	 * @author Justin Morgan
-	 *
+	 * 
 	 */
 	private class KeyboardInput implements KeyListener {
 		private boolean[] keysPressed;
@@ -713,7 +1750,7 @@ public class Environment extends JFrame {
 		public KeyboardInput() {
 			this.keysPressed = new boolean[256];
 		}
-
+		
 		/**
 		 * Called when a key is pressed
 		 */
@@ -727,17 +1764,27 @@ public class Environment extends JFrame {
 					debug = debug.next();
 				}
 				
-				else if (key == 'n') { // Skip to Next Generation
-					reportwriter.addGeneration(generation_num, prey, holes);
-					spawnGeneration();
-					retry = false;
-					watcher.resetTarget();
+				else if (key == 'n') { // Skip to Next Generation (handled by the main loop)
+					skip = true;
 				}
 				
 				else if (key == 'p') { // Pause
 					pause = !pause;
 				}
 				
+				else if (key == '+' || key == '=') { // Speed Up
+					speed = speed.faster();
+				}
+				
+				else if (key == '-' || key == '_') { // Slow Down
+					speed = speed.slower();
+				}
+				
+				else if (key == 'r') { // Reset View
+					camera.reset();
+					viewPanel.repaint();
+				}
+				
 				else if (key == 'w') { // Write Report
 					reportwriter.write();
 				}
@@ -745,7 +1792,7 @@ public class Environment extends JFrame {
 			}
 			this.keysPressed[c] = true;
 		}
-
+		
 		/**
 		 * Called when a key is released
 		 */
@@ -753,7 +1800,7 @@ public class Environment extends JFrame {
 		public void keyReleased(KeyEvent e) {
 			this.keysPressed[e.getKeyCode()] = false;
 		}
-
+		
 		@Override
 		public void keyTyped(KeyEvent e) {
 			
@@ -762,158 +1809,372 @@ public class Environment extends JFrame {
 	
 	
 	/**
-	 * Handles mouse clicks in the simulation window. Used primarily for selecting
-	 * objects to be reported on screen by the Watcher.
+	 * Handles mouse input in the simulation window. Clicking selects objects to be reported
+	 * on screen by the Watcher, dragging pans the view, and the mouse wheel zooms in and out.
 	 * 
 	 * @author Justin
-	 *
+	 * 
 	 */
-	private class MouseInput implements MouseListener {
+	private class MouseInput implements MouseListener, MouseMotionListener, MouseWheelListener {
+		private final byte HIT_PREY = 0;
+		private final byte HIT_PREDATOR = 1;
+		private final byte HIT_HOLE = 2;
+		private final byte HIT_FOOD = 3;
+		
+		private int drag_x, drag_y;
+		
+		// Objects in the last snapshot clicked on, by location
+		private SpatialGrid hit_grid = new SpatialGrid();
+		private long hit_sequence = -1;
+		private byte[] hit_kind = new byte[0];
+		private int[] hit_index = new int[0];
+		
+		/**
+		 * Rebuilds the grid used to find clicked objects from a snapshot.
+		 * 
+		 * @param s snapshot
+		 */
+		private void buildHitGrid(WorldSnapshot s) {
+			int n = s.prey_count + s.predator_count + s.hole_count + s.food_count;
+			if (this.hit_kind.length < n) {
+				this.hit_kind = new byte[n];
+				this.hit_index = new int[n];
+			}
+			
+			this.hit_grid.clear();
+			for (int i = 0; i < s.prey_count; i++)
+				addHit(this.hit_grid.add(s.prey_x[i], s.prey_y[i]), HIT_PREY, i);
+			for (int i = 0; i < s.predator_count; i++)
+				addHit(this.hit_grid.add(s.predator_x[i], s.predator_y[i]), HIT_PREDATOR, i);
+			for (int i = 0; i < s.hole_count; i++)
+				addHit(this.hit_grid.add(s.hole_x[i], s.hole_y[i]), HIT_HOLE, i);
+			for (int i = 0; i < s.food_count; i++)
+				addHit(this.hit_grid.add(s.food_x[i], s.food_y[i]), HIT_FOOD, i);
+			this.hit_grid.build(PREDATOR_SELECT_RADIUS);
+			this.hit_sequence = s.sequence;
+		}
+		
+		private void addHit(int id, byte kind, int index) {
+			this.hit_kind[id] = kind;
+			this.hit_index[id] = index;
+		}
 		
 		/**
 		 * Called when the mouse is clicked in the window.
 		 */
 		@Override
 		public void mouseClicked(MouseEvent e) {
-			Point2D m_loc = new Point2D.Double(e.getX(), e.getY());
-
-			for (Prey p : prey) {
-				Point2D p_loc = p.getLocation();
-				if (p_loc.distance(m_loc) < PREY_SELECT_RADIUS && !p.isGone()) {
-					watcher.setTarget(p);
-					p.setSelected(true);
-					return;
-				}
-			}
-			for (Predator r : predators) {
-				Point2D r_loc = r.getLocation();
-				if (r_loc.distance(m_loc) < PREDATOR_SELECT_RADIUS) {
-					watcher.setTarget(r);
-					r.setSelected(true);
-					return;
+			// Select from the snapshot currently drawn in the window
+			WorldSnapshot s = snapshots.acquire();
+			if (s.sequence != this.hit_sequence)
+				buildHitGrid(s);
+			
+			double x = camera.toWorldX(e.getX()), y = camera.toWorldY(e.getY());
+			double scale = 1.0 / Math.min(camera.getZoom(), 1.0);
+			double[] radius = { PREY_SELECT_RADIUS * scale, PREDATOR_SELECT_RADIUS * scale,
+					HOLE_SELECT_RADIUS * scale, FOOD_SELECT_RADIUS * scale };
+			
+			// Nearest object of each kind, chosen in order: prey, predator, hole, food
+			int[] nearest = { -1, -1, -1, -1 };
+			double[] distance_min = { radius[0], radius[1], radius[2], radius[3] };
+			int found = this.hit_grid.query(x, y, PREDATOR_SELECT_RADIUS * scale);
+			for (int k = 0; k < found; k++) {
+				int id = this.hit_grid.getResult(k);
+				int kind = this.hit_kind[id];
+				double distance = Point2D.distance(x, y, this.hit_grid.getX(id), this.hit_grid.getY(id));
+				if (distance < distance_min[kind]) {
+					distance_min[kind] = distance;
+					nearest[kind] = this.hit_index[id];
 				}
 			}
-			for (Hole h : holes) {
-				Point2D h_loc = h.getLocation();
-				if (h_loc.distance(m_loc) < HOLE_SELECT_RADIUS) {
-					watcher.setTarget(h);
-					return;
-				}
+			
+			if (nearest[HIT_PREY] >= 0) {
+				Prey p = s.prey_ref[nearest[HIT_PREY]];
+				watcher.setTarget(p);
+				p.setSelected(true);
 			}
-			for (Food f : food) {
-				Point2D f_loc = f.getLocation();
-				if (f_loc.distance(m_loc) < FOOD_SELECT_RADIUS) {
-					watcher.setTarget(f);
-					return;
-				}
+			else if (nearest[HIT_PREDATOR] >= 0) {
+				Predator r = s.predator_ref[nearest[HIT_PREDATOR]];
+				watcher.setTarget(r);
+				r.setSelected(true);
 			}
-			
-			watcher.resetTarget();
+			else if (nearest[HIT_HOLE] >= 0)
+				watcher.setTarget(s.hole_ref[nearest[HIT_HOLE]]);
+			else if (nearest[HIT_FOOD] >= 0)
+				watcher.setTarget(s.food_ref[nearest[HIT_FOOD]]);
+			else
+				watcher.resetTarget();
+		}
+		
+		/**
+		 * Called when the mouse is dragged. Pans the view.
+		 */
+		@Override
+		public void mouseDragged(MouseEvent e) {
+			camera.pan(e.getX() - this.drag_x, e.getY() - this.drag_y);
+			this.drag_x = e.getX();
+			this.drag_y = e.getY();
+			viewPanel.repaint();
+		}
+		
+		/**
+		 * Called when the mouse wheel is moved. Zooms the view around the mouse position.
+		 */
+		@Override
+		public void mouseWheelMoved(MouseWheelEvent e) {
+			camera.zoomAt(Math.pow(ZOOM_STEP, -e.getWheelRotation()), e.getX(), e.getY());
+			viewPanel.repaint();
 		}
 		
 		@Override
 		public void mousePressed(MouseEvent e) {
+			this.drag_x = e.getX();
+			this.drag_y = e.getY();
+		}
+		
+		@Override
+		public void mouseMoved(MouseEvent e) {
 			
 		}
-
+		
 		@Override
 		public void mouseEntered(MouseEvent e) {
-
+		
 		}
-
+		
 		@Override
 		public void mouseExited(MouseEvent e) {
-
+		
 		}
-
+		
 		@Override
 		public void mouseReleased(MouseEvent e) {
-
+		
 		}
 	}
 	
 	
 	/**
-	 * Draws the simulation window, including all objects and components.
+	 * Draws the simulation window, including all objects and components. The zones are
+	 * drawn once into a cached background image, and animats and holes are copied from
+	 * pre-rendered sprites.
 	 * 
 	 * @author Justin Morgan
-	 *
+	 * 
 	 */
 	private class ViewPanel extends JPanel {
 		/**
 		 * 
 		 */
 		private static final long serialVersionUID = 1L;
-
+		
+		private final RenderingHints rh = new RenderingHints(
+				RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+		
+		private VolatileImage background = null;
+		private int background_version = -1;
+		private SpriteAtlas atlas = null;
+		
+		private int[] density = new int[0];
+		private Color[] density_colors;
+		
 		public ViewPanel() {
 			setBackground(FORAGING_ZONE_COLOR);
 			setFocusable(true);
 			addKeyListener(new KeyboardInput());
-			addMouseListener(new MouseInput());
+			MouseInput mouse = new MouseInput();
+			addMouseListener(mouse);
+			addMouseMotionListener(mouse);
+			addMouseWheelListener(mouse);
+			
+			this.density_colors = new Color[DENSITY_TILE_MAX + 1];
+			Color c = Prey.getColor(WorldSnapshot.ALIVE);
+			for (int i = 0; i <= DENSITY_TILE_MAX; i++)
+				this.density_colors[i] = new Color(c.getRed(), c.getGreen(), c.getBlue(), 80 + 175 * i / DENSITY_TILE_MAX);
 		}
 		
 		/**
-		 * Called each time the window is redrawn.
+		 * Draws the foraging and habitat zones into the background image, as seen by the camera.
 		 */
-		@Override
-		public void paintComponent(Graphics g) {
-			super.paintComponent(g);
-			
-			Graphics2D g2d = (Graphics2D)g;
-		
-			RenderingHints rh = new RenderingHints(
-		             RenderingHints.KEY_ANTIALIASING,
-		             RenderingHints.VALUE_ANTIALIAS_ON);
-		    g2d.setRenderingHints(rh);
-			
-			// ** RENDER LOGIC ** //
-			
+		private void renderBackground() {
+			Graphics2D g2d = this.background.createGraphics();
+			g2d.setColor(OUTSIDE_COLOR);
+			g2d.fillRect(0, 0, this.background.getWidth(), this.background.getHeight());
+			g2d.transform(camera.getTransform());
+			g2d.setColor(FORAGING_ZONE_COLOR);
+			g2d.fillRect(0, 0, WORLD_WIDTH, WORLD_HEIGHT);
 			g2d.setColor(HABITAT_ZONE_COLOR);
 			g2d.fillRect(HABITAT_ZONE_LEFT, HABITAT_ZONE_TOP,
 					HABITAT_ZONE_RIGHT - HABITAT_ZONE_LEFT,
 					HABITAT_ZONE_BOTTOM - HABITAT_ZONE_TOP);
-
-			int prey_alive_count = 0;
-			
-			if (started) {
-				synchronized(holes) {
-					for (Hole h : holes)
-						h.draw(g2d);
+			g2d.dispose();
+			this.background_version = camera.getVersion();
+		}
+		
+		/**
+		 * Draws the cached background, recreating or redrawing it if its contents were lost.
+		 * 
+		 * @param g2d
+		 */
+		private void drawBackground(Graphics2D g2d) {
+			GraphicsConfiguration gc = getGraphicsConfiguration();
+			do {
+				if (this.background == null || this.background.getWidth() != getWidth()
+						|| this.background.getHeight() != getHeight()) {
+					this.background = gc.createCompatibleVolatileImage(getWidth(), getHeight());
+					renderBackground();
 				}
-				
-				synchronized(food) {
-					for (Food f : food)
-						f.draw(g2d);
+				int valid = this.background.validate(gc);
+				if (valid == VolatileImage.IMAGE_INCOMPATIBLE) {
+					this.background = null;
+					continue;
 				}
-				
-				for (Prey p : prey) {
-					p.draw(g2d);
-					if (p.isAlive())
-						prey_alive_count++;
+				if (valid == VolatileImage.IMAGE_RESTORED || this.background_version != camera.getVersion())
+					renderBackground();
+				g2d.drawImage(this.background, 0, 0, null);
+			} while (this.background == null || this.background.contentsLost());
+		}
+		
+		/**
+		 * Draws all objects in the visible area of the environment. Objects outside the view are
+		 * skipped. When zoomed out, animats are drawn as points, and tiles crowded with prey
+		 * are drawn as a single shaded tile.
+		 * 
+		 * @param g2d graphics transformed by the camera
+		 * @param s snapshot
+		 * @param d debug state
+		 */
+		private void drawWorld(Graphics2D g2d, WorldSnapshot s, DebugState d) {
+			double zoom = camera.getZoom();
+			double margin = d == DebugState.None ? Predator.getSpriteSize() : Math.max(HOLE_G_RADIUS, PREDATOR_G_RADIUS);
+			Rectangle2D area = camera.getVisibleArea(getWidth(), getHeight());
+			Rectangle2D bounds = new Rectangle2D.Double(area.getX() - margin, area.getY() - margin,
+					area.getWidth() + margin * 2, area.getHeight() + margin * 2);
+			
+			this.atlas.setSubpixel(zoom > 1.0);
+			
+			Hole.drawAll(g2d, s, d, this.atlas, bounds);
+			
+			Food.drawAll(g2d, s, d, bounds);
+			
+			// Prey
+			boolean points = zoom < POINT_ZOOM;
+			double tile = DENSITY_TILE_SIZE / zoom;
+			int cols = (int)Math.ceil(area.getWidth() / tile), rows = (int)Math.ceil(area.getHeight() / tile);
+			boolean tiles = zoom < DENSITY_ZOOM;
+			if (tiles)
+				countDensity(s, area, tile, cols, rows);
+			
+			float point = (float)(POINT_SIZE / zoom);
+			byte last_flags = -1;
+			for (int i = 0; i < s.prey_count; i++) {
+				float x = s.prey_x[i], y = s.prey_y[i];
+				boolean selected = (s.prey_flags[i] & WorldSnapshot.SELECTED) != 0;
+				if (!selected && !bounds.contains(x, y))
+					continue;
+				if (!points) {
+					Prey.draw(g2d, s, i, d, this.atlas);
+					continue;
 				}
-				
-				synchronized(predators) {
-					for (Predator r : predators)
-						r.draw(g2d);
+				if (tiles) {
+					int tx = (int)((x - area.getX()) / tile), ty = (int)((y - area.getY()) / tile);
+					if (tx >= 0 && ty >= 0 && tx < cols && ty < rows && this.density[ty * cols + tx] >= DENSITY_TILE_MIN)
+						continue;
 				}
+				if (s.prey_flags[i] != last_flags) {
+					g2d.setColor(Prey.getColor(s.prey_flags[i]));
+					last_flags = s.prey_flags[i];
+				}
+				g2d.fill(new Rectangle2D.Float(x - point / 2, y - point / 2, point, point));
 			}
+			if (tiles)
+				drawDensity(g2d, area, tile, cols, rows);
 			
-			g2d.setColor(Color.white);
-			g2d.drawString("Generation " + generation_num, 10, 20);
-			g2d.drawString("Time (epochs): " + epoch, 10, 40);
-			g2d.drawString("Next Predator (epochs): " + next_predator_epoch, 10, 60);
-			g2d.drawString("Prey Alive: " + prey_alive_count, 10, 80);
-			synchronized(holes) {
-				g2d.drawString("Hole Count: " + holes.size(), 10, 100);
+			// Predators
+			for (int i = 0; i < s.predator_count; i++) {
+				float x = s.predator_x[i], y = s.predator_y[i];
+				if (!bounds.contains(x, y))
+					continue;
+				if (!points)
+					Predator.draw(g2d, s, i, d, this.atlas);
+				else {
+					g2d.setColor(Predator.getColor(s.predator_flags[i]));
+					g2d.fill(new Rectangle2D.Float(x - point, y - point, point * 2, point * 2));
+				}
+			}
+		}
+		
+		/**
+		 * Counts the prey in each density tile of the visible area.
+		 */
+		private void countDensity(WorldSnapshot s, Rectangle2D area, double tile, int cols, int rows) {
+			int n = cols * rows;
+			if (this.density.length < n)
+				this.density = new int[n];
+			for (int i = 0; i < n; i++)
+				this.density[i] = 0;
+			for (int i = 0; i < s.prey_count; i++) {
+				int tx = (int)((s.prey_x[i] - area.getX()) / tile), ty = (int)((s.prey_y[i] - area.getY()) / tile);
+				if (s.prey_x[i] >= area.getX() && s.prey_y[i] >= area.getY() && tx < cols && ty < rows)
+					this.density[ty * cols + tx]++;
 			}
-			synchronized(food) {
-				g2d.drawString("Food Count: " + food.size(), 10, 140);
+		}
+		
+		/**
+		 * Draws the density tiles that hold enough prey to be drawn as a tile.
+		 */
+		private void drawDensity(Graphics2D g2d, Rectangle2D area, double tile, int cols, int rows) {
+			Rectangle2D.Double r = new Rectangle2D.Double(0, 0, tile, tile);
+			for (int ty = 0; ty < rows; ty++) {
+				for (int tx = 0; tx < cols; tx++) {
+					int count = this.density[ty * cols + tx];
+					if (count < DENSITY_TILE_MIN)
+						continue;
+					g2d.setColor(this.density_colors[Math.min(count, DENSITY_TILE_MAX)]);
+					r.x = area.getX() + tx * tile;
+					r.y = area.getY() + ty * tile;
+					g2d.fill(r);
+				}
 			}
-			synchronized(predators) {
-				g2d.drawString("Predator Count: " + predators.size(), 10, 120);
+		}
+		
+		/**
+		 * Called each time the window is redrawn.
+		 */
+		@Override
+		public void paintComponent(Graphics g) {
+			Graphics2D g2d = (Graphics2D)g;
+			g2d.setRenderingHints(rh);
+			
+			if (this.atlas == null)
+				this.atlas = new SpriteAtlas(getGraphicsConfiguration());
+			
+			// ** RENDER LOGIC ** //
+			
+			drawBackground(g2d);
+			
+			WorldSnapshot s = snapshots.acquire();
+			
+			if (started) {
+				AffineTransform old = g2d.getTransform();
+				g2d.transform(camera.getTransform());
+				drawWorld(g2d, s, debug);
+				g2d.setTransform(old);
 			}
 			
-			watcher.draw(g2d);
+			g2d.setColor(Color.white);
+			g2d.drawString("Generation " + s.generation_num + (steady_state ? " (steady-state)" : ""), 10, 20);
+			g2d.drawString("Time (epochs): " + s.epoch, 10, 40);
+			g2d.drawString("Next Predator (epochs): " + s.next_predator_epoch, 10, 60);
+			g2d.drawString("Prey Alive: " + s.prey_alive, 10, 80);
+			g2d.drawString("Hole Count: " + s.hole_count, 10, 100);
+			g2d.drawString("Predator Count: " + s.predator_count, 10, 120);
+			g2d.drawString("Food Count: " + s.food_count, 10, 140);
+			g2d.drawString(String.format("Speed: %s (%.0f epochs/s)", speed, epochs_per_second), 10, 160);
+			g2d.drawString(String.format("Zoom: %.2fx", camera.getZoom()), 10, 180);
+			
+			watcher.draw(g2d, s.watcher_status);
 			reportwriter.draw(g2d);
 			
 			// ** END RENDER LOGIC ** //
@@ -0,0 +1,198 @@
+package env;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of measured fitness values, keyed by the hash of a genome (the connection weights an
+ * animat was born with) and the seed of the scenario it was measured in. A seeded scenario
+ * always gives the same result for the same genome, so a genome that has already been
+ * measured in it, such as an elite copied unchanged into the next generation, can have its
+ * earlier result reused instead of being measured again.
+ * 
+ * The cache holds a bounded number of entries and evicts the least recently used one when it
+ * is full. Entries can be loaded from and saved to a file, so that a cache outlives a run.
+ * All methods are safe to call from multiple threads.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class FitnessCache {
+	
+	/**
+	 * Whether the cache is used.
+	 */
+	public enum Policy {
+		Off, // the cache is not used
+		Skip // a genome is not measured again in a scenario it has a cached fitness for
+	}
+	
+	/**
+	 * Key of a cache entry.
+	 */
+	private static class Key {
+		final long genome_hash;
+		final long seed;
+		
+		Key(long genome_hash, long seed) {
+			this.genome_hash = genome_hash;
+			this.seed = seed;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key)o;
+			return this.genome_hash == k.genome_hash && this.seed == k.seed;
+		}
+		
+		@Override
+		public int hashCode() {
+			long h = this.genome_hash * 31 + this.seed;
+			return (int)(h ^ (h >>> 32));
+		}
+	}
+	
+	private final Policy policy;
+	private final LinkedHashMap<Key, Double> entries;
+	
+	/**
+	 * Constructs a new, empty FitnessCache.
+	 * 
+	 * @param capacity maximum number of entries
+	 * @param policy how cached values are used
+	 */
+	public FitnessCache(final int capacity, Policy policy) {
+		this.policy = policy;
+		this.entries = new LinkedHashMap<Key, Double>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the policy of the cache.
+	 * 
+	 * @return policy
+	 */
+	public Policy getPolicy() {
+		return this.policy;
+	}
+	
+	/**
+	 * Looks up the cached fitness of a genome.
+	 * 
+	 * @param genome_hash hash of the genome
+	 * @param seed scenario seed
+	 * @return cached fitness, or null if the genome has not been measured in the scenario
+	 */
+	public synchronized Double lookup(long genome_hash, long seed) {
+		return this.entries.get(new Key(genome_hash, seed));
+	}
+	
+	/**
+	 * Adds the measured fitness of a genome to the cache.
+	 * 
+	 * @param genome_hash hash of the genome
+	 * @param seed scenario seed
+	 * @param fitness measured fitness
+	 */
+	public synchronized void put(long genome_hash, long seed, double fitness) {
+		this.entries.put(new Key(genome_hash, seed), fitness);
+	}
+	
+	/**
+	 * Returns the number of entries in the cache.
+	 * 
+	 * @return size
+	 */
+	public synchronized int size() {
+		return this.entries.size();
+	}
+	
+	/**
+	 * Reads entries from a file written by a save job, adding them to the cache.
+	 * 
+	 * @param file cache file
+	 * @throws IOException if the file cannot be read or is malformed
+	 */
+	public void load(File file) throws IOException {
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			String line = in.readLine(); // header
+			int line_num = 1;
+			while ((line = in.readLine()) != null) {
+				line_num++;
+				if (line.trim().isEmpty())
+					continue;
+				String[] fields = line.split(",");
+				if (fields.length != 3)
+					throw new IOException("Malformed fitness cache entry (line " + line_num + ")");
+				try {
+					Key k = new Key(Long.parseLong(fields[0].trim()), Long.parseLong(fields[1].trim()));
+					double fitness = Double.parseDouble(fields[2].trim());
+					synchronized (this) {
+						this.entries.put(k, fitness);
+					}
+				} catch (NumberFormatException e) {
+					throw new IOException("Malformed fitness cache entry (line " + line_num + ")");
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Creates a job that saves the current entries of the cache to a file, for the
+	 * background writer. The entries are copied when the job is created, so the cache can
+	 * keep changing while the job waits to run. Entries are written from least to most
+	 * recently used, so loading the file restores the eviction order.
+	 * 
+	 * @param file cache file
+	 * @return save job
+	 */
+	public synchronized BackgroundWriter.Job saveJob(final File file) {
+		final int n = this.entries.size();
+		final long[] genome_hash = new long[n], seed = new long[n];
+		final double[] fitness = new double[n];
+		int i = 0;
+		for (Map.Entry<Key, Double> e : this.entries.entrySet()) {
+			genome_hash[i] = e.getKey().genome_hash;
+			seed[i] = e.getKey().seed;
+			fitness[i] = e.getValue();
+			i++;
+		}
+		
+		return new BackgroundWriter.Job() {
+			@Override
+			public String run() throws IOException {
+				// Write to a temporary file first, so an interrupted save keeps the old cache
+				File tmp = new File(file.getPath() + ".tmp");
+				FileWriter out = new FileWriter(tmp);
+				try {
+					out.write("Genome,Seed,Fitness\n");
+					for (int i = 0; i < n; i++)
+						out.write(genome_hash[i] + "," + seed[i] + "," + fitness[i] + "\n");
+				} finally {
+					out.close();
+				}
+				if (file.exists() && !file.delete())
+					throw new IOException("Could not replace " + file.getPath());
+				if (!tmp.renameTo(file))
+					throw new IOException("Could not write " + file.getPath());
+				return "Saved fitness cache: " + file.getPath();
+			}
+		};
+	}
+}
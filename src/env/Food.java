@@ -2,8 +2,8 @@ package env;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 
 import env.Environment.DebugState;
 
@@ -14,12 +14,20 @@ import env.Environment.DebugState;
  *
  */
 public class Food {
-	private final int SIZE = 10;
-	private final double AMOUNT_PER_BITE = 0.25;
+	private static final int SIZE = 10;
+	private static final double AMOUNT_PER_BITE = 0.25;
 	private final int TIMEOUT = 60;
 	
+	/* Color for each number of bites remaining */
+	private static final Color[] COLORS = {
+		new Color(0, 0, 0),
+		new Color((int)(AMOUNT_PER_BITE * 255.0), 0, 0),
+		new Color((int)(AMOUNT_PER_BITE * 2 * 255.0), 0, 0),
+		new Color((int)(AMOUNT_PER_BITE * 3 * 255.0), 0, 0),
+		new Color(255, 105, 90)
+	};
+	
 	private Point2D loc;
-	private Color color;
 	private double remaining = 1.0;
 	private int timeout = 0;
 	
@@ -34,7 +42,19 @@ public class Food {
 	public Food(Point2D loc, Environment env) {
 		this.loc = loc;
 		this.env = env;
-		this.color = new Color(255, 105, 90);
+	}
+	
+	/**
+	 * Restores the food to a full, new piece at the given location. Used to reuse the
+	 * object for a new spawn.
+	 * 
+	 * @param x x position
+	 * @param y y position
+	 */
+	public void reset(double x, double y) {
+		this.loc.setLocation(x, y);
+		this.remaining = 1.0;
+		this.timeout = 0;
 	}
 	
 	/**
@@ -45,14 +65,10 @@ public class Food {
 			return;
 		
 		if (this.remaining > 0.0) {
-			if (this.remaining - AMOUNT_PER_BITE < 0.0) {
+			if (this.remaining - AMOUNT_PER_BITE < 0.0)
 				this.remaining = 0.0;
-				this.color = new Color(0, 0, 0);
-			}
-			else {
+			else
 				this.remaining -= AMOUNT_PER_BITE;
-				this.color = new Color((int)(this.remaining * 255.0), 0, 0);
-			}
 			this.timeout = TIMEOUT;
 		}
 	}
@@ -92,33 +108,40 @@ public class Food {
 	}
 	
 	/**
-	 * Draws the food object.
+	 * Returns the color level of the food, which is the number of bites remaining.
+	 * 
+	 * @return level
+	 */
+	public byte getColorLevel() {
+		return (byte)Math.round(this.remaining / AMOUNT_PER_BITE);
+	}
+	
+	/**
+	 * Draws all food objects in a snapshot of the environment that lie within the given bounds.
+	 * Food is drawn in batches of the same color.
 	 * 
 	 * @param g2d
+	 * @param s snapshot
+	 * @param debug debug state
+	 * @param bounds area to draw
 	 */
-	public void draw(Graphics2D g2d) {
+	public static void drawAll(Graphics2D g2d, WorldSnapshot s, DebugState debug, Rectangle2D bounds) {
 		// Debug: display the gradient detectable by prey
-		DebugState debug = env.getDebugState();
 		if (debug == DebugState.All || debug == DebugState.Gradients) {
-			double r = env.FOOD_G_RADIUS;
-			
-			AffineTransform old_d = g2d.getTransform();
-			
-			g2d.translate(this.loc.getX() - r, this.loc.getY() - r);
-			
+			int r = (int)Environment.FOOD_G_RADIUS;
 			g2d.setColor(Color.BLACK);
-			g2d.drawOval(0, 0, (int)r * 2, (int)r * 2);
-			
-			g2d.setTransform(old_d);
+			for (int i = 0; i < s.food_count; i++) {
+				if (bounds.contains(s.food_x[i], s.food_y[i]))
+					g2d.drawOval((int)(s.food_x[i] - r), (int)(s.food_y[i] - r), r * 2, r * 2);
+			}
 		}
 		
-		AffineTransform old = g2d.getTransform();
-		
-		g2d.translate(this.loc.getX() - (SIZE / 2), this.loc.getY() - (SIZE / 2));
-		
-		g2d.setColor(this.color);
-		g2d.fillRect(0, 0, SIZE, SIZE);
-		
-		g2d.setTransform(old);
+		for (int level = 0; level < COLORS.length; level++) {
+			g2d.setColor(COLORS[level]);
+			for (int i = 0; i < s.food_count; i++) {
+				if (s.food_level[i] == level && bounds.contains(s.food_x[i], s.food_y[i]))
+					g2d.fillRect((int)s.food_x[i] - (SIZE / 2), (int)s.food_y[i] - (SIZE / 2), SIZE, SIZE);
+			}
+		}
 	}
 }
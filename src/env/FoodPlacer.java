@@ -0,0 +1,315 @@
+package env;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Chooses positions for new food in the foraging zone, keeping every piece of food at least a
+ * minimum distance from the others. Candidate positions come from pools of Poisson-disk
+ * samples over the foraging zone, which are spread out evenly and so are rarely rejected.
+ * Placed food is tracked in an occupancy grid with cells small enough to hold one piece each,
+ * so checking a candidate only looks at the cells around it.
+ * 
+ * Pools are generated on a background thread, one ahead of the pool in use. Each pool is
+ * generated from a seed drawn from the simulation's random number generator when it is
+ * requested, so the positions do not depend on thread timing. Placers for headless trials
+ * generate their pools on the calling thread instead.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class FoodPlacer {
+	private final int MAX_ATTEMPTS = 64; // candidates tried before giving up on a placement
+	private final int SAMPLE_ATTEMPTS = 30; // Poisson-disk candidates tried around each point
+	
+	private final double width, height;
+	private final double habitat_left, habitat_top, habitat_right, habitat_bottom;
+	private final double min_distance;
+	private final Random random;
+	
+	// Occupancy grid
+	private final double cell_size;
+	private final int cols, rows;
+	private final boolean[] occupied;
+	private final double[] occupant_x, occupant_y;
+	
+	// Candidate pools
+	private final ExecutorService pool_thread;
+	private double[] pool = new double[0]; // x, y pairs
+	private int pool_next = 0;
+	private Future<double[]> next_pool = null;
+	
+	private double placed_x, placed_y;
+	
+	/**
+	 * Constructs a new FoodPlacer.
+	 * 
+	 * @param width width of the environment
+	 * @param height height of the environment
+	 * @param habitat_left left edge of the habitat zone
+	 * @param habitat_top top edge of the habitat zone
+	 * @param habitat_right right edge of the habitat zone
+	 * @param habitat_bottom bottom edge of the habitat zone
+	 * @param min_distance distance food must be kept apart
+	 * @param random random number generator of the simulation
+	 * @param background generate pools on a background thread
+	 */
+	public FoodPlacer(double width, double height, double habitat_left, double habitat_top,
+			double habitat_right, double habitat_bottom, double min_distance, Random random, boolean background) {
+		this.width = width;
+		this.height = height;
+		this.habitat_left = habitat_left;
+		this.habitat_top = habitat_top;
+		this.habitat_right = habitat_right;
+		this.habitat_bottom = habitat_bottom;
+		this.min_distance = min_distance;
+		this.random = random;
+		
+		this.cell_size = min_distance / Math.sqrt(2.0);
+		this.cols = (int)Math.ceil(width / this.cell_size);
+		this.rows = (int)Math.ceil(height / this.cell_size);
+		this.occupied = new boolean[this.cols * this.rows];
+		this.occupant_x = new double[this.cols * this.rows];
+		this.occupant_y = new double[this.cols * this.rows];
+		
+		if (background) {
+			this.pool_thread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Food Placer");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		else
+			this.pool_thread = null;
+	}
+	
+	/**
+	 * Removes all placed food.
+	 */
+	public void clear() {
+		for (int i = 0; i < this.occupied.length; i++)
+			this.occupied[i] = false;
+	}
+	
+	/**
+	 * Chooses a position for a new piece of food and marks it as occupied. The position is
+	 * read with getX() and getY(). Gives up after a fixed number of candidates, which only
+	 * happens when the foraging zone is nearly full.
+	 * 
+	 * @return true if a free position was found
+	 */
+	public boolean place() {
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			if (this.pool_next == this.pool.length)
+				nextPool();
+			
+			double x = this.pool[this.pool_next++];
+			double y = this.pool[this.pool_next++];
+			if (isFree(x, y)) {
+				int c = getCell(x, y);
+				this.occupied[c] = true;
+				this.occupant_x[c] = x;
+				this.occupant_y[c] = y;
+				this.placed_x = x;
+				this.placed_y = y;
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the x position chosen by the last call to place().
+	 * 
+	 * @return x position
+	 */
+	public double getX() {
+		return this.placed_x;
+	}
+	
+	/**
+	 * Returns the y position chosen by the last call to place().
+	 * 
+	 * @return y position
+	 */
+	public double getY() {
+		return this.placed_y;
+	}
+	
+	/**
+	 * Marks the position of a piece of food as free.
+	 * 
+	 * @param x x position
+	 * @param y y position
+	 */
+	public void remove(double x, double y) {
+		int c = getCell(x, y);
+		if (this.occupied[c] && this.occupant_x[c] == x && this.occupant_y[c] == y)
+			this.occupied[c] = false;
+	}
+	
+	/**
+	 * Returns true if no placed food is within the minimum distance of a point.
+	 */
+	private boolean isFree(double x, double y) {
+		int cx = (int)(x / this.cell_size), cy = (int)(y / this.cell_size);
+		double d2 = this.min_distance * this.min_distance;
+		for (int j = Math.max(0, cy - 2); j <= Math.min(this.rows - 1, cy + 2); j++) {
+			for (int i = Math.max(0, cx - 2); i <= Math.min(this.cols - 1, cx + 2); i++) {
+				int c = j * this.cols + i;
+				if (!this.occupied[c])
+					continue;
+				double dx = this.occupant_x[c] - x, dy = this.occupant_y[c] - y;
+				if (dx * dx + dy * dy <= d2)
+					return false;
+			}
+		}
+		return true;
+	}
+	
+	private int getCell(double x, double y) {
+		int cx = Math.min(Math.max((int)(x / this.cell_size), 0), this.cols - 1);
+		int cy = Math.min(Math.max((int)(y / this.cell_size), 0), this.rows - 1);
+		return cy * this.cols + cx;
+	}
+	
+	/**
+	 * Switches to the pool generated in the background, and starts generating the next one.
+	 */
+	private void nextPool() {
+		if (this.pool_thread == null) {
+			this.pool = generatePool(this.random.nextLong());
+			this.pool_next = 0;
+			return;
+		}
+		
+		if (this.next_pool == null)
+			this.next_pool = requestPool();
+		
+		try {
+			this.pool = this.next_pool.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.pool = generatePool(this.random.nextLong());
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+			this.pool = generatePool(this.random.nextLong());
+		}
+		this.pool_next = 0;
+		this.next_pool = requestPool();
+	}
+	
+	/**
+	 * Starts generating a pool in the background.
+	 */
+	private Future<double[]> requestPool() {
+		final long seed = this.random.nextLong();
+		return this.pool_thread.submit(new Callable<double[]>() {
+			@Override
+			public double[] call() {
+				return generatePool(seed);
+			}
+		});
+	}
+	
+	/**
+	 * Generates a set of Poisson-disk samples over the foraging zone using Bridson's algorithm,
+	 * in random order.
+	 * 
+	 * @param seed random seed
+	 * @return x, y pairs
+	 */
+	private double[] generatePool(long seed) {
+		Random rand = new Random(seed);
+		int cells = this.cols * this.rows;
+		int[] grid = new int[cells];
+		for (int i = 0; i < cells; i++)
+			grid[i] = -1;
+		double[] xs = new double[cells], ys = new double[cells];
+		int[] active = new int[cells];
+		int count = 0, active_count = 0;
+		
+		// First point
+		double x, y;
+		do {
+			x = rand.nextDouble() * this.width;
+			y = rand.nextDouble() * this.height;
+		} while (inHabitatZone(x, y));
+		xs[count] = x;
+		ys[count] = y;
+		grid[getCell(x, y)] = count;
+		active[active_count++] = count++;
+		
+		// Points around active points, at one to two times the minimum distance
+		double d2 = this.min_distance * this.min_distance;
+		while (active_count > 0) {
+			int a = rand.nextInt(active_count);
+			int s = active[a];
+			boolean found = false;
+			for (int k = 0; k < SAMPLE_ATTEMPTS && !found; k++) {
+				double angle = rand.nextDouble() * 2 * Math.PI;
+				double r = this.min_distance * (1.0 + rand.nextDouble());
+				x = xs[s] + Math.cos(angle) * r;
+				y = ys[s] + Math.sin(angle) * r;
+				if (x < 0 || x >= this.width || y < 0 || y >= this.height || inHabitatZone(x, y))
+					continue;
+				
+				int cx = (int)(x / this.cell_size), cy = (int)(y / this.cell_size);
+				boolean free = true;
+				for (int j = Math.max(0, cy - 2); j <= Math.min(this.rows - 1, cy + 2) && free; j++) {
+					for (int i = Math.max(0, cx - 2); i <= Math.min(this.cols - 1, cx + 2); i++) {
+						int n = grid[j * this.cols + i];
+						if (n == -1)
+							continue;
+						double dx = xs[n] - x, dy = ys[n] - y;
+						if (dx * dx + dy * dy <= d2) {
+							free = false;
+							break;
+						}
+					}
+				}
+				if (free) {
+					xs[count] = x;
+					ys[count] = y;
+					grid[getCell(x, y)] = count;
+					active[active_count++] = count++;
+					found = true;
+				}
+			}
+			if (!found)
+				active[a] = active[--active_count];
+		}
+		
+		// Shuffle, so food is not placed in the order the samples grew
+		double[] pool = new double[count * 2];
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++)
+			order[i] = i;
+		for (int i = count - 1; i > 0; i--) {
+			int j = rand.nextInt(i + 1);
+			int t = order[i];
+			order[i] = order[j];
+			order[j] = t;
+		}
+		for (int i = 0; i < count; i++) {
+			pool[i * 2] = xs[order[i]];
+			pool[i * 2 + 1] = ys[order[i]];
+		}
+		return pool;
+	}
+	
+	/**
+	 * Determines if a point lies in the habitat zone.
+	 */
+	private boolean inHabitatZone(double x, double y) {
+		return x >= this.habitat_left && x <= this.habitat_right && y >= this.habitat_top && y <= this.habitat_bottom;
+	}
+}
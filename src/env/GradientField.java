@@ -0,0 +1,212 @@
+package env;
+
+import java.util.Arrays;
+
+/**
+ * Cached gradient field for one type of stationary source, such as food or holes. The field
+ * stores the strongest sensor power from any source at each node of a raster, so that a sensor
+ * reading is a bilinear lookup instead of a pass over every source. The raster is updated
+ * only around a source when it is added or removed.
+ * 
+ * The raster covers the given bounds, extended by the gradient radius on each side. Sensors
+ * outside the raster, or any sensor while the field is in exact mode, are computed directly
+ * from the sources.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class GradientField {
+	private final double radius;
+	private final double cell_size;
+	private final double min_x, min_y;
+	private final int cols, rows;
+	private final float[] power;
+	
+	private double[] source_x = new double[16];
+	private double[] source_y = new double[16];
+	private int source_count = 0;
+	
+	private boolean exact = false;
+	
+	/**
+	 * Constructs a new, empty GradientField.
+	 * 
+	 * @param min_x left edge of the area sources are placed in
+	 * @param min_y top edge of the area sources are placed in
+	 * @param max_x right edge of the area sources are placed in
+	 * @param max_y bottom edge of the area sources are placed in
+	 * @param radius radius of the gradient from each source
+	 * @param cell_size distance between raster nodes
+	 */
+	public GradientField(double min_x, double min_y, double max_x, double max_y, double radius, double cell_size) {
+		this.radius = radius;
+		this.cell_size = cell_size;
+		this.min_x = min_x - radius;
+		this.min_y = min_y - radius;
+		this.cols = (int)Math.ceil((max_x - min_x + 2 * radius) / cell_size) + 1;
+		this.rows = (int)Math.ceil((max_y - min_y + 2 * radius) / cell_size) + 1;
+		this.power = new float[this.cols * this.rows];
+	}
+	
+	/**
+	 * Sets whether sensor readings are computed directly from the sources instead of
+	 * looked up in the raster.
+	 * 
+	 * @param exact true for exact readings
+	 */
+	public void setExact(boolean exact) {
+		this.exact = exact;
+	}
+	
+	/**
+	 * Removes all sources.
+	 */
+	public void clear() {
+		Arrays.fill(this.power, 0.0f);
+		this.source_count = 0;
+	}
+	
+	/**
+	 * Adds a source to the field.
+	 * 
+	 * @param x x position of the source
+	 * @param y y position of the source
+	 */
+	public void add(double x, double y) {
+		if (this.source_count == this.source_x.length) {
+			this.source_x = Arrays.copyOf(this.source_x, this.source_count * 2);
+			this.source_y = Arrays.copyOf(this.source_y, this.source_count * 2);
+		}
+		this.source_x[this.source_count] = x;
+		this.source_y[this.source_count] = y;
+		this.source_count++;
+		
+		int c0 = Math.max(0, toCol(x - this.radius)), c1 = Math.min(this.cols - 1, toCol(x + this.radius) + 1);
+		int r0 = Math.max(0, toRow(y - this.radius)), r1 = Math.min(this.rows - 1, toRow(y + this.radius) + 1);
+		for (int r = r0; r <= r1; r++) {
+			double ny = this.min_y + r * this.cell_size;
+			for (int c = c0; c <= c1; c++) {
+				double nx = this.min_x + c * this.cell_size;
+				float p = (float)getPower(nx, ny, x, y);
+				int i = r * this.cols + c;
+				if (this.power[i] < p)
+					this.power[i] = p;
+			}
+		}
+	}
+	
+	/**
+	 * Removes a source from the field. Only the nodes the source could reach are recomputed,
+	 * using the sources that could also reach them.
+	 * 
+	 * @param x x position of the source
+	 * @param y y position of the source
+	 */
+	public void remove(double x, double y) {
+		int index = -1;
+		for (int i = 0; i < this.source_count; i++) {
+			if (this.source_x[i] == x && this.source_y[i] == y) {
+				index = i;
+				break;
+			}
+		}
+		if (index == -1)
+			return;
+		
+		this.source_count--;
+		this.source_x[index] = this.source_x[this.source_count];
+		this.source_y[index] = this.source_y[this.source_count];
+		
+		// Only sources whose gradient overlaps the affected nodes can contribute to them
+		int near_count = 0;
+		int[] near = new int[this.source_count];
+		double near_distance = 2 * (this.radius + this.cell_size);
+		for (int i = 0; i < this.source_count; i++) {
+			if (Math.abs(this.source_x[i] - x) <= near_distance && Math.abs(this.source_y[i] - y) <= near_distance)
+				near[near_count++] = i;
+		}
+		
+		int c0 = Math.max(0, toCol(x - this.radius)), c1 = Math.min(this.cols - 1, toCol(x + this.radius) + 1);
+		int r0 = Math.max(0, toRow(y - this.radius)), r1 = Math.min(this.rows - 1, toRow(y + this.radius) + 1);
+		for (int r = r0; r <= r1; r++) {
+			double ny = this.min_y + r * this.cell_size;
+			for (int c = c0; c <= c1; c++) {
+				double nx = this.min_x + c * this.cell_size;
+				double p_max = 0.0;
+				for (int k = 0; k < near_count; k++) {
+					double p = getPower(nx, ny, this.source_x[near[k]], this.source_y[near[k]]);
+					if (p_max < p)
+						p_max = p;
+				}
+				this.power[r * this.cols + c] = (float)p_max;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the strongest sensor power from any source at a point.
+	 * 
+	 * @param x x position of the sensor
+	 * @param y y position of the sensor
+	 * @return sensor value
+	 */
+	public double sample(double x, double y) {
+		if (this.exact)
+			return sampleExact(x, y);
+		
+		double fx = (x - this.min_x) / this.cell_size;
+		double fy = (y - this.min_y) / this.cell_size;
+		int c = (int)Math.floor(fx), r = (int)Math.floor(fy);
+		if (c < 0 || r < 0 || c >= this.cols - 1 || r >= this.rows - 1)
+			return sampleExact(x, y);
+		
+		double tx = fx - c, ty = fy - r;
+		int i = r * this.cols + c;
+		double top = this.power[i] + (this.power[i + 1] - this.power[i]) * tx;
+		double bottom = this.power[i + this.cols] + (this.power[i + this.cols + 1] - this.power[i + this.cols]) * tx;
+		return top + (bottom - top) * ty;
+	}
+	
+	/**
+	 * Returns the strongest sensor power from any source at a point, computed directly from
+	 * the sources.
+	 * 
+	 * @param x x position of the sensor
+	 * @param y y position of the sensor
+	 * @return sensor value
+	 */
+	public double sampleExact(double x, double y) {
+		double p_max = 0.0;
+		for (int i = 0; i < this.source_count; i++) {
+			double p = getPower(x, y, this.source_x[i], this.source_y[i]);
+			if (p_max < p)
+				p_max = p;
+		}
+		return p_max;
+	}
+	
+	/**
+	 * Calculates the power of a single source at a point.
+	 * 
+	 * @param x x position of the sensor
+	 * @param y y position of the sensor
+	 * @param sx x position of the source
+	 * @param sy y position of the source
+	 * @return sensor value
+	 */
+	private double getPower(double x, double y, double sx, double sy) {
+		double dx = x - sx, dy = y - sy;
+		double d = Math.sqrt(dx * dx + dy * dy) / this.radius;
+		if (d <= 1.0)
+			return 1.0 - d;
+		return 0.0;
+	}
+	
+	private int toCol(double x) {
+		return (int)Math.floor((x - this.min_x) / this.cell_size);
+	}
+	
+	private int toRow(double y) {
+		return (int)Math.floor((y - this.min_y) / this.cell_size);
+	}
+}
@@ -2,8 +2,8 @@ package env;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 
 import env.Environment.DebugState;
 
@@ -14,13 +14,14 @@ import env.Environment.DebugState;
  *
  */
 public class Hole {
-	private final int RADIUS = 15;
+	public static final int COLOR_LEVELS = 32;
+	
+	private static final int RADIUS = 15;
 	private final double DEPTH_DETECT_MAX = 0.4;
 	private final int OCCUPY_MAX = 3;
 	
 	private Point2D loc;
 	private double depth = 0.0;
-	private Color color;
 	
 	private Prey owner = null;
 	private boolean public_hole = true;
@@ -39,7 +40,22 @@ public class Hole {
 		this.loc = loc;
 		this.env = env;
 		this.owner = owner;
-		this.color = new Color(200, 100, 0);
+	}
+	
+	/**
+	 * Restores the hole to a new, empty hole at the given location. Used to reuse the
+	 * object for a new hole.
+	 * 
+	 * @param x x position
+	 * @param y y position
+	 * @param owner prey object that created the hole
+	 */
+	public void reset(double x, double y, Prey owner) {
+		this.loc.setLocation(x, y);
+		this.depth = 0.0;
+		this.owner = owner;
+		this.public_hole = true;
+		this.occupy_count = 0;
 	}
 	
 	/**
@@ -50,14 +66,10 @@ public class Hole {
 	public void dig(double depth) {
 		double depth_rel = depth / 35.0;
 		if (this.depth < 1.0) {
-			if (this.depth + depth_rel > 1.0) {
+			if (this.depth + depth_rel > 1.0)
 				this.depth = 1.0;
-				this.color = new Color(0, 0, 0);
-			}
-			else {
+			else
 				this.depth += depth_rel;
-				this.color = new Color((int)(200 - this.depth * 200.0), (int)(100 - this.depth * 100.0), 0);
-			}
 		}
 	}
 	
@@ -117,6 +129,13 @@ public class Hole {
 		return this.owner;
 	}
 	
+	/**
+	 * Removes the owner of the hole, when the owner leaves the environment.
+	 */
+	public void disown() {
+		this.owner = null;
+	}
+	
 	/**
 	 * Returns true if the hole can be occupied by anyone.
 	 * 
@@ -141,33 +160,59 @@ public class Hole {
 	}
 	
 	/**
-	 * Draws the hole object.
+	 * Returns the color level of the hole, from 0 for a new hole to COLOR_LEVELS - 1 for a
+	 * hole at full depth.
+	 * 
+	 * @return level
+	 */
+	public byte getColorLevel() {
+		return (byte)(this.depth * (COLOR_LEVELS - 1));
+	}
+	
+	/**
+	 * Returns the width and height of a hole sprite.
+	 * 
+	 * @return size in pixels
+	 */
+	public static int getSpriteSize() {
+		return RADIUS * 2 + 2;
+	}
+	
+	/**
+	 * Draws a hole of the given color level centered on the origin. Used to render the hole sprites.
 	 * 
 	 * @param g2d
+	 * @param level color level
 	 */
-	public void draw(Graphics2D g2d) {
+	public static void drawShape(Graphics2D g2d, int level) {
+		double depth = (double)level / (COLOR_LEVELS - 1);
+		g2d.setColor(new Color((int)(200 - depth * 200.0), (int)(100 - depth * 100.0), 0));
+		g2d.fillOval(-RADIUS, -RADIUS, RADIUS * 2, RADIUS * 2);
+	}
+	
+	/**
+	 * Draws all hole objects in a snapshot of the environment that lie within the given bounds.
+	 * 
+	 * @param g2d
+	 * @param s snapshot
+	 * @param debug debug state
+	 * @param atlas hole sprites
+	 * @param bounds area to draw
+	 */
+	public static void drawAll(Graphics2D g2d, WorldSnapshot s, DebugState debug, SpriteAtlas atlas, Rectangle2D bounds) {
 		// Debug: display the gradient detectable by prey
-		DebugState debug = env.getDebugState();
 		if (debug == DebugState.All || debug == DebugState.Gradients) {
-			double r = env.HOLE_G_RADIUS;
-			
-			AffineTransform old_d = g2d.getTransform();
-			
-			g2d.translate(this.loc.getX() - r, this.loc.getY() - r);
-			
+			int r = (int)Environment.HOLE_G_RADIUS;
 			g2d.setColor(Color.BLACK);
-			g2d.drawOval(0, 0, (int)r * 2, (int)r * 2);
-			
-			g2d.setTransform(old_d);
+			for (int i = 0; i < s.hole_count; i++) {
+				if (bounds.contains(s.hole_x[i], s.hole_y[i]))
+					g2d.drawOval((int)(s.hole_x[i] - r), (int)(s.hole_y[i] - r), r * 2, r * 2);
+			}
 		}
 		
-		AffineTransform old = g2d.getTransform();
-		
-		g2d.translate(this.loc.getX() - RADIUS, this.loc.getY() - RADIUS);
-		
-		g2d.setColor(this.color);
-		g2d.fillOval(0, 0, RADIUS * 2, RADIUS * 2);
-		
-		g2d.setTransform(old);
+		for (int i = 0; i < s.hole_count; i++) {
+			if (bounds.contains(s.hole_x[i], s.hole_y[i]))
+				atlas.drawHole(g2d, s.hole_level[i], s.hole_x[i], s.hole_y[i]);
+		}
 	}
 }
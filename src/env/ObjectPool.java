@@ -0,0 +1,63 @@
+package env;
+
+import java.util.List;
+
+/**
+ * Pool of reusable objects. Objects released to the pool are handed out again by acquire()
+ * instead of allocating new ones, so that spawning and removing objects every generation
+ * does not create garbage once the pool has grown to the size of the population. Objects
+ * are returned as they were released; the caller resets them before use.
+ * 
+ * @author Justin Morgan
+ *
+ * @param <T> type of object
+ */
+public abstract class ObjectPool<T> {
+	private Object[] free = new Object[16];
+	private int free_count = 0;
+	
+	/**
+	 * Creates a new object when the pool is empty.
+	 * 
+	 * @return new object
+	 */
+	protected abstract T create();
+	
+	/**
+	 * Returns an object from the pool, or a new one if the pool is empty.
+	 * 
+	 * @return object
+	 */
+	@SuppressWarnings("unchecked")
+	public T acquire() {
+		if (this.free_count == 0)
+			return create();
+		T obj = (T)this.free[--this.free_count];
+		this.free[this.free_count] = null;
+		return obj;
+	}
+	
+	/**
+	 * Returns an object to the pool.
+	 * 
+	 * @param obj object no longer in use
+	 */
+	public void release(T obj) {
+		if (this.free_count == this.free.length) {
+			Object[] nf = new Object[this.free_count * 2];
+			System.arraycopy(this.free, 0, nf, 0, this.free_count);
+			this.free = nf;
+		}
+		this.free[this.free_count++] = obj;
+	}
+	
+	/**
+	 * Returns all objects in a list to the pool. The list itself is not changed.
+	 * 
+	 * @param objs objects no longer in use
+	 */
+	public void releaseAll(List<? extends T> objs) {
+		for (int i = 0; i < objs.size(); i++)
+			release(objs.get(i));
+	}
+}
@@ -0,0 +1,162 @@
+package env;
+
+import nn.NeuralNetworkBase;
+
+/**
+ * Tunable parameters of a simulation. Parameters that belong to the neural networks are
+ * applied to a NeuralNetworkBase; the rest are passed to the Environment. Each parameter can
+ * also be read and set by name, for configuration files and sweeps.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class Parameters {
+	/**
+	 * Names of all parameters, in the order they are listed in reports.
+	 */
+	public static final String[] NAMES = {
+		"prey_parent_max",
+		"prey_children_per",
+		"mutate_max",
+		"learning_rate",
+		"food_energy",
+		"predator_next_epoch_max"
+	};
+	
+	public int prey_parent_max = 5; // prey that become parents each generation
+	public int prey_children_per = 6; // children of each parent
+	public double mutate_max = 1.5; // largest weight change when a child inherits a connection
+	public double learning_rate = 0.005; // rate of Hebbian learning
+	public double food_energy = 60.0; // energy given by each bite of food
+	public int predator_next_epoch_max = 350; // longest wait between predator spawns
+	
+	/**
+	 * Returns a copy of the parameters.
+	 * 
+	 * @return copy
+	 */
+	public Parameters copy() {
+		Parameters p = new Parameters();
+		for (String name : NAMES)
+			p.set(name, get(name));
+		return p;
+	}
+	
+	/**
+	 * Returns the value of a parameter.
+	 * 
+	 * @param name parameter name
+	 * @return value
+	 * @throws IllegalArgumentException if there is no parameter with the name
+	 */
+	public double get(String name) {
+		if (name.equals("prey_parent_max"))
+			return this.prey_parent_max;
+		else if (name.equals("prey_children_per"))
+			return this.prey_children_per;
+		else if (name.equals("mutate_max"))
+			return this.mutate_max;
+		else if (name.equals("learning_rate"))
+			return this.learning_rate;
+		else if (name.equals("food_energy"))
+			return this.food_energy;
+		else if (name.equals("predator_next_epoch_max"))
+			return this.predator_next_epoch_max;
+		throw new IllegalArgumentException("Unknown parameter \"" + name + "\"");
+	}
+	
+	/**
+	 * Sets the value of a parameter. Integer parameters are rounded.
+	 * 
+	 * @param name parameter name
+	 * @param value value
+	 * @throws IllegalArgumentException if there is no parameter with the name, or the value
+	 *         is out of range
+	 */
+	public void set(String name, double value) {
+		if (name.equals("prey_parent_max"))
+			this.prey_parent_max = checkMin(name, (int)Math.round(value), 1);
+		else if (name.equals("prey_children_per"))
+			this.prey_children_per = checkMin(name, (int)Math.round(value), 1);
+		else if (name.equals("mutate_max"))
+			this.mutate_max = checkMin(name, value, 0.0);
+		else if (name.equals("learning_rate"))
+			this.learning_rate = value;
+		else if (name.equals("food_energy"))
+			this.food_energy = checkMin(name, value, 0.0);
+		else if (name.equals("predator_next_epoch_max"))
+			this.predator_next_epoch_max = checkMin(name, (int)Math.round(value), 2);
+		else
+			throw new IllegalArgumentException("Unknown parameter \"" + name + "\"");
+	}
+	
+	/**
+	 * Reads parameters in the form written by toString(). Parameters that are not listed
+	 * keep their default values.
+	 * 
+	 * @param text name=value pairs separated by semicolons
+	 * @return parameters
+	 * @throws IllegalArgumentException if a parameter is unknown or out of range
+	 */
+	public static Parameters parse(String text) {
+		Parameters p = new Parameters();
+		for (String pair : text.split(";")) {
+			int eq = pair.indexOf('=');
+			if (eq < 0)
+				throw new IllegalArgumentException("Expected name=value, got \"" + pair + "\"");
+			p.set(pair.substring(0, eq).trim(), Double.parseDouble(pair.substring(eq + 1).trim()));
+		}
+		return p;
+	}
+	
+	/**
+	 * Returns true if the parameter is an integer.
+	 * 
+	 * @param name parameter name
+	 * @return true for integer parameters
+	 */
+	public static boolean isInteger(String name) {
+		return name.equals("prey_parent_max") || name.equals("prey_children_per") || name.equals("predator_next_epoch_max");
+	}
+	
+	/**
+	 * Applies the neural network parameters to a neural network base.
+	 * 
+	 * @param base neural network base
+	 */
+	public void applyTo(NeuralNetworkBase base) {
+		base.mutate_max = this.mutate_max;
+		base.learning_rate = this.learning_rate;
+	}
+	
+	/**
+	 * Returns the parameters as name=value pairs separated by semicolons, in the order of
+	 * NAMES. Equal parameters give equal strings.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (String name : NAMES) {
+			if (result.length() > 0)
+				result.append(';');
+			result.append(name).append('=');
+			if (isInteger(name))
+				result.append((int)get(name));
+			else
+				result.append(get(name));
+		}
+		return result.toString();
+	}
+	
+	private static int checkMin(String name, int value, int min) {
+		if (value < min)
+			throw new IllegalArgumentException("Parameter " + name + " must be at least " + min);
+		return value;
+	}
+	
+	private static double checkMin(String name, double value, double min) {
+		if (value < min)
+			throw new IllegalArgumentException("Parameter " + name + " must be at least " + min);
+		return value;
+	}
+}
@@ -0,0 +1,212 @@
+package env;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import nn.NeuralNetwork;
+import nn.NeuralNetworkBase;
+
+/**
+ * Measures how far prey networks evaluated in a lower precision drift from the double
+ * precision reference. A population is first evolved in double precision in a headless
+ * world. Each of its genomes is then run through the same seeded trials in every precision,
+ * so that a difference in fitness comes from the precision alone, although a small
+ * difference in one decision can change the rest of a trial. The networks are also compared
+ * directly, by feeding every precision the same random sensor values and comparing the
+ * effectors.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class PrecisionCheck {
+	private final NeuralNetworkBase[] bases;
+	private final NeuralNetworkBase predator_nn_base;
+	private final Parameters params;
+	private final int generations;
+	private final int genome_count;
+	private final long[] seeds;
+	private final int trial_length;
+	private final int samples;
+	private final long seed;
+	private final ExecutorService workers;
+	
+	/**
+	 * Constructs a new PrecisionCheck. The neural network parameters should already have been
+	 * applied to the bases.
+	 * 
+	 * @param bases prey neural network bases parsed from the same file, each with its own
+	 *        precision; the first is the reference
+	 * @param predator_nn_base neural network base for predator animats
+	 * @param params simulation parameters
+	 * @param generations generations the reference population is evolved for
+	 * @param genome_count number of genomes of the population that are compared
+	 * @param trials trials each genome is run for in each precision
+	 * @param trial_length length of each trial in epochs, or 0 for a full generation
+	 * @param samples sets of sensor values fed to each network
+	 * @param seed seed of the reference world, the trials and the sensor values
+	 * @param threads number of worker threads
+	 */
+	public PrecisionCheck(NeuralNetworkBase[] bases, NeuralNetworkBase predator_nn_base, Parameters params,
+			int generations, int genome_count, int trials, int trial_length, int samples, long seed, int threads) {
+		for (NeuralNetworkBase base : bases)
+			base.setInterface(Prey.NN_INPUTS, Prey.NN_OUTPUTS);
+		this.bases = bases;
+		this.predator_nn_base = predator_nn_base;
+		this.params = params;
+		this.generations = Math.max(1, generations);
+		this.genome_count = Math.max(1, genome_count);
+		this.trial_length = trial_length;
+		this.samples = Math.max(1, samples);
+		this.seed = seed;
+		
+		this.seeds = new long[Math.max(1, trials)];
+		for (int i = 0; i < this.seeds.length; i++)
+			this.seeds[i] = ReproductionEngine.mix(seed + 1 + i);
+		
+		this.workers = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Precision Check");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+	
+	/**
+	 * Evolves the reference population, runs the trials and prints the results.
+	 */
+	public void run() {
+		Environment reference = new Environment(this.bases[0], this.predator_nn_base, this.params, this.seed);
+		reference.runGenerations(this.generations);
+		double[][] population = reference.getPopulation();
+		int genomes = Math.min(this.genome_count, population.length);
+		
+		double[][] fitness = runTrials(population, genomes);
+		System.out.println("Precision\tBytes per network\tMean fitness\tMean |difference|\tMax |difference|\tSame fitness");
+		for (int k = 0; k < this.bases.length; k++) {
+			double total = 0.0, difference = 0.0, largest = 0.0;
+			int same = 0;
+			for (int r = 0; r < fitness[k].length; r++) {
+				double d = Math.abs(fitness[k][r] - fitness[0][r]);
+				total += fitness[k][r];
+				difference += d;
+				largest = Math.max(largest, d);
+				if (d == 0.0)
+					same++;
+			}
+			int n = fitness[k].length;
+			System.out.println(String.format("%s\t%d\t%.4f\t%.4f\t%.4f\t%.1f%%", getName(k),
+					new NeuralNetwork(this.bases[k]).getStateSize(), total / n, difference / n, largest, 100.0 * same / n));
+		}
+		
+		System.out.println();
+		System.out.println("Precision\tMean |effector difference|\tMax |effector difference|");
+		double[][] outputs = compareOutputs(population, genomes);
+		for (int k = 0; k < this.bases.length; k++)
+			System.out.println(String.format("%s\t%.6f\t%.6f", getName(k), outputs[k][0], outputs[k][1]));
+		
+		this.workers.shutdown();
+	}
+	
+	/**
+	 * Returns the name of the precision of a base, as given in the configuration.
+	 */
+	private String getName(int k) {
+		return this.bases[k].precision.toString().toLowerCase();
+	}
+	
+	/**
+	 * Runs every trial of every genome in every precision in parallel.
+	 * 
+	 * @return fitness of trial t of genome g in precision k, at [k][g * trials + t]
+	 */
+	private double[][] runTrials(final double[][] population, int genomes) {
+		List<Callable<Double>> tasks = new ArrayList<Callable<Double>>();
+		for (int k = 0; k < this.bases.length; k++) {
+			final NeuralNetworkBase base = this.bases[k];
+			for (int g = 0; g < genomes; g++) {
+				final double[] weights = population[g];
+				for (int t = 0; t < this.seeds.length; t++) {
+					final long trial_seed = this.seeds[t];
+					tasks.add(new Callable<Double>() {
+						@Override
+						public Double call() {
+							Prey genome = new Prey(base, null);
+							genome.resetFromWeights(weights);
+							Environment env = new Environment(base, PrecisionCheck.this.predator_nn_base,
+									PrecisionCheck.this.params, trial_seed);
+							return env.runTrial(genome, PrecisionCheck.this.trial_length);
+						}
+					});
+				}
+			}
+		}
+		
+		int per_base = genomes * this.seeds.length;
+		double[][] fitness = new double[this.bases.length][per_base];
+		try {
+			List<Future<Double>> results = this.workers.invokeAll(tasks);
+			for (int i = 0; i < results.size(); i++)
+				fitness[i / per_base][i % per_base] = results.get(i).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while running trials", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Error running trial", e.getCause());
+		}
+		return fitness;
+	}
+	
+	/**
+	 * Feeds the network of each genome in each precision the same random sensor values, one
+	 * set per update, and compares the effectors with those of the reference.
+	 * 
+	 * @return mean and largest absolute difference of the effectors in precision k, at [k]
+	 */
+	private double[][] compareOutputs(double[][] population, int genomes) {
+		int n = this.bases.length;
+		String[] inputs = Prey.NN_INPUTS, outputs = Prey.NN_OUTPUTS;
+		double[][] result = new double[n][2];
+		double[] reference = new double[outputs.length];
+		Random random = new Random(this.seed);
+		
+		NeuralNetwork[] networks = new NeuralNetwork[n];
+		for (int k = 0; k < n; k++)
+			networks[k] = new NeuralNetwork(this.bases[k]);
+		for (int g = 0; g < genomes; g++) {
+			for (int k = 0; k < n; k++) {
+				networks[k].reset();
+				networks[k].setWeights(population[g]);
+			}
+			for (int s = 0; s < this.samples; s++) {
+				double[] sensors = new double[inputs.length];
+				for (int i = 0; i < inputs.length; i++)
+					sensors[i] = random.nextDouble();
+				for (int k = 0; k < n; k++) {
+					for (int i = 0; i < inputs.length; i++)
+						networks[k].setNeuronValue(inputs[i], sensors[i]);
+					networks[k].update();
+					for (int o = 0; o < outputs.length; o++) {
+						double v = networks[k].getNeuronValue(outputs[o]);
+						if (k == 0)
+							reference[o] = v;
+						double d = Math.abs(v - reference[o]);
+						result[k][0] += d;
+						result[k][1] = Math.max(result[k][1], d);
+					}
+				}
+			}
+		}
+		for (int k = 0; k < n; k++)
+			result[k][0] /= (double)genomes * this.samples * outputs.length;
+		return result;
+	}
+}
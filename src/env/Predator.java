@@ -2,7 +2,6 @@ package env;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 
 import env.Environment.DebugState;
@@ -10,6 +9,7 @@ import nn.NeuralNetworkBase;
 
 /**
  * Class for a predator animat. The predator is a vehicle with a fixed brain controller, by default.
+ * When predators evolve, each is spawned from a genome of the environment's predator population.
  * 
  * @author Justin Morgan
  *
@@ -22,10 +22,17 @@ public class Predator extends Animat {
 	private final double SPEED_BASE = 1.8;
 	private final double ROTATE_BASE = 77.5;
 	
-	private final int WIDTH = 20;
-	private final int LENGTH = 32;
-	private final Color COLOR = new Color(255, 130, 70);
-	private final Color COLOR_SELECTED = new Color(255, 80, 20);
+	private static final int WIDTH = 20;
+	private static final int LENGTH = 32;
+	private static final Color COLOR = new Color(255, 130, 70);
+	private static final Color COLOR_SELECTED = new Color(255, 80, 20);
+	private static final Color COLOR_HEAD = Color.white;
+	
+	// Neurons set before and read after each update, declared to the network base
+	static final String[] NN_INPUTS = { "preyleft", "preyright", "energy" };
+	static final String[] NN_OUTPUTS = { "turnleft", "turnright" };
+	
+	private int genome_index = -1;
 	
 	/**
 	 * Constructs a new predator.
@@ -38,6 +45,35 @@ public class Predator extends Animat {
 		this.energy = ENERGY_MAX;
 	}
 	
+	/**
+	 * Restores the state of the predator to its initial values.
+	 */
+	@Override
+	protected void resetState() {
+		super.resetState();
+		this.energy = ENERGY_MAX;
+		this.genome_index = -1;
+	}
+	
+	/**
+	 * Sets the position of the genome the predator was spawned from in the environment's
+	 * predator population.
+	 * 
+	 * @param index genome index
+	 */
+	public void setGenomeIndex(int index) {
+		this.genome_index = index;
+	}
+	
+	/**
+	 * Returns the position of the genome the predator was spawned from.
+	 * 
+	 * @return genome index, or -1 if the predator has random weights
+	 */
+	public int getGenomeIndex() {
+		return this.genome_index;
+	}
+	
 	/**
 	 * Sets the rotation of the predator.
 	 * 
@@ -114,40 +150,69 @@ public class Predator extends Animat {
 	}
 	
 	/**
-	 * Draws the predator object.
+	 * Returns true if the predator is currently selected by the Watcher.
+	 * 
+	 * @return
+	 */
+	public boolean isSelected() {
+		return this.selected;
+	}
+	
+	/**
+	 * Returns the width and height of a predator sprite, large enough to hold the predator at any rotation.
+	 * 
+	 * @return size in pixels
+	 */
+	public static int getSpriteSize() {
+		return 52;
+	}
+	
+	/**
+	 * Returns the body color of a predator in the given state. Used to draw predators as points.
+	 * 
+	 * @param flags snapshot state flags
+	 * @return color
+	 */
+	public static Color getColor(byte flags) {
+		return (flags & WorldSnapshot.SELECTED) == 0 ? COLOR : COLOR_SELECTED;
+	}
+	
+	/**
+	 * Draws the body of a predator centered on the origin, facing along the x axis. Used to
+	 * render the predator sprites.
 	 * 
 	 * @param g2d
+	 * @param flags snapshot state flags
 	 */
-	public void draw(Graphics2D g2d) {
-		// Debug: display the gradient detectable by prey
-		DebugState debug = env.getDebugState();
-		if (debug == DebugState.All || debug == DebugState.Gradients) {
-			double r = env.PREDATOR_G_RADIUS;
-			
-			AffineTransform old_d = g2d.getTransform();
-			
-			g2d.translate(this.loc.getX() - r, this.loc.getY() - r);
-			
-			g2d.setColor(Color.BLACK);
-			g2d.drawOval(0, 0, (int)r * 2, (int)r * 2);
-			
-			g2d.setTransform(old_d);
-		}
-		
-		AffineTransform old = g2d.getTransform();
-
-		g2d.translate(this.loc.getX(), this.loc.getY());
-		g2d.rotate(this.rot);
+	public static void drawShape(Graphics2D g2d, byte flags) {
 		g2d.translate(-(LENGTH / 2), -(WIDTH / 2));
 		
-		if (!this.selected)
+		if ((flags & WorldSnapshot.SELECTED) == 0)
 			g2d.setColor(COLOR);
 		else
 			g2d.setColor(COLOR_SELECTED);
 		g2d.fillRect(0, 0, LENGTH, WIDTH);
-		g2d.setColor(new Color(255, 255, 255));
+		g2d.setColor(COLOR_HEAD);
 		g2d.fillRect(LENGTH, WIDTH/2 - 3, 6, 6);
-
-		g2d.setTransform(old);
+	}
+	
+	/**
+	 * Draws a predator object from a snapshot of the environment.
+	 * 
+	 * @param g2d
+	 * @param s snapshot
+	 * @param i index of the predator in the snapshot
+	 * @param debug debug state
+	 * @param atlas predator sprites
+	 */
+	public static void draw(Graphics2D g2d, WorldSnapshot s, int i, DebugState debug, SpriteAtlas atlas) {
+		// Debug: display the gradient detectable by prey
+		if (debug == DebugState.All || debug == DebugState.Gradients) {
+			int r = (int)Environment.PREDATOR_G_RADIUS;
+			g2d.setColor(Color.BLACK);
+			g2d.drawOval((int)(s.predator_x[i] - r), (int)(s.predator_y[i] - r), r * 2, r * 2);
+		}
+		
+		atlas.drawPredator(g2d, s.predator_flags[i], s.predator_x[i], s.predator_y[i], s.predator_rot[i]);
 	}
 }
@@ -2,7 +2,6 @@ package env;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 
 import env.Environment.DebugState;
@@ -24,15 +23,20 @@ public class Prey extends Animat {
 	private final double AMOUNT_PER_BITE = 1.0; // eaten by predator
 	private final int TIMEOUT = 60;
 	
-	private final int WIDTH = 10;
-	private final int LENGTH = 16;
-	private final Color COLOR = new Color(170, 230, 255);
-	private final Color COLOR_HEAD = Color.white;
-	private final Color COLOR_HEAD_SHOUT = Color.red;
-	private final Color COLOR_SELECTED = new Color(70, 130, 255);
-	private final Color COLOR_DEAD = new Color(60, 70, 80);
-	private final Color COLOR_DEAD_HEAD = new Color(90, 110, 110);
-	private final Color COLOR_DEAD_SELECTED = new Color(0, 10, 100);
+	private static final int WIDTH = 10;
+	private static final int LENGTH = 16;
+	private static final Color COLOR = new Color(170, 230, 255);
+	private static final Color COLOR_HEAD = Color.white;
+	private static final Color COLOR_HEAD_SHOUT = Color.red;
+	private static final Color COLOR_SELECTED = new Color(70, 130, 255);
+	private static final Color COLOR_DEAD = new Color(60, 70, 80);
+	private static final Color COLOR_DEAD_HEAD = new Color(90, 110, 110);
+	private static final Color COLOR_DEAD_SELECTED = new Color(0, 10, 100);
+	
+	// Neurons set before and read after each update, declared to the network base
+	static final String[] NN_INPUTS = { "foodleft", "foodright", "predatorleft", "predatorright", "holeleft",
+			"holeright", "holedepth", "habitatleft", "habitatright", "hearshout", "energy", "hunger" };
+	static final String[] NN_OUTPUTS = { "turnleft", "turnright", "eat", "dig", "enterhole", "shout" };
 	
 	private int timeout = 0;
 	private int shout_epochs = 0;
@@ -43,6 +47,10 @@ public class Prey extends Animat {
 	
 	private Hole hole_occupying = null;
 	
+	private long birth_epoch = 0;
+	private long death_epoch = 0;
+	private Species species = null; // fixed for the life of the object, since it depends on the network
+	
 	/**
 	 * Constructs a new prey.
 	 * 
@@ -65,6 +73,76 @@ public class Prey extends Animat {
 		super(nnb, parent, child, env);
 	}
 	
+	/**
+	 * Restores the state of the prey to its initial values.
+	 */
+	@Override
+	protected void resetState() {
+		super.resetState();
+		this.timeout = 0;
+		this.shout_epochs = 0;
+		this.remaining = 1.0;
+		this.hidden = false;
+		this.last_hear_shout = 0.0;
+		this.hole_occupying = null;
+		this.birth_epoch = 0;
+		this.death_epoch = 0;
+	}
+	
+	/**
+	 * Sets the species of the prey. Called once, when the prey is created by its species' pool.
+	 * 
+	 * @param species species
+	 */
+	void setSpecies(Species species) {
+		this.species = species;
+	}
+	
+	/**
+	 * Returns the species of the prey.
+	 * 
+	 * @return species, or null if the prey was not created by a species
+	 */
+	public Species getSpecies() {
+		return this.species;
+	}
+	
+	/**
+	 * Sets the epoch the prey was spawned in, counted from the start of the simulation.
+	 * 
+	 * @param epoch epoch
+	 */
+	public void setBirthEpoch(long epoch) {
+		this.birth_epoch = epoch;
+	}
+	
+	/**
+	 * Returns the epoch the prey was spawned in.
+	 * 
+	 * @return epoch
+	 */
+	public long getBirthEpoch() {
+		return this.birth_epoch;
+	}
+	
+	/**
+	 * Sets the epoch the prey died in, counted from the start of the simulation.
+	 * 
+	 * @param epoch epoch
+	 */
+	public void setDeathEpoch(long epoch) {
+		this.death_epoch = epoch;
+	}
+	
+	/**
+	 * Returns the epoch the prey died in.
+	 * 
+	 * @return epoch
+	 */
+	public long getDeathEpoch() {
+		return this.death_epoch;
+	}
+	
 	/**
 	 * Sets the rotation of the prey.
 	 * 
@@ -137,8 +215,7 @@ public class Prey extends Animat {
 		
 		if (h.occupy()) {
 			this.hole_occupying = h;
-			Point2D h_loc = h.getLocation();
-			this.loc = new Point2D.Double(h_loc.getX(), h_loc.getY());
+			this.loc.setLocation(h.getLocation());
 			return true;
 		}
 		return false;
@@ -284,63 +361,122 @@ public class Prey extends Animat {
 	}
 	
 	/**
-	 * Draws the prey object.
+	 * Returns true if the prey has been hidden from the environment.
 	 * 
-	 * @param g2d
+	 * @return
 	 */
-	public void draw(Graphics2D g2d) {
-		if (this.hidden)
-			return;
-		
-		// Debug: display the shout radius
-		DebugState debug = env.getDebugState();
+	public boolean isHidden() {
+		return this.hidden;
+	}
+	
+	/**
+	 * Returns true if the prey is currently selected by the Watcher.
+	 * 
+	 * @return
+	 */
+	public boolean isSelected() {
+		return this.selected;
+	}
+	
+	/**
+	 * Returns the radius of the prey's shout, or 0 if the prey is not shouting.
+	 * 
+	 * @return radius
+	 */
+	public double getShoutRadius() {
 		double shout_value = this.controller.getNeuronValue("shout");
-		if (isAlive() && (debug == DebugState.All || debug == DebugState.Shout || selected)) {
-			if (shout_value > 0.5) {
-				double r = env.PREY_SHOUT_MIN_RADIUS + (shout_value - 0.5) * (env.PREY_SHOUT_MAX_RADIUS - env.PREY_SHOUT_MIN_RADIUS);
-				AffineTransform old_d = g2d.getTransform();
-				
-				g2d.translate(this.loc.getX() - r, this.loc.getY() - r);
-				
-				if (selected)
-					g2d.setColor(Color.WHITE);
-				else
-					g2d.setColor(Color.RED);
-				g2d.drawOval(0, 0, (int)r * 2, (int)r * 2);
-				
-				g2d.setTransform(old_d);
-			}
-		}
-		
-		AffineTransform old = g2d.getTransform();
+		if (shout_value > 0.5)
+			return Environment.PREY_SHOUT_MIN_RADIUS + (shout_value - 0.5) * (Environment.PREY_SHOUT_MAX_RADIUS - Environment.PREY_SHOUT_MIN_RADIUS);
+		return 0.0;
+	}
+	
+	/**
+	 * Returns the width and height of a prey sprite, large enough to hold the prey at any rotation.
+	 * 
+	 * @return size in pixels
+	 */
+	public static int getSpriteSize() {
+		return 32;
+	}
+	
+	/**
+	 * Returns the body color of a prey in the given state. Used to draw prey as points.
+	 * 
+	 * @param flags snapshot state flags
+	 * @return color
+	 */
+	public static Color getColor(byte flags) {
+		boolean selected = (flags & WorldSnapshot.SELECTED) != 0;
+		if ((flags & WorldSnapshot.ALIVE) != 0)
+			return selected ? COLOR_SELECTED : COLOR;
+		else
+			return selected ? COLOR_DEAD_SELECTED : COLOR_DEAD;
+	}
+	
+	/**
+	 * Draws the body of a prey centered on the origin, facing along the x axis. Used to
+	 * render the prey sprites.
+	 * 
+	 * @param g2d
+	 * @param flags snapshot state flags
+	 */
+	public static void drawShape(Graphics2D g2d, byte flags) {
+		boolean alive = (flags & WorldSnapshot.ALIVE) != 0;
+		boolean selected = (flags & WorldSnapshot.SELECTED) != 0;
+		boolean shouting = (flags & WorldSnapshot.SHOUTING) != 0;
 		
-		g2d.translate(this.loc.getX(), this.loc.getY());
-		g2d.rotate(this.rot);
 		g2d.translate(-(LENGTH / 2), -(WIDTH / 2));
 		
 		// Body
-		if (this.isAlive())
-			if (!this.selected)
+		if (alive)
+			if (!selected)
 				g2d.setColor(COLOR);
 			else
 				g2d.setColor(COLOR_SELECTED);
 		else
-			if (!this.selected)
+			if (!selected)
 				g2d.setColor(COLOR_DEAD);
 			else
 				g2d.setColor(COLOR_DEAD_SELECTED);
 		g2d.fillRect(0, 0, LENGTH, WIDTH);
 		
 		// Head (colored red if shouting)
-		if (this.isAlive())
-			if (shout_value > 0.5)
+		if (alive)
+			if (shouting)
 				g2d.setColor(COLOR_HEAD_SHOUT);
 			else
 				g2d.setColor(COLOR_HEAD);
 		else
 			g2d.setColor(COLOR_DEAD_HEAD);
 		g2d.fillRect(LENGTH, WIDTH/2 - 3, 6, 6);
-
-		g2d.setTransform(old);
+	}
+	
+	/**
+	 * Draws a prey object from a snapshot of the environment.
+	 * 
+	 * @param g2d
+	 * @param s snapshot
+	 * @param i index of the prey in the snapshot
+	 * @param debug debug state
+	 * @param atlas prey sprites
+	 */
+	public static void draw(Graphics2D g2d, WorldSnapshot s, int i, DebugState debug, SpriteAtlas atlas) {
+		boolean alive = (s.prey_flags[i] & WorldSnapshot.ALIVE) != 0;
+		boolean selected = (s.prey_flags[i] & WorldSnapshot.SELECTED) != 0;
+		boolean shouting = (s.prey_flags[i] & WorldSnapshot.SHOUTING) != 0;
+		
+		// Debug: display the shout radius
+		if (alive && (debug == DebugState.All || debug == DebugState.Shout || selected)) {
+			if (shouting) {
+				int r = (int)s.prey_shout_radius[i];
+				if (selected)
+					g2d.setColor(Color.WHITE);
+				else
+					g2d.setColor(Color.RED);
+				g2d.drawOval((int)(s.prey_x[i] - r), (int)(s.prey_y[i] - r), r * 2, r * 2);
+			}
+		}
+		
+		atlas.drawPrey(g2d, s.prey_flags[i], s.prey_x[i], s.prey_y[i], s.prey_rot[i]);
 	}
 }
@@ -0,0 +1,268 @@
+package env;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * Keeps the prey of a generation in dense lists by state, so that each pass over the prey only
+ * touches the ones it cares about. Prey move from alive, to dead but still visible (a corpse
+ * that predators can find and eat), to gone once fully eaten. The lists are compacted once per
+ * epoch, keeping their order. Prey that change state during an epoch stay in their old list
+ * until then, so passes still need to check the state of each prey.
+ * 
+ * Each compaction also records the prey that died and the prey that were removed, so that
+ * the steady-state mode can replace and recycle them.
+ * 
+ * The alive list can be sorted by the Z-order (Morton) code of each prey's location, so that
+ * prey close together in space are also close together in the list. Passes over the list
+ * then read nearby cells of the gradient fields and grids one after another. The set of
+ * prey the environment holds is not reordered, and prey keep their ids.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class PreyIndex {
+	private Prey[] alive = new Prey[0];
+	private Prey[] dead = new Prey[0];
+	private int alive_count = 0;
+	private int dead_count = 0;
+	private int gone_count = 0;
+	
+	private long[] sort_keys = new long[0];
+	private Prey[] sort_buffer = new Prey[0];
+	
+	// Changes found by the last compaction
+	private Prey[] died = new Prey[0];
+	private Prey[] removed = new Prey[0];
+	private int died_count = 0;
+	private int removed_count = 0;
+	
+	/**
+	 * Rebuilds the lists from a new set of prey.
+	 * 
+	 * @param prey set of prey animats
+	 */
+	public void reset(Vector<Prey> prey) {
+		int n = prey.size();
+		if (this.alive.length < n)
+			grow(n);
+		Arrays.fill(this.alive, null);
+		Arrays.fill(this.dead, null);
+		Arrays.fill(this.died, null);
+		Arrays.fill(this.removed, null);
+		this.alive_count = 0;
+		this.dead_count = 0;
+		this.gone_count = 0;
+		this.died_count = 0;
+		this.removed_count = 0;
+		
+		for (int i = 0; i < n; i++) {
+			Prey p = prey.elementAt(i);
+			if (p.isHidden())
+				this.gone_count++;
+			else if (p.isAlive())
+				this.alive[this.alive_count++] = p;
+			else
+				this.dead[this.dead_count++] = p;
+		}
+	}
+	
+	/**
+	 * Adds a newly spawned prey to the end of the alive list.
+	 * 
+	 * @param p prey animat
+	 */
+	public void add(Prey p) {
+		if (this.alive_count + this.dead_count == this.alive.length)
+			grow(Math.max(16, this.alive.length * 2));
+		this.alive[this.alive_count++] = p;
+	}
+	
+	/**
+	 * Moves prey that have died or been eaten since the last call into their new lists.
+	 */
+	public void compact() {
+		for (int i = 0; i < this.died_count; i++)
+			this.died[i] = null;
+		for (int i = 0; i < this.removed_count; i++)
+			this.removed[i] = null;
+		this.died_count = 0;
+		this.removed_count = 0;
+		
+		// Corpses first, so that prey that die now are not checked twice
+		int n = 0;
+		for (int i = 0; i < this.dead_count; i++) {
+			Prey p = this.dead[i];
+			if (p.isHidden()) {
+				this.gone_count++;
+				this.removed[this.removed_count++] = p;
+			}
+			else
+				this.dead[n++] = p;
+		}
+		for (int i = n; i < this.dead_count; i++)
+			this.dead[i] = null;
+		this.dead_count = n;
+		
+		n = 0;
+		for (int i = 0; i < this.alive_count; i++) {
+			Prey p = this.alive[i];
+			if (p.isHidden()) {
+				this.gone_count++;
+				this.died[this.died_count++] = p;
+				this.removed[this.removed_count++] = p;
+			}
+			else if (!p.isAlive()) {
+				this.dead[this.dead_count++] = p;
+				this.died[this.died_count++] = p;
+			}
+			else
+				this.alive[n++] = p;
+		}
+		for (int i = n; i < this.alive_count; i++)
+			this.alive[i] = null;
+		this.alive_count = n;
+	}
+	
+	/**
+	 * Sorts the alive list by the Morton code of each prey's location. Locations are rounded
+	 * to cells of the given size first, and prey in the same cell keep their order.
+	 * 
+	 * @param cell_size width and height of a cell
+	 */
+	public void sortAlive(double cell_size) {
+		int n = this.alive_count;
+		if (this.sort_keys.length < n) {
+			this.sort_keys = new long[this.alive.length];
+			this.sort_buffer = new Prey[this.alive.length];
+		}
+		
+		// Morton code in the high bits, position in the list in the low bits
+		for (int i = 0; i < n; i++) {
+			Point2D loc = this.alive[i].getLocation();
+			int cx = Math.min(Math.max((int)(loc.getX() / cell_size), 0), 0xffff);
+			int cy = Math.min(Math.max((int)(loc.getY() / cell_size), 0), 0xffff);
+			this.sort_keys[i] = ((interleave(cx, cy) & 0xffffffffL) << 31) | i;
+		}
+		Arrays.sort(this.sort_keys, 0, n);
+		
+		for (int i = 0; i < n; i++)
+			this.sort_buffer[i] = this.alive[(int)(this.sort_keys[i] & 0x7fffffffL)];
+		System.arraycopy(this.sort_buffer, 0, this.alive, 0, n);
+		Arrays.fill(this.sort_buffer, 0, n, null);
+	}
+	
+	/**
+	 * Interleaves the bits of two 16-bit values, x in the even bits and y in the odd bits.
+	 */
+	private static int interleave(int x, int y) {
+		return spread(x) | (spread(y) << 1);
+	}
+	
+	/**
+	 * Spreads the 16 bits of a value out to the even bits.
+	 */
+	private static int spread(int v) {
+		v = (v | (v << 8)) & 0x00ff00ff;
+		v = (v | (v << 4)) & 0x0f0f0f0f;
+		v = (v | (v << 2)) & 0x33333333;
+		v = (v | (v << 1)) & 0x55555555;
+		return v;
+	}
+	
+	/**
+	 * Returns the number of prey in the alive list.
+	 * 
+	 * @return count
+	 */
+	public int getAliveCount() {
+		return this.alive_count;
+	}
+	
+	/**
+	 * Returns a prey from the alive list.
+	 * 
+	 * @param i index
+	 * @return prey object
+	 */
+	public Prey getAlive(int i) {
+		return this.alive[i];
+	}
+	
+	/**
+	 * Returns the number of prey in the dead but visible list.
+	 * 
+	 * @return count
+	 */
+	public int getDeadCount() {
+		return this.dead_count;
+	}
+	
+	/**
+	 * Returns a prey from the dead but visible list.
+	 * 
+	 * @param i index
+	 * @return prey object
+	 */
+	public Prey getDead(int i) {
+		return this.dead[i];
+	}
+	
+	/**
+	 * Returns the number of prey that have been fully eaten.
+	 * 
+	 * @return count
+	 */
+	public int getGoneCount() {
+		return this.gone_count;
+	}
+	
+	/**
+	 * Returns the number of prey that died before the last compaction.
+	 * 
+	 * @return count
+	 */
+	public int getDiedCount() {
+		return this.died_count;
+	}
+	
+	/**
+	 * Returns a prey that died before the last compaction.
+	 * 
+	 * @param i index
+	 * @return prey object
+	 */
+	public Prey getDied(int i) {
+		return this.died[i];
+	}
+	
+	/**
+	 * Returns the number of prey that left the lists in the last compaction.
+	 * 
+	 * @return count
+	 */
+	public int getRemovedCount() {
+		return this.removed_count;
+	}
+	
+	/**
+	 * Returns a prey that left the lists in the last compaction.
+	 * 
+	 * @param i index
+	 * @return prey object
+	 */
+	public Prey getRemoved(int i) {
+		return this.removed[i];
+	}
+	
+	/**
+	 * Grows the lists to hold the given number of prey.
+	 */
+	private void grow(int size) {
+		this.alive = Arrays.copyOf(this.alive, size);
+		this.dead = Arrays.copyOf(this.dead, size);
+		this.died = Arrays.copyOf(this.died, size);
+		this.removed = Arrays.copyOf(this.removed, size);
+	}
+}
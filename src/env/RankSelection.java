@@ -0,0 +1,45 @@
+package env;
+
+import java.util.Random;
+
+/**
+ * Rank-proportional selection. Animats are ranked by fitness, and each child's parent is drawn
+ * with probability proportional to rank, so the fittest animat of n is n times as likely to be
+ * chosen as the least fit. Unlike selection proportional to fitness, this does not depend on
+ * the scale of the fitness values.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class RankSelection implements SelectionStrategy {
+	private int[] order = new int[0];
+	
+	/**
+	 * Draws a parent for each child by rank.
+	 */
+	@Override
+	public void select(double[] fitness, int count, int children, Random random, int[] parents, boolean[] mutate) {
+		if (this.order.length < count)
+			this.order = new int[count];
+		TruncationSelection.selectTop(fitness, count, count, this.order);
+		
+		// The animat at position r (fittest first) has weight count - r
+		long total = (long)count * (count + 1) / 2;
+		for (int c = 0; c < children; c++) {
+			long u = (long)(random.nextDouble() * total);
+			
+			// Find the first position whose cumulative weight exceeds u
+			int lo = 0, hi = count - 1;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				long cumulative = (long)(mid + 1) * count - (long)mid * (mid + 1) / 2;
+				if (cumulative > u)
+					hi = mid;
+				else
+					lo = mid + 1;
+			}
+			parents[c] = this.order[lo];
+			mutate[c] = true;
+		}
+	}
+}
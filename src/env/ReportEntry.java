@@ -1,5 +1,7 @@
 package env;
 
+import java.util.List;
+
 /**
  * Entry for a report file written by the ReportWriter.
  * 
@@ -7,6 +9,13 @@ package env;
  *
  */
 public class ReportEntry {
+	/**
+	 * Header line for a report file.
+	 */
+	public static final String HEADER = "Generation,Avg Fitness,Hole Total,Avg Holes Per Prey,"
+			+ "Min Holes Per Prey,Q1 Holes Per Prey,Median Holes Per Prey,"
+			+ "Q3 Holes Per Prey,Max Holes Per Prey,Avg Hole Depth,Survival";
+	
 	private int generation;
 	
 	public double avg_fitness; // Average prey fitness
@@ -22,6 +31,8 @@ public class ReportEntry {
 	
 	public double avg_hole_depth; // Average hole depth
 	
+	public double survival; // Fraction of prey alive at the end of the generation
+	
 	/**
 	 * Constructs a new report entry.
 	 * 
@@ -40,12 +51,63 @@ public class ReportEntry {
 		return this.generation;
 	}
 	
+	/**
+	 * Averages a list of entries. The generation of the result is that of the last entry.
+	 * 
+	 * @param entries report entries
+	 * @return mean entry
+	 */
+	public static ReportEntry mean(List<ReportEntry> entries) {
+		int n = entries.size();
+		ReportEntry mean = new ReportEntry(entries.get(n - 1).generation);
+		double hole_total = 0.0;
+		for (ReportEntry e : entries) {
+			mean.avg_fitness += e.avg_fitness / n;
+			hole_total += (double)e.hole_total / n;
+			mean.avg_holes_per_prey += e.avg_holes_per_prey / n;
+			mean.min_holes_per_prey += e.min_holes_per_prey / n;
+			mean.q1_holes_per_prey += e.q1_holes_per_prey / n;
+			mean.median_holes_per_prey += e.median_holes_per_prey / n;
+			mean.q3_holes_per_prey += e.q3_holes_per_prey / n;
+			mean.max_holes_per_prey += e.max_holes_per_prey / n;
+			mean.avg_hole_depth += e.avg_hole_depth / n;
+			mean.survival += e.survival / n;
+		}
+		mean.hole_total = (int)Math.round(hole_total);
+		return mean;
+	}
+	
+	/**
+	 * Reads a report entry from a line in the format of toString().
+	 * 
+	 * @param line line in CSV format
+	 * @return report entry
+	 * @throws NumberFormatException if the line is not a report entry
+	 */
+	public static ReportEntry parse(String line) {
+		String[] f = line.split(",");
+		if (f.length != 11)
+			throw new NumberFormatException("Expected 11 fields in report entry, got " + f.length);
+		ReportEntry entry = new ReportEntry(Integer.parseInt(f[0]));
+		entry.avg_fitness = Double.parseDouble(f[1]);
+		entry.hole_total = Integer.parseInt(f[2]);
+		entry.avg_holes_per_prey = Double.parseDouble(f[3]);
+		entry.min_holes_per_prey = Double.parseDouble(f[4]);
+		entry.q1_holes_per_prey = Double.parseDouble(f[5]);
+		entry.median_holes_per_prey = Double.parseDouble(f[6]);
+		entry.q3_holes_per_prey = Double.parseDouble(f[7]);
+		entry.max_holes_per_prey = Double.parseDouble(f[8]);
+		entry.avg_hole_depth = Double.parseDouble(f[9]);
+		entry.survival = Double.parseDouble(f[10]);
+		return entry;
+	}
+	
 	/**
 	 * Returns the report entry as a line in CSV format.
 	 */
 	@Override
 	public String toString() {
-		return String.format("%d,%.4f,%d,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f", this.generation,
+		return String.format("%d,%.4f,%d,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f", this.generation,
 										this.avg_fitness,
 										this.hole_total,
 										this.avg_holes_per_prey,
@@ -54,6 +116,7 @@ public class ReportEntry {
 										this.median_holes_per_prey,
 										this.q3_holes_per_prey,
 										this.max_holes_per_prey,
-										this.avg_hole_depth);
+										this.avg_hole_depth,
+										this.survival);
 	}
 }
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.Vector;
 
 /**
@@ -15,56 +16,205 @@ import java.util.Vector;
  * 
  * report-MM.dd.yy_hh.mm.ss.csv
  * 
+ * When several prey species share the world, the same statistics for each species are
+ * written to species-report-MM.dd.yy_hh.mm.ss.csv.
+ * 
+ * Statistics and file writes run on a BackgroundWriter, so that neither the simulation
+ * nor the window waits on them.
+ * 
  * @author Justin Morgan
  *
  */
 public class ReportWriter {
+	private final int STATUS_FRAMES = 180;
+	
+	/**
+	 * Raw values captured from a generation as it ends. Statistics are computed from the
+	 * sample on the writer thread.
+	 */
+	private static class GenerationSample {
+		final int generation_num;
+		final double[] prey_fitness;
+		int prey_alive = 0;
+		final int[] hole_owner;
+		final double[] hole_depth;
+		
+		GenerationSample(int generation_num, int prey_count, int hole_count) {
+			this.generation_num = generation_num;
+			this.prey_fitness = new double[prey_count];
+			this.hole_owner = new int[hole_count];
+			this.hole_depth = new double[hole_count];
+		}
+	}
+	
+	// Only accessed from the writer thread
 	private Vector<ReportEntry> entries = new Vector<ReportEntry>();
+	private Vector<String> species_entries = new Vector<String>(); // species name, then entry
 	
+	private final BackgroundWriter writer;
 	private final int offs_x, offs_y;
-	private String statusmsg = null;
-	private int showstatus = 0;
+	private volatile String statusmsg = null;
+	private volatile int showstatus = 0;
 	
 	/**
 	 * Constructs a new ReportWriter.
 	 * 
+	 * @param writer background writer that runs report jobs
 	 * @param offs_x x position of status message
 	 * @param offs_y y position of status message
 	 */
-	public ReportWriter(int offs_x, int offs_y) {
+	public ReportWriter(BackgroundWriter writer, int offs_x, int offs_y) {
+		this.writer = writer;
 		this.offs_x = offs_x;
 		this.offs_y = offs_y;
 	}
 	
 	/**
-	 * Creates a new report entry for the current generation.
+	 * Creates a new report entry for the current generation. Only the raw values needed for
+	 * the entry are copied here; the statistics are computed on the writer thread.
 	 * 
 	 * @param generation_num generation number
 	 * @param prey set of prey animats
 	 * @param holes set of hole objects
 	 */
 	public void addGeneration(int generation_num, Vector<Prey> prey, Vector<Hole> holes) {
-		ReportEntry entry = new ReportEntry(generation_num);
+		final GenerationSample sample = capture(generation_num, prey, holes, false);
+		
+		// Entries must not be lost, so wait for room if the writer has fallen behind
+		writer.submit(new BackgroundWriter.Job() {
+			@Override
+			public String run() {
+				entries.add(summarize(sample));
+				return null;
+			}
+		}, null, BackgroundWriter.OverflowPolicy.Block);
+	}
+	
+	/**
+	 * Creates a new report entry for the current generation, along with an entry for each
+	 * species when there is more than one. The entry of a species only counts the holes
+	 * owned by its members.
+	 * 
+	 * @param generation_num generation number
+	 * @param prey set of prey animats
+	 * @param holes set of hole objects
+	 * @param species prey species
+	 */
+	public void addGeneration(int generation_num, Vector<Prey> prey, Vector<Hole> holes, Vector<Species> species) {
+		addGeneration(generation_num, prey, holes);
+		if (species.size() < 2)
+			return;
+		
+		final String[] names = new String[species.size()];
+		final GenerationSample[] samples = new GenerationSample[species.size()];
+		for (int k = 0; k < species.size(); k++) {
+			Species s = species.elementAt(k);
+			s.gatherMembers(prey);
+			names[k] = s.getName();
+			if (!s.members.isEmpty())
+				samples[k] = capture(generation_num, s.members, holes, true);
+			s.members.clear();
+		}
+		
+		writer.submit(new BackgroundWriter.Job() {
+			@Override
+			public String run() {
+				for (int k = 0; k < samples.length; k++) {
+					if (samples[k] != null)
+						species_entries.add(names[k] + "," + summarize(samples[k]).toString());
+				}
+				return null;
+			}
+		}, null, BackgroundWriter.OverflowPolicy.Block);
+	}
+	
+	/**
+	 * Computes the report entry for a generation on the calling thread, without adding it to
+	 * a report.
+	 * 
+	 * @param generation_num generation number
+	 * @param prey set of prey animats
+	 * @param holes set of hole objects
+	 * @return report entry
+	 */
+	public static ReportEntry createEntry(int generation_num, Vector<Prey> prey, Vector<Hole> holes) {
+		return summarize(capture(generation_num, prey, holes, false));
+	}
+	
+	/**
+	 * Copies the values needed for a report entry from a generation.
+	 * 
+	 * @param generation_num generation number
+	 * @param prey set of prey animats
+	 * @param holes set of hole objects
+	 * @param owned_only only include holes owned by the given prey
+	 * @return generation sample
+	 */
+	private static GenerationSample capture(int generation_num, Vector<Prey> prey, Vector<Hole> holes, boolean owned_only) {
+		IdentityHashMap<Prey, Integer> prey_index = new IdentityHashMap<Prey, Integer>(prey.size() * 2);
+		for (int i = 0; i < prey.size(); i++)
+			prey_index.put(prey.elementAt(i), i);
+		int hole_count = holes.size();
+		if (owned_only) {
+			hole_count = 0;
+			for (int i = 0; i < holes.size(); i++) {
+				if (prey_index.containsKey(holes.elementAt(i).getOwner()))
+					hole_count++;
+			}
+		}
+		
+		GenerationSample sample = new GenerationSample(generation_num, prey.size(), hole_count);
+		for (int i = 0; i < prey.size(); i++) {
+			Prey p = prey.elementAt(i);
+			sample.prey_fitness[i] = p.getFitness();
+			if (p.isAlive())
+				sample.prey_alive++;
+		}
+		int n = 0;
+		for (int i = 0; i < holes.size(); i++) {
+			Hole h = holes.elementAt(i);
+			Integer owner = prey_index.get(h.getOwner());
+			if (owner == null && owned_only)
+				continue;
+			sample.hole_owner[n] = (owner != null) ? owner : -1;
+			sample.hole_depth[n] = h.getDepth();
+			n++;
+		}
+		return sample;
+	}
+	
+	/**
+	 * Computes the report entry for a generation sample.
+	 * 
+	 * @param sample generation sample
+	 * @return report entry
+	 */
+	private static ReportEntry summarize(GenerationSample sample) {
+		ReportEntry entry = new ReportEntry(sample.generation_num);
 		
 		// Average prey fitness
+		int prey_count = sample.prey_fitness.length;
 		double fitness_total = 0.0;
-		for (Prey p : prey) {
-			fitness_total += p.getFitness();
+		for (int i = 0; i < prey_count; i++) {
+			fitness_total += sample.prey_fitness[i];
 		}
-		entry.avg_fitness = fitness_total / prey.size();
+		entry.avg_fitness = fitness_total / prey_count;
+		
+		// Fraction of prey still alive
+		entry.survival = (double)sample.prey_alive / prey_count;
 		
 		// Total number of holes
-		entry.hole_total = holes.size();
+		int hole_count = sample.hole_owner.length;
+		entry.hole_total = hole_count;
 		
 		// Average number of holes per prey
-		int prey_count = prey.size();
 		int[] prey_hole_count = new int[prey_count];
 		for (int i = 0; i < prey_count; i++)
 			prey_hole_count[i] = 0;
-		for (int i = 0; i < holes.size(); i++) {
-			Prey h_owner = holes.elementAt(i).getOwner();
-			int ph_index = prey.indexOf(h_owner);
-			prey_hole_count[ph_index]++;
+		for (int i = 0; i < hole_count; i++) {
+			int ph_index = sample.hole_owner[i];
+			if (ph_index >= 0)
+				prey_hole_count[ph_index]++;
 		}
 		double avg_holes_per_prey = 0.0;
 		for (int i = 0; i < prey_count; i++)
@@ -93,11 +243,11 @@ public class ReportWriter {
 		
 		// Average hole depth
 		double avg_hole_depth = 0.0;
-		for (int i = 0; i < holes.size(); i++)
-			avg_hole_depth = (holes.elementAt(i).getDepth() + i * avg_hole_depth) / (i + 1);
+		for (int i = 0; i < hole_count; i++)
+			avg_hole_depth = (sample.hole_depth[i] + i * avg_hole_depth) / (i + 1);
 		entry.avg_hole_depth = avg_hole_depth;
 		
-		this.entries.add(entry);
+		return entry;
 	}
 	
 	/**
@@ -111,41 +261,81 @@ public class ReportWriter {
 	}
 	
 	/**
-	 * Writes the full report to a new file. If successful, sets a status message that
-	 * displays for a short amount of time in the simulation window.
+	 * Queues the full report to be written to a new file. Returns immediately; when the
+	 * write finishes, a status message displays for a short amount of time in the
+	 * simulation window. If the writer is too far behind, the request is dropped and the
+	 * status message says so.
 	 */
 	public void write() {
-		try {
-			String timestamp = getTimestamp();
-			String filename = "report-" + timestamp + ".csv";
-			FileWriter file_out = new FileWriter(filename);
-			
-			file_out.write("Generation,Avg Fitness,Hole Total,Avg Holes Per Prey,"
-					+ "Min Holes Per Prey,Q1 Holes Per Prey,Median Holes Per Prey,"
-					+ "Q3 Holes Per Prey,Max Holes Per Prey,Avg Hole Depth\n");
-			
-			for (ReportEntry entry : this.entries)
-				file_out.write(entry.toString() + "\n");
-			
-			file_out.close();
+		final String timestamp = getTimestamp();
+		final String filename = "report-" + timestamp + ".csv";
+		
+		writer.submit(new BackgroundWriter.Job() {
+			@Override
+			public String run() throws IOException {
+				FileWriter file_out = new FileWriter(filename);
+				try {
+					file_out.write(ReportEntry.HEADER + "\n");
+					
+					for (ReportEntry entry : entries)
+						file_out.write(entry.toString() + "\n");
+				} finally {
+					file_out.close();
+				}
+				if (species_entries.isEmpty())
+					return "Wrote report successfully: " + filename;
+				
+				String species_filename = "species-report-" + timestamp + ".csv";
+				file_out = new FileWriter(species_filename);
+				try {
+					file_out.write("Species," + ReportEntry.HEADER + "\n");
+					
+					for (String entry : species_entries)
+						file_out.write(entry + "\n");
+				} finally {
+					file_out.close();
+				}
+				return "Wrote report successfully: " + filename + ", " + species_filename;
+			}
+		}, new BackgroundWriter.Callback() {
+			@Override
+			public void completed(String message) {
+				setStatus(message);
+			}
 			
-			this.statusmsg = "Wrote report successfully: " + filename;
-			this.showstatus = 180;
-		} catch (IOException e) {
-			System.err.println("Error writing report: " + e.getMessage());
-			return;
-		}
+			@Override
+			public void failed(String message) {
+				System.err.println("Error writing report: " + message);
+				setStatus("Error writing report: " + message);
+			}
+		}, BackgroundWriter.OverflowPolicy.Drop);
+	}
+	
+	/**
+	 * Sets the status message and shows it for a short amount of time.
+	 * 
+	 * @param message status message
+	 */
+	private void setStatus(String message) {
+		this.statusmsg = message;
+		this.showstatus = STATUS_FRAMES;
 	}
 	
 	/**
-	 * Draws the status message.
+	 * Draws the status message, along with the number of pending writes, if any.
 	 * 
 	 * @param g2d
 	 */
 	public void draw(Graphics2D g2d) {
+		int depth = writer.getQueueDepth();
+		String msg = null;
 		if (showstatus > 0) {
-			g2d.drawString(statusmsg, this.offs_x, this.offs_y);
+			msg = statusmsg;
 			showstatus--;
 		}
+		if (depth > 0)
+			msg = (msg == null ? "" : msg + "  ") + "(Writing, " + depth + " pending)";
+		if (msg != null)
+			g2d.drawString(msg, this.offs_x, this.offs_y);
 	}
 }
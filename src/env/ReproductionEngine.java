@@ -0,0 +1,178 @@
+package env;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Builds the next generation of animats. Parents are chosen by a SelectionStrategy, and each
+ * child's neural network is then built from its parent. Each child has its own random number
+ * generator, seeded from the simulation's, so children can be built in parallel and still
+ * come out the same on every run. Large generations are split between worker threads.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class ReproductionEngine {
+	private final int PARALLEL_MIN = 64; // children needed before they are built in parallel
+	
+	private SelectionStrategy strategy;
+	private ExecutorService workers = null;
+	private final int worker_count;
+	
+	private double[] fitness = new double[0];
+	private int[] parents = new int[0];
+	private boolean[] mutate = new boolean[0];
+	private Animat[] parent_of = new Animat[0];
+	private Animat[] child = new Animat[0];
+	private Random[] child_random = new Random[0];
+	
+	/**
+	 * Constructs a new ReproductionEngine.
+	 * 
+	 * @param strategy selection strategy
+	 */
+	public ReproductionEngine(SelectionStrategy strategy) {
+		this.strategy = strategy;
+		this.worker_count = Runtime.getRuntime().availableProcessors();
+	}
+	
+	/**
+	 * Sets the selection strategy.
+	 * 
+	 * @param strategy selection strategy
+	 */
+	public void setStrategy(SelectionStrategy strategy) {
+		this.strategy = strategy;
+	}
+	
+	/**
+	 * Returns the selection strategy.
+	 * 
+	 * @return selection strategy
+	 */
+	public SelectionStrategy getStrategy() {
+		return this.strategy;
+	}
+	
+	/**
+	 * Builds the children of a generation. Children are taken from the pool and added to the
+	 * children list in order; their locations are left for the caller to set.
+	 * 
+	 * @param population current generation
+	 * @param children receives the children
+	 * @param count number of children
+	 * @param pool pool the children are taken from
+	 * @param random random number generator of the simulation
+	 */
+	public <T extends Animat> void reproduce(Vector<T> population, Vector<T> children, int count,
+			ObjectPool<T> pool, Random random) {
+		int n = population.size();
+		ensureCapacity(n, count);
+		
+		for (int i = 0; i < n; i++)
+			this.fitness[i] = population.elementAt(i).getFitness();
+		this.strategy.select(this.fitness, n, count, random, this.parents, this.mutate);
+		
+		long seed = random.nextLong();
+		for (int c = 0; c < count; c++) {
+			T pc = pool.acquire();
+			children.add(pc);
+			this.child[c] = pc;
+			this.parent_of[c] = population.elementAt(this.parents[c]);
+			this.child_random[c].setSeed(mix(seed + c));
+		}
+		
+		if (count < PARALLEL_MIN || this.worker_count < 2)
+			build(0, count);
+		else
+			buildParallel(count);
+		
+		for (int c = 0; c < count; c++) {
+			this.child[c] = null;
+			this.parent_of[c] = null;
+		}
+	}
+	
+	/**
+	 * Builds children in the given range on the current thread.
+	 */
+	private void build(int from, int to) {
+		for (int c = from; c < to; c++)
+			this.child[c].resetFromParent(this.parent_of[c], this.mutate[c], this.child_random[c]);
+	}
+	
+	/**
+	 * Splits the children between the worker threads and waits for all of them to be built.
+	 */
+	private void buildParallel(int count) {
+		if (this.workers == null) {
+			this.workers = Executors.newFixedThreadPool(this.worker_count, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Reproduction");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(this.worker_count);
+		int chunk = (count + this.worker_count - 1) / this.worker_count;
+		for (int from = 0; from < count; from += chunk) {
+			final int start = from, end = Math.min(from + chunk, count);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					build(start, end);
+					return null;
+				}
+			});
+		}
+		
+		try {
+			for (Future<Void> f : this.workers.invokeAll(tasks))
+				f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while building children", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Error building children", e.getCause());
+		}
+	}
+	
+	/**
+	 * Grows the working arrays to fit a generation.
+	 */
+	private void ensureCapacity(int n, int count) {
+		if (this.fitness.length < n)
+			this.fitness = new double[n];
+		if (this.parents.length < count) {
+			this.parents = new int[count];
+			this.mutate = new boolean[count];
+			this.parent_of = new Animat[count];
+			this.child = new Animat[count];
+			Random[] nr = new Random[count];
+			System.arraycopy(this.child_random, 0, nr, 0, this.child_random.length);
+			for (int i = this.child_random.length; i < count; i++)
+				nr[i] = new Random();
+			this.child_random = nr;
+		}
+	}
+	
+	/**
+	 * Scrambles a seed, so that the generators of neighboring children are unrelated.
+	 */
+	static long mix(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return z ^ (z >>> 33);
+	}
+}
@@ -0,0 +1,83 @@
+package env;
+
+/**
+ * Running mean and variance of a series of values, updated one value at a time with
+ * Welford's method, along with a 95% confidence interval for the mean.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class RunningStats {
+	// Two-sided 95% quantiles of Student's t distribution for 1 to 30 degrees of freedom
+	private static final double[] T_95 = {
+		12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+		2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+		2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+	};
+	private static final double Z_95 = 1.960;
+	
+	private int count = 0;
+	private double mean = 0.0;
+	private double m2 = 0.0; // sum of squared differences from the mean
+	
+	/**
+	 * Removes all values.
+	 */
+	public void clear() {
+		this.count = 0;
+		this.mean = 0.0;
+		this.m2 = 0.0;
+	}
+	
+	/**
+	 * Adds a value.
+	 * 
+	 * @param x value
+	 */
+	public void add(double x) {
+		this.count++;
+		double delta = x - this.mean;
+		this.mean += delta / this.count;
+		this.m2 += delta * (x - this.mean);
+	}
+	
+	/**
+	 * Returns the number of values.
+	 * 
+	 * @return count
+	 */
+	public int getCount() {
+		return this.count;
+	}
+	
+	/**
+	 * Returns the mean of the values.
+	 * 
+	 * @return mean, or 0 if there are no values
+	 */
+	public double getMean() {
+		return this.mean;
+	}
+	
+	/**
+	 * Returns the sample variance of the values.
+	 * 
+	 * @return variance, or 0 if there are fewer than two values
+	 */
+	public double getVariance() {
+		return this.count > 1 ? this.m2 / (this.count - 1) : 0.0;
+	}
+	
+	/**
+	 * Returns the half width of the 95% confidence interval for the mean.
+	 * 
+	 * @return half width, or infinity if there are fewer than two values
+	 */
+	public double getHalfWidth() {
+		if (this.count < 2)
+			return Double.POSITIVE_INFINITY;
+		int df = this.count - 1;
+		double t = df <= T_95.length ? T_95[df - 1] : Z_95;
+		return t * Math.sqrt(getVariance() / this.count);
+	}
+}
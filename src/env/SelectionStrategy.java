@@ -0,0 +1,26 @@
+package env;
+
+import java.util.Random;
+
+/**
+ * Strategy for choosing the parents of the next generation. Given the fitness of each animat
+ * in the current generation, a strategy chooses a parent for each child, and whether the
+ * child's neural network weights are mutated or copied exactly from the parent.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public interface SelectionStrategy {
+	
+	/**
+	 * Chooses a parent for each child of the next generation.
+	 * 
+	 * @param fitness fitness of each animat in the current generation
+	 * @param count number of animats in the current generation
+	 * @param children number of children to choose parents for
+	 * @param random random number generator
+	 * @param parents receives the index of the parent of each child
+	 * @param mutate receives true for each child whose weights are mutated, or false for an exact copy
+	 */
+	public void select(double[] fitness, int count, int children, Random random, int[] parents, boolean[] mutate);
+}
@@ -0,0 +1,110 @@
+package env;
+
+/**
+ * Sequential sign test on paired results. Each pair is scored as a win for the first or second
+ * of two competitors, or a tie, which is ignored. After each pair, Wald's sequential
+ * probability ratio test compares the hypothesis that both are equally likely to win
+ * against the hypotheses that one of them wins with a given probability. The test stops as
+ * soon as the evidence for one hypothesis is strong enough, which takes few pairs when the
+ * difference is large.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class SequentialSignTest {
+	
+	/**
+	 * Outcome of the test.
+	 */
+	public enum Result {
+		Undecided,
+		FirstBetter,
+		SecondBetter,
+		NoDifference
+	}
+	
+	private final double win_step; // log likelihood ratio change for a win
+	private final double loss_step; // log likelihood ratio change for a loss
+	private final double upper, lower;
+	
+	private int wins = 0, losses = 0, ties = 0;
+	
+	/**
+	 * Constructs a new SequentialSignTest.
+	 * 
+	 * @param alpha chance of finding a difference when there is none
+	 * @param beta chance of missing a difference of the given size
+	 * @param win_rate chance that the better competitor wins a pair, for the difference to
+	 *        be found; between 0.5 and 1
+	 */
+	public SequentialSignTest(double alpha, double beta, double win_rate) {
+		this.win_step = Math.log(2.0 * win_rate);
+		this.loss_step = Math.log(2.0 * (1.0 - win_rate));
+		
+		// The difference can be in either direction, so each side gets half of alpha
+		this.upper = Math.log((1.0 - beta) / (alpha / 2.0));
+		this.lower = Math.log(beta / (1.0 - alpha / 2.0));
+	}
+	
+	/**
+	 * Adds a pair of results. Higher results are better. Pairs added once the test has
+	 * reached a decision are ignored.
+	 * 
+	 * @param first result of the first competitor
+	 * @param second result of the second competitor
+	 */
+	public void add(double first, double second) {
+		if (getResult() != Result.Undecided)
+			return;
+		if (first > second)
+			this.wins++;
+		else if (first < second)
+			this.losses++;
+		else
+			this.ties++;
+	}
+	
+	/**
+	 * Returns the outcome of the test so far.
+	 * 
+	 * @return result
+	 */
+	public Result getResult() {
+		double first = this.wins * this.win_step + this.losses * this.loss_step;
+		double second = this.wins * this.loss_step + this.losses * this.win_step;
+		if (first >= this.upper)
+			return Result.FirstBetter;
+		else if (second >= this.upper)
+			return Result.SecondBetter;
+		else if (first <= this.lower && second <= this.lower)
+			return Result.NoDifference;
+		return Result.Undecided;
+	}
+	
+	/**
+	 * Returns the number of pairs won by the first competitor.
+	 * 
+	 * @return count
+	 */
+	public int getWins() {
+		return this.wins;
+	}
+	
+	/**
+	 * Returns the number of pairs won by the second competitor.
+	 * 
+	 * @return count
+	 */
+	public int getLosses() {
+		return this.losses;
+	}
+	
+	/**
+	 * Returns the number of tied pairs.
+	 * 
+	 * @return count
+	 */
+	public int getTies() {
+		return this.ties;
+	}
+}
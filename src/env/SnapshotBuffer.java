@@ -0,0 +1,59 @@
+package env;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free triple buffer that hands world snapshots from the simulation thread to the
+ * simulation window. The simulation fills its back buffer and publishes it with a single
+ * atomic swap, receiving an older snapshot in return to fill next. The window swaps its
+ * front buffer for the newest published snapshot whenever one is available. Neither side
+ * ever waits for the other, and no snapshots are allocated after construction.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class SnapshotBuffer {
+	private final AtomicReference<WorldSnapshot> ready;
+	private WorldSnapshot back; // owned by the simulation thread
+	private WorldSnapshot front; // owned by the window
+	private long sequence = 0;
+	
+	/**
+	 * Constructs a new SnapshotBuffer with three empty snapshots.
+	 */
+	public SnapshotBuffer() {
+		this.back = new WorldSnapshot();
+		this.ready = new AtomicReference<WorldSnapshot>(new WorldSnapshot());
+		this.front = new WorldSnapshot();
+	}
+	
+	/**
+	 * Returns the snapshot to be filled by the simulation thread.
+	 * 
+	 * @return back buffer
+	 */
+	public WorldSnapshot getBackBuffer() {
+		return this.back;
+	}
+	
+	/**
+	 * Publishes the back buffer as the newest snapshot. Called by the simulation thread
+	 * after filling the back buffer.
+	 */
+	public void publish() {
+		this.back.sequence = ++this.sequence;
+		this.back = this.ready.getAndSet(this.back);
+	}
+	
+	/**
+	 * Returns the newest published snapshot. Called by the window; the returned snapshot
+	 * remains valid until the next call.
+	 * 
+	 * @return front buffer
+	 */
+	public WorldSnapshot acquire() {
+		if (this.ready.get().sequence > this.front.sequence)
+			this.front = this.ready.getAndSet(this.front);
+		return this.front;
+	}
+}
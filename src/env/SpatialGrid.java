@@ -0,0 +1,208 @@
+package env;
+
+/**
+ * Uniform grid over a set of points for fast lookups by location. Points are added with
+ * add(), then build() sorts them into cells of the given size. A query only visits the
+ * cells that overlap the query circle, so its cost depends on the number of nearby points
+ * rather than the total. The grid is meant to be cleared and rebuilt whenever the points
+ * move; its arrays are reused between builds.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class SpatialGrid {
+	private final int MAX_CELLS = 1 << 20;
+	
+	private int count = 0;
+	private double[] xs = new double[16];
+	private double[] ys = new double[16];
+	
+	private double cell_size = 1.0;
+	private double min_x, min_y;
+	private int cols = 0, rows = 0;
+	private int[] cell_start = new int[1]; // first entry of each cell in sorted, plus end
+	private int[] sorted = new int[16]; // point indices ordered by cell
+	private int[] point_cell = new int[16];
+	
+	private int result_count = 0;
+	private int[] results = new int[16];
+	
+	/**
+	 * Removes all points from the grid.
+	 */
+	public void clear() {
+		this.count = 0;
+		this.cols = this.rows = 0;
+	}
+	
+	/**
+	 * Adds a point to the grid. The grid must be rebuilt before the point can be found.
+	 * 
+	 * @param x x position
+	 * @param y y position
+	 * @return index of the point
+	 */
+	public int add(double x, double y) {
+		if (this.count == this.xs.length) {
+			int n = this.count * 2;
+			double[] nx = new double[n], ny = new double[n];
+			System.arraycopy(this.xs, 0, nx, 0, this.count);
+			System.arraycopy(this.ys, 0, ny, 0, this.count);
+			this.xs = nx;
+			this.ys = ny;
+		}
+		this.xs[this.count] = x;
+		this.ys[this.count] = y;
+		return this.count++;
+	}
+	
+	/**
+	 * Returns the number of points in the grid.
+	 * 
+	 * @return count
+	 */
+	public int size() {
+		return this.count;
+	}
+	
+	/**
+	 * Sorts all added points into cells. Cells are enlarged if the bounds of the points
+	 * would need too many cells at the given size.
+	 * 
+	 * @param cell_size width and height of a cell
+	 */
+	public void build(double cell_size) {
+		if (this.count == 0) {
+			this.cols = this.rows = 0;
+			return;
+		}
+		
+		double max_x, max_y;
+		this.min_x = max_x = this.xs[0];
+		this.min_y = max_y = this.ys[0];
+		for (int i = 1; i < this.count; i++) {
+			this.min_x = Math.min(this.min_x, this.xs[i]);
+			this.min_y = Math.min(this.min_y, this.ys[i]);
+			max_x = Math.max(max_x, this.xs[i]);
+			max_y = Math.max(max_y, this.ys[i]);
+		}
+		
+		this.cell_size = cell_size;
+		while (true) {
+			this.cols = (int)((max_x - this.min_x) / this.cell_size) + 1;
+			this.rows = (int)((max_y - this.min_y) / this.cell_size) + 1;
+			if ((long)this.cols * this.rows <= MAX_CELLS)
+				break;
+			this.cell_size *= 2.0;
+		}
+		
+		int cells = this.cols * this.rows;
+		if (this.cell_start.length < cells + 1)
+			this.cell_start = new int[Math.max(cells + 1, this.cell_start.length * 2)];
+		if (this.sorted.length < this.count) {
+			this.sorted = new int[this.xs.length];
+			this.point_cell = new int[this.xs.length];
+		}
+		
+		// Counting sort by cell
+		for (int c = 0; c <= cells; c++)
+			this.cell_start[c] = 0;
+		for (int i = 0; i < this.count; i++) {
+			int c = getCell(this.xs[i], this.ys[i]);
+			this.point_cell[i] = c;
+			this.cell_start[c + 1]++;
+		}
+		for (int c = 0; c < cells; c++)
+			this.cell_start[c + 1] += this.cell_start[c];
+		for (int i = 0; i < this.count; i++) {
+			int c = this.point_cell[i];
+			this.sorted[this.cell_start[c]++] = i;
+		}
+		for (int c = cells; c > 0; c--)
+			this.cell_start[c] = this.cell_start[c - 1];
+		this.cell_start[0] = 0;
+	}
+	
+	/**
+	 * Returns the cell containing a point inside the bounds of the grid.
+	 */
+	private int getCell(double x, double y) {
+		int cx = Math.min((int)((x - this.min_x) / this.cell_size), this.cols - 1);
+		int cy = Math.min((int)((y - this.min_y) / this.cell_size), this.rows - 1);
+		return cy * this.cols + cx;
+	}
+	
+	/**
+	 * Finds all points within a radius of the given location. The points found are read
+	 * with getResult().
+	 * 
+	 * @param x x position
+	 * @param y y position
+	 * @param radius search radius
+	 * @return number of points found
+	 */
+	public int query(double x, double y, double radius) {
+		this.result_count = 0;
+		if (this.cols == 0)
+			return 0;
+		
+		int cx0 = (int)Math.floor((x - radius - this.min_x) / this.cell_size);
+		int cx1 = (int)Math.floor((x + radius - this.min_x) / this.cell_size);
+		int cy0 = (int)Math.floor((y - radius - this.min_y) / this.cell_size);
+		int cy1 = (int)Math.floor((y + radius - this.min_y) / this.cell_size);
+		cx0 = Math.max(cx0, 0);
+		cy0 = Math.max(cy0, 0);
+		cx1 = Math.min(cx1, this.cols - 1);
+		cy1 = Math.min(cy1, this.rows - 1);
+		
+		double r2 = radius * radius;
+		for (int cy = cy0; cy <= cy1; cy++) {
+			for (int cx = cx0; cx <= cx1; cx++) {
+				int c = cy * this.cols + cx;
+				for (int k = this.cell_start[c]; k < this.cell_start[c + 1]; k++) {
+					int i = this.sorted[k];
+					double dx = this.xs[i] - x, dy = this.ys[i] - y;
+					if (dx * dx + dy * dy <= r2) {
+						if (this.result_count == this.results.length) {
+							int[] nr = new int[this.result_count * 2];
+							System.arraycopy(this.results, 0, nr, 0, this.result_count);
+							this.results = nr;
+						}
+						this.results[this.result_count++] = i;
+					}
+				}
+			}
+		}
+		return this.result_count;
+	}
+	
+	/**
+	 * Returns a point found by the last query.
+	 * 
+	 * @param i result number
+	 * @return index of the point
+	 */
+	public int getResult(int i) {
+		return this.results[i];
+	}
+	
+	/**
+	 * Returns the x position of a point.
+	 * 
+	 * @param i index of the point
+	 * @return x position
+	 */
+	public double getX(int i) {
+		return this.xs[i];
+	}
+	
+	/**
+	 * Returns the y position of a point.
+	 * 
+	 * @param i index of the point
+	 * @return y position
+	 */
+	public double getY(int i) {
+		return this.ys[i];
+	}
+}
@@ -0,0 +1,108 @@
+package env;
+
+import java.util.Vector;
+
+import nn.NeuralNetworkBase;
+
+/**
+ * A species of prey sharing a world with other species. Each species has its own neural
+ * network base and a fixed number of prey in each generation, and only breeds with its own
+ * members. Prey of a species are taken from and returned to the species' own pool, since
+ * their networks cannot be reused by another species.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class Species {
+	private final String name;
+	private final int index;
+	private final NeuralNetworkBase nn_base;
+	private final int quota;
+	private final ObjectPool<Prey> pool;
+	
+	// Members of the species, gathered when they are needed for breeding
+	final Vector<Prey> members = new Vector<Prey>();
+	
+	/**
+	 * Constructs a new Species.
+	 * 
+	 * @param name name shown in the window and reports
+	 * @param index position of the species in the environment's list
+	 * @param nn_base neural network base for prey of the species
+	 * @param quota number of prey of the species in each generation
+	 * @param env environment
+	 */
+	public Species(String name, int index, NeuralNetworkBase nn_base, int quota, final Environment env) {
+		this.name = name;
+		this.index = index;
+		this.nn_base = nn_base;
+		this.quota = quota;
+		this.pool = new ObjectPool<Prey>() {
+			@Override
+			protected Prey create() {
+				Prey p = new Prey(Species.this.nn_base, env);
+				p.setSpecies(Species.this);
+				return p;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the name of the species.
+	 * 
+	 * @return name
+	 */
+	public String getName() {
+		return this.name;
+	}
+	
+	/**
+	 * Returns the position of the species in the environment's list.
+	 * 
+	 * @return index
+	 */
+	public int getIndex() {
+		return this.index;
+	}
+	
+	/**
+	 * Returns the neural network base for prey of the species.
+	 * 
+	 * @return neural network base
+	 */
+	public NeuralNetworkBase getNeuralNetworkBase() {
+		return this.nn_base;
+	}
+	
+	/**
+	 * Returns the number of prey of the species in each generation.
+	 * 
+	 * @return quota
+	 */
+	public int getQuota() {
+		return this.quota;
+	}
+	
+	/**
+	 * Returns the pool prey of the species are taken from.
+	 * 
+	 * @return pool
+	 */
+	public ObjectPool<Prey> getPool() {
+		return this.pool;
+	}
+	
+	/**
+	 * Fills the member list with the prey of the species from a set of prey, in order.
+	 * 
+	 * @param prey set of prey animats
+	 */
+	void gatherMembers(Vector<Prey> prey) {
+		this.members.clear();
+		for (int i = 0; i < prey.size(); i++) {
+			Prey p = prey.elementAt(i);
+			if (p.getSpecies() == this)
+				this.members.add(p);
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package env;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * Pre-rendered images of prey, predators and holes used by the simulation window. Prey and
+ * predator bodies are drawn once for each color variant at a fixed number of rotation
+ * angles, so drawing an animat is a single image copy instead of a transformed, antialiased
+ * shape. Each atlas row holds one variant, indexed by the snapshot state flags, and each
+ * column one rotation angle. Holes have one image for each color level.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class SpriteAtlas {
+	private final int ANGLE_STEPS = 64;
+	private final int PREY_VARIANTS = 8; // ALIVE | SELECTED | SHOUTING
+	private final int PREDATOR_VARIANTS = 4; // ALIVE | SELECTED
+	
+	private final int prey_size;
+	private final int predator_size;
+	private final int hole_size;
+	
+	private BufferedImage prey_atlas;
+	private BufferedImage predator_atlas;
+	private BufferedImage hole_atlas;
+	
+	private boolean subpixel = false;
+	
+	/**
+	 * Renders all sprites into images compatible with the given graphics configuration.
+	 * 
+	 * @param gc graphics configuration of the simulation window
+	 */
+	public SpriteAtlas(GraphicsConfiguration gc) {
+		this.prey_size = Prey.getSpriteSize();
+		this.predator_size = Predator.getSpriteSize();
+		this.hole_size = Hole.getSpriteSize();
+		
+		// Prey
+		this.prey_atlas = createImage(gc, this.prey_size * ANGLE_STEPS, this.prey_size * PREY_VARIANTS);
+		Graphics2D g2d = createGraphics(this.prey_atlas);
+		for (int v = 0; v < PREY_VARIANTS; v++) {
+			for (int a = 0; a < ANGLE_STEPS; a++) {
+				Graphics2D g = (Graphics2D)g2d.create();
+				g.translate(a * this.prey_size + this.prey_size / 2.0, v * this.prey_size + this.prey_size / 2.0);
+				g.rotate(getAngle(a));
+				Prey.drawShape(g, (byte)v);
+				g.dispose();
+			}
+		}
+		g2d.dispose();
+		
+		// Predators
+		this.predator_atlas = createImage(gc, this.predator_size * ANGLE_STEPS, this.predator_size * PREDATOR_VARIANTS);
+		g2d = createGraphics(this.predator_atlas);
+		for (int v = 0; v < PREDATOR_VARIANTS; v++) {
+			for (int a = 0; a < ANGLE_STEPS; a++) {
+				Graphics2D g = (Graphics2D)g2d.create();
+				g.translate(a * this.predator_size + this.predator_size / 2.0, v * this.predator_size + this.predator_size / 2.0);
+				g.rotate(getAngle(a));
+				Predator.drawShape(g, (byte)v);
+				g.dispose();
+			}
+		}
+		g2d.dispose();
+		
+		// Holes
+		this.hole_atlas = createImage(gc, this.hole_size * Hole.COLOR_LEVELS, this.hole_size);
+		g2d = createGraphics(this.hole_atlas);
+		for (int l = 0; l < Hole.COLOR_LEVELS; l++) {
+			Graphics2D g = (Graphics2D)g2d.create();
+			g.translate(l * this.hole_size + this.hole_size / 2.0, this.hole_size / 2.0);
+			Hole.drawShape(g, l);
+			g.dispose();
+		}
+		g2d.dispose();
+	}
+	
+	/**
+	 * Creates a transparent image, accelerated if possible.
+	 */
+	private BufferedImage createImage(GraphicsConfiguration gc, int width, int height) {
+		if (gc != null)
+			return gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+	}
+	
+	/**
+	 * Returns an antialiased graphics context for rendering sprites into an image.
+	 */
+	private Graphics2D createGraphics(BufferedImage image) {
+		Graphics2D g2d = image.createGraphics();
+		g2d.setComposite(AlphaComposite.Src);
+		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		return g2d;
+	}
+	
+	/**
+	 * Returns the rotation of the given angle step in radians.
+	 */
+	private double getAngle(int step) {
+		return step * 2.0 * Math.PI / ANGLE_STEPS;
+	}
+	
+	/**
+	 * Returns the angle step nearest to a rotation.
+	 */
+	private int getAngleStep(float rot) {
+		int step = (int)Math.floor(rot * ANGLE_STEPS / (2.0 * Math.PI) + 0.5);
+		return ((step % ANGLE_STEPS) + ANGLE_STEPS) % ANGLE_STEPS;
+	}
+	
+	/**
+	 * Sets whether sprites are placed at exact positions or rounded to whole units. Exact
+	 * placement is slower, and only visible when the view is zoomed in.
+	 * 
+	 * @param subpixel true to place sprites exactly
+	 */
+	public void setSubpixel(boolean subpixel) {
+		this.subpixel = subpixel;
+	}
+	
+	/**
+	 * Draws a prey sprite centered on the given point.
+	 * 
+	 * @param g2d
+	 * @param flags snapshot state flags
+	 * @param x x position
+	 * @param y y position
+	 * @param rot rotation in radians
+	 */
+	public void drawPrey(Graphics2D g2d, byte flags, float x, float y, float rot) {
+		drawCell(g2d, this.prey_atlas, this.prey_size, getAngleStep(rot), flags & (PREY_VARIANTS - 1), x, y);
+	}
+	
+	/**
+	 * Draws a predator sprite centered on the given point.
+	 * 
+	 * @param g2d
+	 * @param flags snapshot state flags
+	 * @param x x position
+	 * @param y y position
+	 * @param rot rotation in radians
+	 */
+	public void drawPredator(Graphics2D g2d, byte flags, float x, float y, float rot) {
+		drawCell(g2d, this.predator_atlas, this.predator_size, getAngleStep(rot), flags & (PREDATOR_VARIANTS - 1), x, y);
+	}
+	
+	/**
+	 * Draws a hole sprite centered on the given point.
+	 * 
+	 * @param g2d
+	 * @param level color level
+	 * @param x x position
+	 * @param y y position
+	 */
+	public void drawHole(Graphics2D g2d, int level, float x, float y) {
+		drawCell(g2d, this.hole_atlas, this.hole_size, level, 0, x, y);
+	}
+	
+	/**
+	 * Copies one cell of an atlas to the window.
+	 */
+	private void drawCell(Graphics2D g2d, BufferedImage atlas, int size, int column, int row, float x, float y) {
+		int sx = column * size, sy = row * size;
+		if (this.subpixel) {
+			g2d.translate(x, y);
+			g2d.drawImage(atlas, -size / 2, -size / 2, size / 2, size / 2, sx, sy, sx + size, sy + size, null);
+			g2d.translate(-x, -y);
+		}
+		else {
+			int dx = Math.round(x) - size / 2, dy = Math.round(y) - size / 2;
+			g2d.drawImage(atlas, dx, dy, dx + size, dy + size, sx, sy, sx + size, sy + size, null);
+		}
+	}
+}
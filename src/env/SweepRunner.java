@@ -0,0 +1,306 @@
+package env;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import nn.NeuralNetworkBase;
+
+/**
+ * Runs a sweep over simulation parameters. Each variant is a set of parameters, run headless
+ * for a number of generations in its own seeded environment. Variants are taken from a shared
+ * queue by a pool of worker threads. Each finished variant adds one row to the output table:
+ * the parameters, followed by the mean report entry of its last few generations.
+ * 
+ * Rows are written as soon as each variant finishes, and each row starts with a key made of
+ * the parameters and seed. When the sweep is run again with the same output file, variants
+ * whose key is already in the file are skipped, so an interrupted sweep carries on where it
+ * stopped.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class SweepRunner {
+	
+	/**
+	 * Values a parameter takes in a sweep: either a list, or a range for random search.
+	 */
+	private static class Axis {
+		final String name;
+		final double[] values; // null for a range
+		final double min, max;
+		
+		Axis(String name, double[] values, double min, double max) {
+			this.name = name;
+			this.values = values;
+			this.min = min;
+			this.max = max;
+		}
+	}
+	
+	private final String prey_nn_file;
+	private final String predator_nn_file;
+	private final Parameters defaults;
+	private final int generations;
+	private final int tail;
+	private final long seed;
+	private final int replicates;
+	private final int threads;
+	private final List<Axis> axes = new ArrayList<Axis>();
+	
+	/**
+	 * Constructs a new SweepRunner.
+	 * 
+	 * @param prey_nn_file prey neural network file
+	 * @param predator_nn_file predator neural network file
+	 * @param defaults values of the parameters that are not swept
+	 * @param generations generations to run each variant for
+	 * @param tail number of final generations averaged for each row
+	 * @param seed seed the environment seeds are derived from
+	 * @param replicates number of seeds each variant is run with
+	 * @param threads number of worker threads
+	 */
+	public SweepRunner(String prey_nn_file, String predator_nn_file, Parameters defaults, int generations,
+			int tail, long seed, int replicates, int threads) {
+		this.prey_nn_file = prey_nn_file;
+		this.predator_nn_file = predator_nn_file;
+		this.defaults = defaults;
+		this.generations = Math.max(1, generations);
+		this.tail = Math.max(1, Math.min(tail, this.generations));
+		this.seed = seed;
+		this.replicates = Math.max(1, replicates);
+		this.threads = Math.max(1, threads);
+	}
+	
+	/**
+	 * Adds a parameter that takes each of a list of values.
+	 * 
+	 * @param name parameter name
+	 * @param values values
+	 */
+	public void addValues(String name, double[] values) {
+		this.defaults.copy().set(name, values[0]); // check the name
+		this.axes.add(new Axis(name, values, 0.0, 0.0));
+	}
+	
+	/**
+	 * Adds a parameter that takes random values in a range. Ranges can only be used in a
+	 * random search.
+	 * 
+	 * @param name parameter name
+	 * @param min smallest value
+	 * @param max largest value
+	 */
+	public void addRange(String name, double min, double max) {
+		this.defaults.copy().set(name, min); // check the name
+		this.axes.add(new Axis(name, null, min, max));
+	}
+	
+	/**
+	 * Returns every combination of the listed parameter values.
+	 * 
+	 * @return variants
+	 * @throws IllegalStateException if a parameter has a range
+	 */
+	public List<Parameters> getGridVariants() {
+		List<Parameters> variants = new ArrayList<Parameters>();
+		variants.add(this.defaults.copy());
+		for (Axis a : this.axes) {
+			if (a.values == null)
+				throw new IllegalStateException("Parameter " + a.name + " has a range, which needs a random search");
+			List<Parameters> next = new ArrayList<Parameters>(variants.size() * a.values.length);
+			for (Parameters p : variants) {
+				for (double v : a.values) {
+					Parameters q = p.copy();
+					q.set(a.name, v);
+					next.add(q);
+				}
+			}
+			variants = next;
+		}
+		return variants;
+	}
+	
+	/**
+	 * Returns random variants. Each parameter takes a random value from its list, or a
+	 * uniformly distributed value in its range. The variants only depend on the seed.
+	 * 
+	 * @param samples number of variants
+	 * @return variants
+	 */
+	public List<Parameters> getRandomVariants(int samples) {
+		Random random = new Random(this.seed);
+		List<Parameters> variants = new ArrayList<Parameters>(samples);
+		for (int i = 0; i < samples; i++) {
+			Parameters p = this.defaults.copy();
+			for (Axis a : this.axes) {
+				if (a.values != null)
+					p.set(a.name, a.values[random.nextInt(a.values.length)]);
+				else
+					p.set(a.name, a.min + random.nextDouble() * (a.max - a.min));
+			}
+			variants.add(p);
+		}
+		return variants;
+	}
+	
+	/**
+	 * Runs all variants that are not already in the output file, and waits for them to
+	 * finish.
+	 * 
+	 * @param variants variants to run
+	 * @param output output file
+	 * @throws IOException if the output file cannot be read
+	 */
+	public void run(List<Parameters> variants, final File output) throws IOException {
+		Set<String> done = readKeys(output);
+		final BackgroundWriter writer = new BackgroundWriter("Sweep Writer");
+		if (!output.exists()) {
+			StringBuilder header = new StringBuilder("Key,Seed");
+			for (String name : Parameters.NAMES)
+				header.append(',').append(name);
+			header.append(',').append(ReportEntry.HEADER).append('\n');
+			append(writer, output, header.toString());
+		}
+		
+		ExecutorService workers = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Sweep");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		
+		int queued = 0, skipped = 0;
+		for (final Parameters p : variants) {
+			for (int r = 0; r < this.replicates; r++) {
+				final long env_seed = ReproductionEngine.mix(this.seed + r);
+				final String key = p.toString() + "|" + env_seed;
+				if (done.contains(key)) {
+					skipped++;
+					continue;
+				}
+				done.add(key); // in case the same variant is listed twice
+				queued++;
+				workers.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							String row = runVariant(p, env_seed);
+							append(writer, output, key + "," + env_seed + "," + row + "\n");
+							System.out.println(key + ": " + row);
+						} catch (IOException e) {
+							System.err.println("Error in variant " + key + ": " + e.getMessage());
+						} catch (ParseException e) {
+							System.err.println("Error parsing network file: " + e.getMessage() + " (line " + e.getErrorOffset() + ")");
+						}
+					}
+				});
+			}
+		}
+		System.out.println("Sweep: " + queued + " runs queued, " + skipped + " already done.");
+		
+		workers.shutdown();
+		try {
+			while (!workers.awaitTermination(1, TimeUnit.MINUTES))
+				;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		writer.close();
+	}
+	
+	/**
+	 * Runs one variant and returns its row of the table, without the key.
+	 */
+	private String runVariant(Parameters p, long env_seed) throws IOException, ParseException {
+		NeuralNetworkBase prey_nn_base = readBase(this.prey_nn_file);
+		NeuralNetworkBase predator_nn_base = readBase(this.predator_nn_file);
+		p.applyTo(prey_nn_base);
+		p.applyTo(predator_nn_base);
+		
+		Environment env = new Environment(prey_nn_base, predator_nn_base, p, env_seed);
+		Vector<ReportEntry> entries = env.runGenerations(this.generations);
+		ReportEntry mean = ReportEntry.mean(entries.subList(entries.size() - this.tail, entries.size()));
+		
+		StringBuilder row = new StringBuilder();
+		for (String name : Parameters.NAMES) {
+			if (row.length() > 0)
+				row.append(',');
+			if (Parameters.isInteger(name))
+				row.append((int)p.get(name));
+			else
+				row.append(p.get(name));
+		}
+		row.append(',').append(mean.toString());
+		return row.toString();
+	}
+	
+	/**
+	 * Parses a neural network base. Each variant has its own bases, since the parameters are
+	 * applied to them.
+	 */
+	private static NeuralNetworkBase readBase(String filename) throws IOException, ParseException {
+		BufferedReader in = new BufferedReader(new FileReader(filename));
+		try {
+			NeuralNetworkBase base = new NeuralNetworkBase();
+			base.parseNetworkFromFile(in);
+			return base;
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Reads the keys of the rows already in an output file.
+	 */
+	private static Set<String> readKeys(File output) throws IOException {
+		Set<String> keys = new HashSet<String>();
+		if (!output.exists())
+			return keys;
+		BufferedReader in = new BufferedReader(new FileReader(output));
+		try {
+			String line = in.readLine(); // header
+			while ((line = in.readLine()) != null) {
+				int comma = line.indexOf(',');
+				if (comma > 0)
+					keys.add(line.substring(0, comma));
+			}
+		} finally {
+			in.close();
+		}
+		return keys;
+	}
+	
+	/**
+	 * Appends text to the output file on the writer thread.
+	 */
+	private static void append(BackgroundWriter writer, final File output, final String text) {
+		writer.submit(new BackgroundWriter.Job() {
+			@Override
+			public String run() throws IOException {
+				FileWriter out = new FileWriter(output, true);
+				try {
+					out.write(text);
+				} finally {
+					out.close();
+				}
+				return null;
+			}
+		}, null, BackgroundWriter.OverflowPolicy.Block);
+	}
+}
@@ -0,0 +1,42 @@
+package env;
+
+import java.util.Random;
+
+/**
+ * Tournament selection. For each child, a number of animats are drawn at random and the one
+ * with the highest fitness becomes the parent. Larger tournaments favor fitter animats more
+ * strongly.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class TournamentSelection implements SelectionStrategy {
+	private final int size;
+	
+	/**
+	 * Constructs a new TournamentSelection.
+	 * 
+	 * @param size number of animats drawn for each tournament
+	 */
+	public TournamentSelection(int size) {
+		this.size = Math.max(1, size);
+	}
+	
+	/**
+	 * Runs one tournament for each child. Animats are drawn with replacement, and ties go to
+	 * the animat that comes first.
+	 */
+	@Override
+	public void select(double[] fitness, int count, int children, Random random, int[] parents, boolean[] mutate) {
+		for (int c = 0; c < children; c++) {
+			int best = random.nextInt(count);
+			for (int t = 1; t < this.size; t++) {
+				int i = random.nextInt(count);
+				if (fitness[i] > fitness[best] || (fitness[i] == fitness[best] && i < best))
+					best = i;
+			}
+			parents[c] = best;
+			mutate[c] = true;
+		}
+	}
+}
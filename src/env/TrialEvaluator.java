@@ -0,0 +1,226 @@
+package env;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nn.NeuralNetworkBase;
+
+/**
+ * Evaluates candidate genomes over several independent trials, each a generation of copies
+ * of the candidate in its own headless environment. Trials run in parallel on worker threads.
+ * Trial n of every candidate uses the same seed, so candidates are compared on the same
+ * scenarios, and a candidate's fitness is the mean over its trials.
+ * 
+ * Trials are allocated adaptively. Every candidate first gets the minimum number of trials.
+ * After that, only candidates whose 95% confidence interval still overlaps the cut-off for
+ * becoming a parent get another trial, up to the maximum. Clear winners and clear losers stop
+ * early, so most of the time goes to the candidates whose selection is in doubt.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class TrialEvaluator {
+	private final NeuralNetworkBase prey_nn_base;
+	private final NeuralNetworkBase predator_nn_base;
+	private final Parameters params;
+	private final long[] seeds;
+	private final int trials_min, trials_max;
+	private final int trial_length;
+	private final FitnessCache cache;
+	private final ExecutorService workers;
+	
+	private RunningStats[] stats = new RunningStats[0];
+	private int trial_count = 0;
+	private final AtomicInteger cached_count = new AtomicInteger();
+	
+	/**
+	 * Constructs a new TrialEvaluator.
+	 * 
+	 * @param prey_nn_base neural network base for prey animats
+	 * @param predator_nn_base neural network base for predator animats
+	 * @param params simulation parameters
+	 * @param seed seed the trial seeds are derived from
+	 * @param trials_min trials every candidate gets
+	 * @param trials_max most trials a candidate can get
+	 * @param trial_length length of each trial in epochs, or 0 for a full generation
+	 * @param threads number of worker threads
+	 * @param cache cache of trial results
+	 */
+	public TrialEvaluator(NeuralNetworkBase prey_nn_base, NeuralNetworkBase predator_nn_base, Parameters params,
+			long seed, int trials_min, int trials_max, int trial_length, int threads, FitnessCache cache) {
+		this.prey_nn_base = prey_nn_base;
+		this.predator_nn_base = predator_nn_base;
+		this.params = params;
+		this.trials_min = Math.max(2, trials_min);
+		this.trials_max = Math.max(this.trials_min, trials_max);
+		this.trial_length = trial_length;
+		this.cache = cache;
+		
+		this.seeds = new long[this.trials_max];
+		for (int i = 0; i < this.trials_max; i++)
+			this.seeds[i] = ReproductionEngine.mix(seed + i);
+		
+		this.workers = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Trial");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+	
+	/**
+	 * Evaluates a set of candidates and sets the fitness of each to its mean trial fitness.
+	 * 
+	 * @param candidates candidate animats; only their connection weights are used
+	 * @param parent_count number of candidates that will become parents
+	 */
+	public void evaluate(Vector<? extends Animat> candidates, int parent_count) {
+		int n = candidates.size();
+		if (this.stats.length < n) {
+			RunningStats[] ns = Arrays.copyOf(this.stats, n);
+			for (int i = this.stats.length; i < n; i++)
+				ns[i] = new RunningStats();
+			this.stats = ns;
+		}
+		for (int i = 0; i < n; i++)
+			this.stats[i].clear();
+		this.trial_count = 0;
+		this.cached_count.set(0);
+		
+		// Minimum trials for every candidate
+		List<Integer> batch = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < this.trials_min; j++)
+				batch.add(i);
+		}
+		runBatch(candidates, batch);
+		
+		// One more trial at a time for candidates too close to the cut-off to call
+		while (true) {
+			double threshold = getThreshold(n, parent_count);
+			if (Double.isNaN(threshold))
+				break;
+			
+			batch.clear();
+			for (int i = 0; i < n; i++) {
+				RunningStats s = this.stats[i];
+				if (s.getCount() < this.trials_max && Math.abs(s.getMean() - threshold) < s.getHalfWidth())
+					batch.add(i);
+			}
+			if (batch.isEmpty())
+				break;
+			runBatch(candidates, batch);
+		}
+		
+		for (int i = 0; i < n; i++)
+			candidates.elementAt(i).setFitness(this.stats[i].getMean());
+	}
+	
+	/**
+	 * Returns the trial statistics of a candidate from the last evaluation.
+	 * 
+	 * @param i candidate index
+	 * @return statistics
+	 */
+	public RunningStats getStats(int i) {
+		return this.stats[i];
+	}
+	
+	/**
+	 * Returns the number of trials in the last evaluation, including cached ones.
+	 * 
+	 * @return trial count
+	 */
+	public int getTrialCount() {
+		return this.trial_count;
+	}
+	
+	/**
+	 * Returns the number of trials in the last evaluation whose result came from the cache.
+	 * 
+	 * @return cached trial count
+	 */
+	public int getCachedCount() {
+		return this.cached_count.get();
+	}
+	
+	/**
+	 * Returns the fitness halfway between the last candidate that becomes a parent and the
+	 * first that does not, or NaN if every candidate becomes a parent.
+	 */
+	private double getThreshold(int n, int parent_count) {
+		if (parent_count <= 0 || parent_count >= n)
+			return Double.NaN;
+		double[] means = new double[n];
+		for (int i = 0; i < n; i++)
+			means[i] = this.stats[i].getMean();
+		Arrays.sort(means);
+		return (means[n - parent_count] + means[n - parent_count - 1]) / 2.0;
+	}
+	
+	/**
+	 * Runs the next trial of each listed candidate in parallel, and adds the results to
+	 * their statistics in list order.
+	 */
+	private void runBatch(Vector<? extends Animat> candidates, List<Integer> batch) {
+		List<Callable<Double>> tasks = new ArrayList<Callable<Double>>(batch.size());
+		int[] next_trial = new int[candidates.size()];
+		for (int k = 0; k < batch.size(); k++) {
+			int i = batch.get(k);
+			final Animat genome = candidates.elementAt(i);
+			final long seed = this.seeds[this.stats[i].getCount() + next_trial[i]++];
+			tasks.add(new Callable<Double>() {
+				@Override
+				public Double call() {
+					return runTrial(genome, seed);
+				}
+			});
+		}
+		
+		try {
+			List<Future<Double>> results = this.workers.invokeAll(tasks);
+			for (int k = 0; k < batch.size(); k++)
+				this.stats[batch.get(k)].add(results.get(k).get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while running trials", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Error running trial", e.getCause());
+		}
+		this.trial_count += batch.size();
+	}
+	
+	/**
+	 * Runs one trial of a genome, or returns the cached result of the same trial if the
+	 * cache policy is Skip.
+	 */
+	private double runTrial(Animat genome, long seed) {
+		boolean use_cache = this.cache.getPolicy() == FitnessCache.Policy.Skip;
+		long genome_hash = use_cache ? genome.getGenomeHash() : 0;
+		if (use_cache) {
+			Double cached = this.cache.lookup(genome_hash, seed);
+			if (cached != null) {
+				this.cached_count.incrementAndGet();
+				return cached;
+			}
+		}
+		
+		Environment env = new Environment(this.prey_nn_base, this.predator_nn_base, this.params, seed);
+		double fitness = env.runTrial(genome, this.trial_length);
+		
+		if (use_cache)
+			this.cache.put(genome_hash, seed, fitness);
+		return fitness;
+	}
+}
@@ -0,0 +1,138 @@
+package env;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.Vector;
+
+import nn.NeuralNetworkBase;
+
+/**
+ * Headless evolution in which each generation of candidate prey is evaluated by a
+ * TrialEvaluator rather than by living together in one world. The candidates never run
+ * themselves; they only hold the connection weights that trials copy. A line is written to
+ * a report file after each generation, through a background writer.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class TrialEvolution {
+	private final NeuralNetworkBase prey_nn_base;
+	private final TrialEvaluator evaluator;
+	private final ReproductionEngine reproduction;
+	private final int population;
+	private final int parent_count;
+	private final Random random;
+	private final BackgroundWriter writer = new BackgroundWriter("Trial Report Writer");
+	private FitnessCache cache = null;
+	private File cache_file = null;
+	
+	private Vector<Prey> candidates = new Vector<Prey>();
+	private Vector<Prey> next = new Vector<Prey>();
+	private final ObjectPool<Prey> pool;
+	
+	/**
+	 * Constructs a new TrialEvolution.
+	 * 
+	 * @param prey_nn_base neural network base for prey animats
+	 * @param evaluator trial evaluator
+	 * @param strategy selection strategy
+	 * @param population number of candidates in each generation
+	 * @param parent_count number of candidates that become parents
+	 * @param seed random seed for the initial candidates and mutations
+	 */
+	public TrialEvolution(NeuralNetworkBase prey_nn_base, TrialEvaluator evaluator, SelectionStrategy strategy,
+			int population, int parent_count, long seed) {
+		prey_nn_base.setInterface(Prey.NN_INPUTS, Prey.NN_OUTPUTS);
+		this.prey_nn_base = prey_nn_base;
+		this.evaluator = evaluator;
+		this.reproduction = new ReproductionEngine(strategy);
+		this.population = population;
+		this.parent_count = parent_count;
+		this.random = new Random(seed);
+		this.pool = new ObjectPool<Prey>() {
+			@Override
+			protected Prey create() {
+				return new Prey(TrialEvolution.this.prey_nn_base, null);
+			}
+		};
+	}
+	
+	/**
+	 * Sets a file that the fitness cache is saved to in the background after each generation.
+	 * 
+	 * @param cache fitness cache used by the evaluator
+	 * @param file file to save the cache to
+	 */
+	public void setCacheFile(FitnessCache cache, File file) {
+		this.cache = cache;
+		this.cache_file = file;
+	}
+	
+	/**
+	 * Runs a number of generations and waits for the report to be written.
+	 * 
+	 * @param generations number of generations
+	 */
+	public void run(int generations) {
+		final String filename = "trials-" + new SimpleDateFormat("yyyy-MM-dd-HHmmss").format(new Date()) + ".csv";
+		append(filename, "Generation,Best Fitness,Best Fitness CI,Avg Fitness,Trials,Cached Trials,Seconds\n");
+		
+		for (int i = 0; i < this.population; i++) {
+			Prey p = this.pool.acquire();
+			p.resetRandom(this.random);
+			this.candidates.add(p);
+		}
+		
+		for (int g = 1; g <= generations; g++) {
+			long start = System.nanoTime();
+			this.evaluator.evaluate(this.candidates, this.parent_count);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			
+			int best = 0;
+			double total = 0.0;
+			for (int i = 0; i < this.candidates.size(); i++) {
+				total += this.candidates.elementAt(i).getFitness();
+				if (this.candidates.elementAt(i).getFitness() > this.candidates.elementAt(best).getFitness())
+					best = i;
+			}
+			RunningStats s = this.evaluator.getStats(best);
+			String line = String.format("%d,%.4f,%.4f,%.4f,%d,%d,%.1f", g, s.getMean(), s.getHalfWidth(),
+					total / this.candidates.size(), this.evaluator.getTrialCount(), this.evaluator.getCachedCount(), seconds);
+			System.out.println(line);
+			append(filename, line + "\n");
+			if (this.cache_file != null)
+				this.writer.submit(this.cache.saveJob(this.cache_file), null, BackgroundWriter.OverflowPolicy.Drop);
+			
+			this.reproduction.reproduce(this.candidates, this.next, this.population, this.pool, this.random);
+			this.pool.releaseAll(this.candidates);
+			this.candidates.clear();
+			Vector<Prey> t = this.candidates;
+			this.candidates = this.next;
+			this.next = t;
+		}
+		
+		this.writer.close();
+	}
+	
+	/**
+	 * Appends text to the report file on the writer thread.
+	 */
+	private void append(final String filename, final String text) {
+		this.writer.submit(new BackgroundWriter.Job() {
+			@Override
+			public String run() throws IOException {
+				FileWriter out = new FileWriter(filename, true);
+				try {
+					out.write(text);
+				} finally {
+					out.close();
+				}
+				return null;
+			}
+		}, null, BackgroundWriter.OverflowPolicy.Block);
+	}
+}
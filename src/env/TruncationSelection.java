@@ -0,0 +1,114 @@
+package env;
+
+import java.util.Random;
+
+/**
+ * Truncation selection. The animats with the highest fitness become parents, and each has
+ * the same number of children. The parents are found with a partial selection rather than a
+ * full sort of the generation. Ties in fitness go to the animat that comes first.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class TruncationSelection implements SelectionStrategy {
+	private final int parent_max;
+	private int[] top = new int[0];
+	
+	/**
+	 * Constructs a new TruncationSelection.
+	 * 
+	 * @param parent_max number of animats that become parents
+	 */
+	public TruncationSelection(int parent_max) {
+		this.parent_max = parent_max;
+	}
+	
+	/**
+	 * Chooses the fittest animats as parents, and divides the children evenly between them
+	 * in order of fitness.
+	 */
+	@Override
+	public void select(double[] fitness, int count, int children, Random random, int[] parents, boolean[] mutate) {
+		int k = Math.min(this.parent_max, count);
+		if (this.top.length < k)
+			this.top = new int[k];
+		selectTop(fitness, count, k, this.top);
+		
+		for (int c = 0; c < children; c++) {
+			parents[c] = this.top[(int)((long)c * k / children)];
+			mutate[c] = true;
+		}
+	}
+	
+	/**
+	 * Finds the k animats with the highest fitness, using a heap of size k. Ties go to the
+	 * animat with the lower index, which matches a stable sort by descending fitness.
+	 * 
+	 * @param fitness fitness of each animat
+	 * @param count number of animats
+	 * @param k number to find
+	 * @param top receives the indices of the k fittest animats, fittest first
+	 */
+	static void selectTop(double[] fitness, int count, int k, int[] top) {
+		if (k <= 0)
+			return;
+		
+		// Min-heap whose root is the least fit of the best k found so far
+		int size = 0;
+		for (int i = 0; i < count; i++) {
+			if (size < k) {
+				top[size] = i;
+				siftUp(fitness, top, size);
+				size++;
+			}
+			else if (isBetter(fitness, i, top[0])) {
+				top[0] = i;
+				siftDown(fitness, top, 0, size);
+			}
+		}
+		
+		// Remove the least fit repeatedly to order the result fittest first
+		for (int end = size - 1; end > 0; end--) {
+			int t = top[0];
+			top[0] = top[end];
+			top[end] = t;
+			siftDown(fitness, top, 0, end);
+		}
+	}
+	
+	/**
+	 * Returns true if animat a ranks above animat b.
+	 */
+	private static boolean isBetter(double[] fitness, int a, int b) {
+		return fitness[a] > fitness[b] || (fitness[a] == fitness[b] && a < b);
+	}
+	
+	private static void siftUp(double[] fitness, int[] heap, int i) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (!isBetter(fitness, heap[parent], heap[i]))
+				break;
+			int t = heap[parent];
+			heap[parent] = heap[i];
+			heap[i] = t;
+			i = parent;
+		}
+	}
+	
+	private static void siftDown(double[] fitness, int[] heap, int i, int size) {
+		while (true) {
+			int worst = i;
+			int l = 2 * i + 1, r = l + 1;
+			if (l < size && isBetter(fitness, heap[worst], heap[l]))
+				worst = l;
+			if (r < size && isBetter(fitness, heap[worst], heap[r]))
+				worst = r;
+			if (worst == i)
+				break;
+			int t = heap[worst];
+			heap[worst] = heap[i];
+			heap[i] = t;
+			i = worst;
+		}
+	}
+}
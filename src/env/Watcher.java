@@ -5,6 +5,8 @@ import java.awt.Graphics2D;
 
 /**
  * Component that displays information for the selected object in the simulation window.
+ * The status of the selected object is read by the simulation thread and drawn by the
+ * window, so changes to the target are synchronized.
  * 
  * @author Justin Morgan
  *
@@ -51,7 +53,7 @@ public class Watcher {
 	 * 
 	 * @param p prey
 	 */
-	public void setTarget(Prey p) {
+	public synchronized void setTarget(Prey p) {
 		this.resetTarget();
 		this.prey_current = p;
 		this.state = WatchEntity.PREY;
@@ -62,7 +64,7 @@ public class Watcher {
 	 * 
 	 * @param p predator
 	 */
-	public void setTarget(Predator p) {
+	public synchronized void setTarget(Predator p) {
 		this.resetTarget();
 		this.predator_current = p;
 		this.state = WatchEntity.PREDATOR;
@@ -73,7 +75,7 @@ public class Watcher {
 	 * 
 	 * @param f food
 	 */
-	public void setTarget(Food f) {
+	public synchronized void setTarget(Food f) {
 		this.resetTarget();
 		this.food_current = f;
 		this.state = WatchEntity.FOOD;
@@ -84,16 +86,16 @@ public class Watcher {
 	 * 
 	 * @param h hole
 	 */
-	public void setTarget(Hole h) {
+	public synchronized void setTarget(Hole h) {
 		this.resetTarget();
 		this.hole_current = h;
 		this.state = WatchEntity.HOLE;
 	}
-
+	
 	/**
 	 * Resets the current target.
 	 */
-	public void resetTarget() {
+	public synchronized void resetTarget() {
 		if (this.state == WatchEntity.PREY)
 			this.prey_current.setSelected(false);
 		else if (this.state == WatchEntity.PREDATOR)
@@ -101,6 +103,46 @@ public class Watcher {
 		this.state = WatchEntity.NONE;
 	}
 	
+	/**
+	 * Resets the current target if it is the given prey animat.
+	 * 
+	 * @param p prey
+	 */
+	public synchronized void resetTarget(Prey p) {
+		if (this.state == WatchEntity.PREY && this.prey_current == p)
+			this.resetTarget();
+	}
+	
+	/**
+	 * Resets the current target if it is the given predator animat.
+	 * 
+	 * @param r predator
+	 */
+	public synchronized void resetTarget(Predator r) {
+		if (this.state == WatchEntity.PREDATOR && this.predator_current == r)
+			this.resetTarget();
+	}
+	
+	/**
+	 * Resets the current target if it is the given food object.
+	 * 
+	 * @param f food
+	 */
+	public synchronized void resetTarget(Food f) {
+		if (this.state == WatchEntity.FOOD && this.food_current == f)
+			this.resetTarget();
+	}
+	
+	/**
+	 * Resets the current target if it is the given hole object.
+	 * 
+	 * @param h hole
+	 */
+	public synchronized void resetTarget(Hole h) {
+		if (this.state == WatchEntity.HOLE && this.hole_current == h)
+			this.resetTarget();
+	}
+	
 	/**
 	 * Writes a block of text containing multiple lines on the simulation window.
 	 * 
@@ -135,66 +177,80 @@ public class Watcher {
 	}
 	
 	/**
-	 * Draws the current status of the selected object.
+	 * Returns the current status of the selected object as a block of lines.
 	 * 
-	 * @param g2d
+	 * @return lines separated by \n
 	 */
-	public void draw(Graphics2D g2d) {
-		g2d.setColor(Color.white);
-		this.text_x = this.text_x_start;
-		this.text_y = this.text_y_start;
-		this.lines = 0;
+	public synchronized String getStatus() {
+		StringBuilder result = new StringBuilder();
 		
 		switch (this.state) {
 		case PREY:
 			if (this.prey_current == null) {
 				this.resetTarget();
-				return;
+				break;
 			}
 			Prey p = this.prey_current;
 			
-			this.writeLine("Prey", g2d);
-			this.writeLine(String.format("Average Energy: %.4f", p.getAverageEnergy()), g2d);
-			this.writeBlock(p.toString(), g2d);
-			this.writeLine(String.format("Detectable Depth: %.4f", p.getDetectableDepth()), g2d);
-				
+			String name = (p.getSpecies() != null) ? p.getSpecies().getName() : "Prey";
+			result.append(name + " #" + p.getId() + (p.getParentId() >= 0 ? " (parent #" + p.getParentId() + ")" : "") + "\n");
+			result.append(String.format("Average Energy: %.4f\n", p.getAverageEnergy()));
+			result.append(p.toString());
+			result.append(String.format("Detectable Depth: %.4f\n", p.getDetectableDepth()));
 			break;
 		
 		case PREDATOR:
 			if (this.predator_current == null) {
 				this.resetTarget();
-				return;
+				break;
 			}
 			Predator r = this.predator_current;
-			this.writeLine("Predator", g2d);
-			this.writeBlock(r.toString(), g2d);
+			result.append("Predator\n");
+			result.append(r.toString());
 			break;
 			
 		case HOLE:
 			if (this.hole_current == null) {
 				this.resetTarget();
-				return;
+				break;
 			}
 			Hole h = this.hole_current;
 			
-			this.writeLine("Hole", g2d);
-			this.writeLine("Occupants: " + h.getOccupyCount(), g2d);
-			this.writeLine(String.format("Depth: %.4f", h.getDepth()), g2d);
+			result.append("Hole\n");
+			result.append("Occupants: " + h.getOccupyCount() + "\n");
+			result.append(String.format("Depth: %.4f\n", h.getDepth()));
 			break;
 			
 		case FOOD:
 			if (this.food_current == null) {
 				this.resetTarget();
-				return;
+				break;
 			}
 			Food f = this.food_current;
 			
-			this.writeLine("Food", g2d);
-			this.writeLine(String.format("Remaining: %.4f", f.getRemaining()), g2d);
+			result.append("Food\n");
+			result.append(String.format("Remaining: %.4f\n", f.getRemaining()));
 			break;
 			
 		case NONE:
 			break;
 		}
+		
+		return result.toString();
+	}
+	
+	/**
+	 * Draws a status block previously returned by getStatus().
+	 * 
+	 * @param g2d
+	 * @param status lines separated by \n
+	 */
+	public void draw(Graphics2D g2d, String status) {
+		g2d.setColor(Color.white);
+		this.text_x = this.text_x_start;
+		this.text_y = this.text_y_start;
+		this.lines = 0;
+		
+		this.writeBlock(status, g2d);
 	}
 }
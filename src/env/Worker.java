@@ -0,0 +1,182 @@
+package env;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.text.ParseException;
+import java.util.Vector;
+
+import nn.NeuralNetworkBase;
+
+/**
+ * Worker process for a cluster run. A worker connects to a Coordinator, runs the island jobs
+ * it is sent in a headless environment, and streams back a report entry after each
+ * generation, followed by the migrants and population at the end of the job. Everything a
+ * job needs, including the neural network files, comes with the job, so workers do not need
+ * to share a file system with the coordinator.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class Worker implements Runnable {
+	private final int CONNECT_ATTEMPTS = 30;
+	private final int CONNECT_RETRY_DELAY = 2000; // ms
+	
+	private final String host;
+	private final int port;
+	private volatile boolean failed = false;
+	
+	/**
+	 * Constructs a new Worker.
+	 * 
+	 * @param host host name of the coordinator
+	 * @param port port of the coordinator
+	 */
+	public Worker(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+	
+	/**
+	 * Connects to the coordinator and runs jobs until it has no more. Connecting is retried
+	 * for a while, so workers can be started before the coordinator, and a worker whose
+	 * connection is lost connects again. If the coordinator cannot be reached, the worker
+	 * stops and hasFailed() returns true.
+	 */
+	@Override
+	public void run() {
+		while (true) {
+			Socket socket;
+			try {
+				socket = connect();
+			} catch (IOException e) {
+				System.err.println("Worker: " + e.getMessage());
+				this.failed = true;
+				return;
+			}
+			try {
+				if (serve(socket))
+					return;
+				System.err.println("Worker: Connection to the coordinator closed, reconnecting");
+			} catch (IOException e) {
+				System.err.println("Worker: " + e.getMessage() + ", reconnecting");
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether the worker stopped because it could not reach the coordinator, rather
+	 * than because the coordinator told it to quit.
+	 * 
+	 * @return true if the coordinator could not be reached
+	 */
+	public boolean hasFailed() {
+		return this.failed;
+	}
+	
+	/**
+	 * Connects to the coordinator, retrying if it is not listening yet.
+	 */
+	private Socket connect() throws IOException {
+		for (int attempt = 1; ; attempt++) {
+			try {
+				return new Socket(this.host, this.port);
+			} catch (ConnectException e) {
+				if (attempt == CONNECT_ATTEMPTS)
+					throw e;
+			}
+			try {
+				Thread.sleep(CONNECT_RETRY_DELAY);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while connecting");
+			}
+		}
+	}
+	
+	/**
+	 * Runs jobs received on a connection until told to quit, or until the coordinator closes
+	 * the connection.
+	 * 
+	 * @return true if the coordinator told the worker to quit
+	 */
+	private boolean serve(Socket socket) throws IOException {
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+			out.println("HELLO " + InetAddress.getLocalHost().getHostName() + "/" + Thread.currentThread().getName());
+			flush(out);
+			
+			while (true) {
+				String line = in.readLine();
+				if (line == null)
+					return false;
+				if (line.equals("QUIT"))
+					return true;
+				ClusterProtocol.Job job = ClusterProtocol.Job.read(line, in);
+				try {
+					runJob(job, out);
+				} catch (ParseException e) {
+					fail(out, job, "Error parsing network file: " + e.getMessage() + " (line " + e.getErrorOffset() + ")");
+				} catch (RuntimeException e) {
+					fail(out, job, e.toString());
+				}
+			}
+		} finally {
+			socket.close();
+		}
+	}
+	
+	/**
+	 * Runs one job, sending its results as they are produced.
+	 */
+	private void runJob(ClusterProtocol.Job job, PrintWriter out) throws IOException, ParseException {
+		Parameters params = Parameters.parse(job.params);
+		NeuralNetworkBase prey_nn_base = parseBase(job.prey_nn);
+		NeuralNetworkBase predator_nn_base = parseBase(job.predator_nn);
+		params.applyTo(prey_nn_base);
+		params.applyTo(predator_nn_base);
+		
+		Environment env = new Environment(prey_nn_base, predator_nn_base, params, job.seed);
+		env.setMigrantCount(job.migrants);
+		if (job.population.length > 0)
+			env.setPopulation(job.population, job.first_generation);
+		
+		for (int g = 0; g < job.generations; g++) {
+			Vector<ReportEntry> entries = env.runGenerations(1);
+			out.println("REPORT " + job.id + " " + entries.lastElement());
+			flush(out);
+		}
+		ClusterProtocol.writeGenomes(out, "MIGRANTS", env.getMigrants());
+		ClusterProtocol.writeGenomes(out, "POPULATION", env.getPopulation());
+		out.println("DONE " + job.id);
+		flush(out);
+	}
+	
+	private static void fail(PrintWriter out, ClusterProtocol.Job job, String message) throws IOException {
+		out.println("FAILED " + job.id + " " + message.replace('\n', ' '));
+		flush(out);
+	}
+	
+	/**
+	 * Sends what has been written to the coordinator. A PrintWriter hides write errors, so
+	 * they are checked here, and a job stops as soon as its connection is lost.
+	 */
+	private static void flush(PrintWriter out) throws IOException {
+		out.flush();
+		if (out.checkError())
+			throw new IOException("Lost connection to the coordinator");
+	}
+	
+	private static NeuralNetworkBase parseBase(String text) throws IOException, ParseException {
+		NeuralNetworkBase base = new NeuralNetworkBase();
+		base.parseNetworkFromFile(new BufferedReader(new StringReader(text)));
+		return base;
+	}
+}
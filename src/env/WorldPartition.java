@@ -0,0 +1,254 @@
+package env;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Splits the world into a grid of tiles, so that the living prey can be updated by several
+ * threads at once. Each tile owns the prey whose location lies inside it, and is updated by
+ * one thread at a time. Tiles on the edge of the grid extend out to infinity, so every prey
+ * belongs to exactly one tile.
+ * 
+ * Prey are handed to the tile they are in at the start of each update, keeping their order
+ * within the alive list. Prey in the same hole share its location, so they are always in the
+ * same tile. Before the update, each tile collects its halo: the predators and shouts close
+ * enough to its edges to reach the sensors of its prey. Prey then only read their tile's
+ * halo, and only write to themselves and their own hole. Each tile has its own random number
+ * generator, seeded once per generation, so the result does not depend on the number of
+ * threads or the order in which tiles are run.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class WorldPartition {
+	
+	/**
+	 * A tile of the world, with the prey it owns and its halo.
+	 */
+	public static class Tile {
+		final double left, top, right, bottom;
+		final Random random = new Random();
+		
+		Prey[] prey = new Prey[16];
+		int prey_count = 0;
+		Predator[] predators = new Predator[4]; // halo predators
+		int predator_count = 0;
+		int[] shouts = new int[16]; // indices of halo shouts
+		int shout_count = 0;
+		int alive = 0; // living prey found by the last update
+		
+		Tile(double left, double top, double right, double bottom) {
+			this.left = left;
+			this.top = top;
+			this.right = right;
+			this.bottom = bottom;
+		}
+		
+		/**
+		 * Returns the distance from a point to the tile, or 0 if the point is inside it.
+		 */
+		double distance(double x, double y) {
+			double dx = Math.max(Math.max(this.left - x, x - this.right), 0.0);
+			double dy = Math.max(Math.max(this.top - y, y - this.bottom), 0.0);
+			return Math.sqrt(dx * dx + dy * dy);
+		}
+	}
+	
+	/**
+	 * Work done on each tile by update().
+	 */
+	public interface TileTask {
+		/**
+		 * Updates the prey of a tile.
+		 * 
+		 * @param tile tile
+		 */
+		public void run(Tile tile);
+	}
+	
+	private final int cols, rows;
+	private final double tile_width, tile_height;
+	private final Tile[] tiles;
+	private final int worker_count;
+	private ExecutorService workers = null;
+	
+	/**
+	 * Constructs a new WorldPartition.
+	 * 
+	 * @param width width of the world
+	 * @param height height of the world
+	 * @param cols number of columns of tiles
+	 * @param rows number of rows of tiles
+	 * @param threads number of threads that update tiles
+	 */
+	public WorldPartition(double width, double height, int cols, int rows, int threads) {
+		this.cols = Math.max(1, cols);
+		this.rows = Math.max(1, rows);
+		this.tile_width = width / this.cols;
+		this.tile_height = height / this.rows;
+		this.worker_count = Math.max(1, threads);
+		
+		this.tiles = new Tile[this.cols * this.rows];
+		for (int r = 0; r < this.rows; r++) {
+			for (int c = 0; c < this.cols; c++) {
+				this.tiles[r * this.cols + c] = new Tile(
+						(c == 0) ? Double.NEGATIVE_INFINITY : c * this.tile_width,
+						(r == 0) ? Double.NEGATIVE_INFINITY : r * this.tile_height,
+						(c == this.cols - 1) ? Double.POSITIVE_INFINITY : (c + 1) * this.tile_width,
+						(r == this.rows - 1) ? Double.POSITIVE_INFINITY : (r + 1) * this.tile_height);
+			}
+		}
+	}
+	
+	/**
+	 * Seeds the random number generator of each tile. Called at the start of each generation.
+	 * 
+	 * @param random random number generator of the simulation
+	 */
+	public void seed(Random random) {
+		long seed = random.nextLong();
+		for (int i = 0; i < this.tiles.length; i++)
+			this.tiles[i].random.setSeed(ReproductionEngine.mix(seed + i));
+	}
+	
+	/**
+	 * Hands each living prey in the alive list to the tile it is in.
+	 * 
+	 * @param prey_index prey lists
+	 */
+	public void assign(PreyIndex prey_index) {
+		for (Tile t : this.tiles) {
+			for (int i = 0; i < t.prey_count; i++)
+				t.prey[i] = null;
+			t.prey_count = 0;
+		}
+		for (int n = 0; n < prey_index.getAliveCount(); n++) {
+			Prey p = prey_index.getAlive(n);
+			if (!p.isAlive())
+				continue;
+			Point2D loc = p.getLocation();
+			int c = Math.min(Math.max((int)Math.floor(loc.getX() / this.tile_width), 0), this.cols - 1);
+			int r = Math.min(Math.max((int)Math.floor(loc.getY() / this.tile_height), 0), this.rows - 1);
+			Tile t = this.tiles[r * this.cols + c];
+			if (t.prey_count == t.prey.length)
+				t.prey = Arrays.copyOf(t.prey, t.prey_count * 2);
+			t.prey[t.prey_count++] = p;
+		}
+	}
+	
+	/**
+	 * Collects the halo of each tile: the predators and shouts within reach of it.
+	 * 
+	 * @param predators set of predator animats
+	 * @param predator_reach distance from which a predator can be sensed
+	 * @param shout_grid positions of the shouts
+	 * @param shout_radius radius of each shout
+	 * @param shout_count number of shouts
+	 * @param sensor_reach distance of a prey's sensors from its location
+	 */
+	public void buildHalos(Vector<Predator> predators, double predator_reach, SpatialGrid shout_grid,
+			double[] shout_radius, int shout_count, double sensor_reach) {
+		for (Tile t : this.tiles) {
+			for (int i = 0; i < t.predator_count; i++)
+				t.predators[i] = null;
+			t.predator_count = 0;
+			t.shout_count = 0;
+			if (t.prey_count == 0)
+				continue;
+			
+			for (int i = 0; i < predators.size(); i++) {
+				Predator r = predators.elementAt(i);
+				Point2D loc = r.getLocation();
+				if (t.distance(loc.getX(), loc.getY()) > predator_reach + sensor_reach)
+					continue;
+				if (t.predator_count == t.predators.length)
+					t.predators = Arrays.copyOf(t.predators, t.predator_count * 2);
+				t.predators[t.predator_count++] = r;
+			}
+			for (int i = 0; i < shout_count; i++) {
+				if (t.distance(shout_grid.getX(i), shout_grid.getY(i)) > shout_radius[i] + sensor_reach)
+					continue;
+				if (t.shout_count == t.shouts.length)
+					t.shouts = Arrays.copyOf(t.shouts, t.shout_count * 2);
+				t.shouts[t.shout_count++] = i;
+			}
+		}
+	}
+	
+	/**
+	 * Runs a task on every tile that has prey, in parallel, and waits for all of them.
+	 * 
+	 * @param task task
+	 * @return number of living prey found by the task, as counted in each tile's alive field
+	 */
+	public int update(final TileTask task) {
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(this.tiles.length);
+		for (final Tile t : this.tiles) {
+			t.alive = 0;
+			if (t.prey_count == 0)
+				continue;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					task.run(t);
+					return null;
+				}
+			});
+		}
+		
+		if (this.worker_count < 2 || tasks.size() < 2) {
+			for (Callable<Void> c : tasks) {
+				try {
+					c.call();
+				} catch (Exception e) {
+					throw new RuntimeException("Error updating tile", e);
+				}
+			}
+		}
+		else {
+			if (this.workers == null) {
+				this.workers = Executors.newFixedThreadPool(this.worker_count, new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "Tile");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+			}
+			try {
+				for (Future<Void> f : this.workers.invokeAll(tasks))
+					f.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while updating tiles", e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Error updating tile", e.getCause());
+			}
+		}
+		
+		int alive = 0;
+		for (Tile t : this.tiles)
+			alive += t.alive;
+		return alive;
+	}
+	
+	/**
+	 * Returns the number of tiles.
+	 * 
+	 * @return count
+	 */
+	public int getTileCount() {
+		return this.tiles.length;
+	}
+}
@@ -0,0 +1,122 @@
+package env;
+
+/**
+ * Compact copy of everything the simulation window draws for one epoch: positions,
+ * colors and states of all visible objects, and the values shown in the status display.
+ * Snapshots are filled by the simulation thread and handed to the window through a
+ * SnapshotBuffer. Once published, a snapshot is only read until it is recycled.
+ * 
+ * Object references are kept only so that the window can select an object for the
+ * Watcher; they are never read when drawing.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class WorldSnapshot {
+	static final byte ALIVE = 1;
+	static final byte SELECTED = 2;
+	static final byte SHOUTING = 4;
+	
+	long sequence = 0;
+	
+	// Status display
+	int generation_num;
+	int epoch;
+	int next_predator_epoch;
+	int prey_alive;
+	String watcher_status = "";
+	
+	// Prey
+	int prey_count;
+	float[] prey_x = new float[0];
+	float[] prey_y = new float[0];
+	float[] prey_rot = new float[0]; // radians
+	float[] prey_shout_radius = new float[0];
+	byte[] prey_flags = new byte[0];
+	Prey[] prey_ref = new Prey[0];
+	
+	// Predators
+	int predator_count;
+	float[] predator_x = new float[0];
+	float[] predator_y = new float[0];
+	float[] predator_rot = new float[0]; // radians
+	byte[] predator_flags = new byte[0];
+	Predator[] predator_ref = new Predator[0];
+	
+	// Food
+	int food_count;
+	float[] food_x = new float[0];
+	float[] food_y = new float[0];
+	byte[] food_level = new byte[0];
+	Food[] food_ref = new Food[0];
+	
+	// Holes
+	int hole_count;
+	float[] hole_x = new float[0];
+	float[] hole_y = new float[0];
+	byte[] hole_level = new byte[0];
+	Hole[] hole_ref = new Hole[0];
+	
+	/**
+	 * Grows the prey arrays to hold at least the given number of prey.
+	 * 
+	 * @param n count
+	 */
+	void ensurePreyCapacity(int n) {
+		if (this.prey_x.length >= n)
+			return;
+		n = Math.max(n, this.prey_x.length * 2);
+		this.prey_x = new float[n];
+		this.prey_y = new float[n];
+		this.prey_rot = new float[n];
+		this.prey_shout_radius = new float[n];
+		this.prey_flags = new byte[n];
+		this.prey_ref = new Prey[n];
+	}
+	
+	/**
+	 * Grows the predator arrays to hold at least the given number of predators.
+	 * 
+	 * @param n count
+	 */
+	void ensurePredatorCapacity(int n) {
+		if (this.predator_x.length >= n)
+			return;
+		n = Math.max(n, this.predator_x.length * 2);
+		this.predator_x = new float[n];
+		this.predator_y = new float[n];
+		this.predator_rot = new float[n];
+		this.predator_flags = new byte[n];
+		this.predator_ref = new Predator[n];
+	}
+	
+	/**
+	 * Grows the food arrays to hold at least the given number of food objects.
+	 * 
+	 * @param n count
+	 */
+	void ensureFoodCapacity(int n) {
+		if (this.food_x.length >= n)
+			return;
+		n = Math.max(n, this.food_x.length * 2);
+		this.food_x = new float[n];
+		this.food_y = new float[n];
+		this.food_level = new byte[n];
+		this.food_ref = new Food[n];
+	}
+	
+	/**
+	 * Grows the hole arrays to hold at least the given number of holes.
+	 * 
+	 * @param n count
+	 */
+	void ensureHoleCapacity(int n) {
+		if (this.hole_x.length >= n)
+			return;
+		n = Math.max(n, this.hole_x.length * 2);
+		this.hole_x = new float[n];
+		this.hole_y = new float[n];
+		this.hole_level = new byte[n];
+		this.hole_ref = new Hole[n];
+	}
+}
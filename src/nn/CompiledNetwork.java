@@ -0,0 +1,505 @@
+package nn;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Topology of a neural network base compiled for evaluation. Neurons, connections and
+ * axoaxonal connections are numbered as in the base, and each instance of the network keeps
+ * only its own arrays of neuron values and weights. Each evaluated connection is a term,
+ * stored with its source and the factors of its axoaxonal connections in the order the
+ * neurons are evaluated.
+ * 
+ * Neurons are evaluated in a fixed order: a depth-first walk back from each output the host
+ * reads, in the order the neurons are defined, with each neuron placed after the neurons it
+ * reads from. Neurons that no output depends on are pruned. An edge that closes a cycle
+ * reads from a neuron that comes later in the order, and so reads its value from the
+ * previous update. The walk uses its own stack, so networks of any depth can be compiled.
+ * 
+ * A neuron is constant if the host never sets it and it has no input connections, like a
+ * bias neuron, or if its inputs are all constant and none of them learn. A term is constant
+ * if its connection does not learn and it reads only constant neurons. Constant terms are
+ * folded: they are evaluated when the weights change instead of on every update, and their
+ * sum is added after the other terms of the neuron. When a neuron's constant terms are not
+ * its last, this can change the last bits of its input. Linked connections that do not
+ * learn and have the same range always have the same weight, so they share one parameter.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public class CompiledNetwork {
+	final int neuron_count;
+	final int connection_count;
+	final int axo_count;
+	final int param_count; // connection weights held by each instance
+	final int axo_param_count; // axoaxonal connection weights held by each instance
+	
+	// Neurons
+	final String[] neuron_names;
+	final boolean[] step; // step activation, otherwise sigmoid
+	final double[] default_value; // value of each neuron when reset
+	final boolean[] constant; // value only changes when the weights change
+	
+	// Connections
+	final int[] conn_from;
+	final int[] conn_to;
+	final int[] conn_link; // linked connection, or -1
+	final int[] conn_param; // weight parameter
+	final double[] conn_min, conn_max;
+	final double[] conn_default; // default weight, or NaN for none
+	final int[] learnable; // learning connections into evaluated neurons, in order
+	
+	// Axoaxonal connections
+	final int[] axo_from;
+	final int[] axo_to;
+	final int[] axo_link; // linked axoaxonal connection, or -1
+	final int[] axo_param; // weight parameter
+	final double[] axo_min, axo_max;
+	
+	// Size of one step of a quantized weight, enough for 127 steps to reach the largest weight
+	final double conn_scale;
+	final double axo_scale;
+	
+	// Neurons evaluated by each update and the neurons with constant terms, in order, each
+	// with the start of its terms
+	final int[] order;
+	final int[] order_start; // order.length + 1 entries
+	final int[] fold;
+	final int[] fold_start; // fold.length + 1 entries
+	
+	// Terms, each with the start of its axoaxonal factors
+	final int[] term_from;
+	final int[] term_param;
+	final int[] term_factor_start; // term count + 1 entries
+	final int[] factor_from;
+	final int[] factor_param;
+	
+	private final HashMap<String,Integer> neurons_by_name;
+	private final int recurrent_count;
+	
+	// Work per update of the network compiled without an interface, folding or sharing
+	private final int plain_neurons, plain_terms, plain_factors, plain_learnable;
+	private final int pruned_count;
+	
+	/**
+	 * Compiles a neural network base.
+	 * 
+	 * @param base neural network base
+	 */
+	CompiledNetwork(NeuralNetworkBase base) {
+		this.neuron_count = base.neurons.size();
+		this.connection_count = base.connections.size();
+		this.axo_count = base.axoconnections.size();
+		
+		this.neuron_names = new String[this.neuron_count];
+		this.step = new boolean[this.neuron_count];
+		this.default_value = new double[this.neuron_count];
+		this.neurons_by_name = new HashMap<String,Integer>(this.neuron_count * 2);
+		for (int i = 0; i < this.neuron_count; i++) {
+			NeuralNetworkBase.NeuronBase nb = base.neurons.elementAt(i);
+			this.neuron_names[i] = nb.name;
+			this.step[i] = nb.activation == ActivationType.STEP;
+			this.default_value[i] = (nb.default_value != null) ? nb.default_value : 0.0;
+			this.neurons_by_name.put(nb.name, i);
+		}
+		
+		this.conn_from = new int[this.connection_count];
+		this.conn_to = new int[this.connection_count];
+		this.conn_link = new int[this.connection_count];
+		this.conn_min = new double[this.connection_count];
+		this.conn_max = new double[this.connection_count];
+		this.conn_default = new double[this.connection_count];
+		boolean[] learns = new boolean[this.connection_count];
+		for (int i = 0; i < this.connection_count; i++) {
+			NeuralNetworkBase.ConnectionBase cb = base.connections.elementAt(i);
+			this.conn_from[i] = cb.from;
+			this.conn_to[i] = cb.to;
+			this.conn_link[i] = (cb.link != null) ? cb.link : -1;
+			this.conn_min[i] = cb.min_weight;
+			this.conn_max[i] = cb.max_weight;
+			this.conn_default[i] = (cb.default_weight != null) ? cb.default_weight : Double.NaN;
+			learns[i] = cb.learnable;
+		}
+		
+		this.axo_from = new int[this.axo_count];
+		this.axo_to = new int[this.axo_count];
+		this.axo_link = new int[this.axo_count];
+		this.axo_min = new double[this.axo_count];
+		this.axo_max = new double[this.axo_count];
+		for (int i = 0; i < this.axo_count; i++) {
+			NeuralNetworkBase.AxoConnectionBase ab = base.axoconnections.elementAt(i);
+			this.axo_from[i] = ab.from;
+			this.axo_to[i] = ab.to;
+			this.axo_link[i] = (ab.link != null) ? ab.link : -1;
+			this.axo_min[i] = ab.min_weight;
+			this.axo_max[i] = ab.max_weight;
+		}
+		
+		// Shared parameters. A link is only kept in step by setting both weights together,
+		// so learning connections and links that were redefined keep their own weights.
+		this.conn_param = new int[this.connection_count];
+		int params = 0;
+		for (int i = 0; i < this.connection_count; i++) {
+			int l = this.conn_link[i];
+			if (l != -1 && l < i && this.conn_link[l] == i && !learns[i] && !learns[l]
+					&& this.conn_min[i] == this.conn_min[l] && this.conn_max[i] == this.conn_max[l]
+					&& Double.compare(this.conn_default[i], this.conn_default[l]) == 0)
+				this.conn_param[i] = this.conn_param[l];
+			else
+				this.conn_param[i] = params++;
+		}
+		this.param_count = params;
+		
+		this.axo_param = new int[this.axo_count];
+		params = 0;
+		for (int i = 0; i < this.axo_count; i++) {
+			int l = this.axo_link[i];
+			if (l != -1 && l < i && this.axo_link[l] == i
+					&& this.axo_min[i] == this.axo_min[l] && this.axo_max[i] == this.axo_max[l])
+				this.axo_param[i] = this.axo_param[l];
+			else
+				this.axo_param[i] = params++;
+		}
+		this.axo_param_count = params;
+		
+		double largest = 0.0;
+		for (int i = 0; i < this.connection_count; i++) {
+			largest = Math.max(largest, Math.max(Math.abs(this.conn_min[i]), Math.abs(this.conn_max[i])));
+			if (!Double.isNaN(this.conn_default[i]))
+				largest = Math.max(largest, Math.abs(this.conn_default[i]));
+		}
+		this.conn_scale = (largest > 0.0) ? largest / 127.0 : 1.0;
+		largest = 0.0;
+		for (int i = 0; i < this.axo_count; i++)
+			largest = Math.max(largest, Math.max(Math.abs(this.axo_min[i]), Math.abs(this.axo_max[i])));
+		this.axo_scale = (largest > 0.0) ? largest / 127.0 : 1.0;
+		
+		// Rows, kept in the order the connections were defined
+		int[] input_start = buildStarts(this.conn_to, this.neuron_count);
+		int[] input_conn = buildRows(this.conn_to, input_start);
+		int[] axo_start = buildStarts(this.axo_to, this.connection_count);
+		int[] axo_list = buildRows(this.axo_to, axo_start);
+		
+		// Neurons each neuron reads from: for each input connection, its source followed by
+		// the sources of its axoaxonal connections
+		int[] dep_start = new int[this.neuron_count + 1];
+		for (int n = 0; n < this.neuron_count; n++) {
+			int count = 0;
+			for (int j = input_start[n]; j < input_start[n + 1]; j++) {
+				int c = input_conn[j];
+				count += 1 + axo_start[c + 1] - axo_start[c];
+			}
+			dep_start[n + 1] = dep_start[n] + count;
+		}
+		int[] deps = new int[dep_start[this.neuron_count]];
+		int d = 0;
+		for (int j = 0; j < input_conn.length; j++) {
+			int c = input_conn[j];
+			deps[d++] = this.conn_from[c];
+			for (int x = axo_start[c]; x < axo_start[c + 1]; x++)
+				deps[d++] = this.axo_from[axo_list[x]];
+		}
+		
+		// Order of the network with every effector as an output, and with the outputs the host reads
+		boolean[] effector = new boolean[this.neuron_count];
+		for (int n = 0; n < this.neuron_count; n++)
+			effector[n] = base.neurons.elementAt(n).type == NeuronType.EFFECTOR;
+		boolean[] output = effector;
+		if (base.outputs != null) {
+			output = new boolean[this.neuron_count];
+			for (String name : base.outputs) {
+				int n = getNeuronIndex(name);
+				if (n != -1)
+					output[n] = true;
+			}
+		}
+		boolean[] plain_reached = new boolean[this.neuron_count];
+		boolean[] reached = new boolean[this.neuron_count];
+		int[] plain_order = walk(effector, input_start, dep_start, deps, plain_reached);
+		int[] live = walk(output, input_start, dep_start, deps, reached);
+		
+		int[] position = new int[this.neuron_count];
+		Arrays.fill(position, -1);
+		for (int k = 0; k < live.length; k++)
+			position[live[k]] = k;
+		int recurrent = 0;
+		for (int k = 0; k < live.length; k++) {
+			int n = live[k];
+			for (int j = dep_start[n]; j < dep_start[n + 1]; j++) {
+				if (position[deps[j]] >= k)
+					recurrent++;
+			}
+		}
+		this.recurrent_count = recurrent;
+		
+		// Constant neurons. Neurons later in the order are not yet marked, so a neuron on a
+		// cycle is never constant.
+		boolean[] host_set = new boolean[this.neuron_count];
+		if (base.inputs != null) {
+			for (String name : base.inputs) {
+				int n = getNeuronIndex(name);
+				if (n != -1)
+					host_set[n] = true;
+			}
+		}
+		this.constant = new boolean[this.neuron_count];
+		for (int n = 0; n < this.neuron_count; n++) {
+			if (input_start[n + 1] == input_start[n])
+				this.constant[n] = base.inputs != null && !host_set[n];
+		}
+		for (int k = 0; k < live.length; k++) {
+			int n = live[k];
+			boolean c = !host_set[n];
+			for (int j = input_start[n]; j < input_start[n + 1] && c; j++)
+				c = !learns[input_conn[j]];
+			for (int j = dep_start[n]; j < dep_start[n + 1] && c; j++)
+				c = this.constant[deps[j]];
+			this.constant[n] = c;
+		}
+		
+		// Terms of the neurons evaluated by each update, then the constant terms
+		boolean[] term_constant = new boolean[this.connection_count];
+		for (int j = 0; j < input_conn.length; j++) {
+			int c = input_conn[j];
+			boolean k = !learns[c] && this.constant[this.conn_from[c]];
+			for (int x = axo_start[c]; x < axo_start[c + 1] && k; x++)
+				k = this.constant[this.axo_from[axo_list[x]]];
+			term_constant[c] = k;
+		}
+		int[] term_from = new int[input_conn.length];
+		int[] term_param = new int[input_conn.length];
+		int[] term_factor_start = new int[input_conn.length + 1];
+		int[] factor_from = new int[this.axo_count];
+		int[] factor_param = new int[this.axo_count];
+		int[] order = new int[live.length], order_start = new int[live.length + 1];
+		int[] fold = new int[live.length], fold_start = new int[live.length + 1];
+		int order_count = 0, fold_count = 0, terms = 0, factors = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			boolean folding = pass == 1;
+			for (int k = 0; k < live.length; k++) {
+				int n = live[k];
+				int start = terms;
+				for (int j = input_start[n]; j < input_start[n + 1]; j++) {
+					int c = input_conn[j];
+					if (term_constant[c] != folding)
+						continue;
+					term_from[terms] = this.conn_from[c];
+					term_param[terms] = this.conn_param[c];
+					for (int x = axo_start[c]; x < axo_start[c + 1]; x++) {
+						int a = axo_list[x];
+						factor_from[factors] = this.axo_from[a];
+						factor_param[factors] = this.axo_param[a];
+						factors++;
+					}
+					terms++;
+					term_factor_start[terms] = factors;
+				}
+				
+				if (!folding && !this.constant[n]) {
+					order[order_count] = n;
+					order_start[order_count++] = start;
+				}
+				else if (folding && terms > start) {
+					fold[fold_count] = n;
+					fold_start[fold_count++] = start;
+				}
+			}
+			if (!folding)
+				order_start[order_count] = terms;
+			else
+				fold_start[fold_count] = terms;
+		}
+		this.order = Arrays.copyOf(order, order_count);
+		this.order_start = Arrays.copyOf(order_start, order_count + 1);
+		this.fold = Arrays.copyOf(fold, fold_count);
+		this.fold_start = Arrays.copyOf(fold_start, fold_count + 1);
+		this.term_from = Arrays.copyOf(term_from, terms);
+		this.term_param = Arrays.copyOf(term_param, terms);
+		this.term_factor_start = Arrays.copyOf(term_factor_start, terms + 1);
+		this.factor_from = Arrays.copyOf(factor_from, factors);
+		this.factor_param = Arrays.copyOf(factor_param, factors);
+		
+		int learnable_count = 0;
+		for (int i = 0; i < this.connection_count; i++) {
+			if (learns[i] && reached[this.conn_to[i]])
+				learnable_count++;
+		}
+		this.learnable = new int[learnable_count];
+		learnable_count = 0;
+		for (int i = 0; i < this.connection_count; i++) {
+			if (learns[i] && reached[this.conn_to[i]])
+				this.learnable[learnable_count++] = i;
+		}
+		
+		// Work per update before optimizing
+		int plain_terms = 0, plain_factors = 0, pruned = 0;
+		for (int k = 0; k < plain_order.length; k++) {
+			int n = plain_order[k];
+			for (int j = input_start[n]; j < input_start[n + 1]; j++) {
+				int c = input_conn[j];
+				plain_terms++;
+				plain_factors += axo_start[c + 1] - axo_start[c];
+			}
+			if (!reached[n])
+				pruned++;
+		}
+		int plain_learnable = 0;
+		for (int i = 0; i < this.connection_count; i++) {
+			if (learns[i])
+				plain_learnable++;
+		}
+		this.plain_neurons = plain_order.length;
+		this.plain_terms = plain_terms;
+		this.plain_factors = plain_factors;
+		this.plain_learnable = plain_learnable;
+		this.pruned_count = pruned;
+	}
+	
+	/**
+	 * Walks back from the output neurons and returns the neurons with input connections that
+	 * the outputs depend on, each after the neurons it reads from.
+	 * 
+	 * @param output neurons to walk back from
+	 * @param input_start start of the input connections of each neuron
+	 * @param dep_start start of the dependencies of each neuron
+	 * @param deps neurons each neuron reads from
+	 * @param reached set to true for each neuron the outputs depend on
+	 * @return neurons in order
+	 */
+	private static int[] walk(boolean[] output, int[] input_start, int[] dep_start, int[] deps, boolean[] reached) {
+		int neuron_count = output.length;
+		int[] state = new int[neuron_count]; // 0 unvisited, 1 on the stack, 2 done
+		int[] stack = new int[neuron_count];
+		int[] stack_pos = new int[neuron_count];
+		int[] order = new int[neuron_count];
+		int order_count = 0;
+		for (int e = 0; e < neuron_count; e++) {
+			if (!output[e] || state[e] != 0)
+				continue;
+			
+			int top = 0;
+			stack[0] = e;
+			stack_pos[0] = 0;
+			state[e] = 1;
+			while (top >= 0) {
+				int n = stack[top];
+				int pos = dep_start[n] + stack_pos[top]++;
+				int v = (pos < dep_start[n + 1]) ? deps[pos] : -1;
+				if (v == -1) {
+					// All inputs visited
+					top--;
+					state[n] = 2;
+					reached[n] = true;
+					if (input_start[n + 1] > input_start[n])
+						order[order_count++] = n;
+				}
+				else if (state[v] == 0) {
+					state[v] = 1;
+					top++;
+					stack[top] = v;
+					stack_pos[top] = 0;
+				}
+			}
+		}
+		return Arrays.copyOf(order, order_count);
+	}
+	
+	/**
+	 * Counts the entries of each row and returns the start of each row.
+	 */
+	private static int[] buildStarts(int[] row_of, int rows) {
+		int[] start = new int[rows + 1];
+		for (int i = 0; i < row_of.length; i++)
+			start[row_of[i] + 1]++;
+		for (int r = 0; r < rows; r++)
+			start[r + 1] += start[r];
+		return start;
+	}
+	
+	/**
+	 * Places each entry in its row, in order.
+	 */
+	private static int[] buildRows(int[] row_of, int[] start) {
+		int[] entries = new int[row_of.length];
+		int[] next = new int[start.length - 1];
+		System.arraycopy(start, 0, next, 0, next.length);
+		for (int i = 0; i < row_of.length; i++)
+			entries[next[row_of[i]]++] = i;
+		return entries;
+	}
+	
+	/**
+	 * Returns the index of a neuron.
+	 * 
+	 * @param name neuron name
+	 * @return index, or -1 if there is no such neuron
+	 */
+	public int getNeuronIndex(String name) {
+		Integer i = this.neurons_by_name.get(name);
+		return (i != null) ? i : -1;
+	}
+	
+	/**
+	 * Returns the number of neurons evaluated by each update.
+	 * 
+	 * @return count
+	 */
+	public int getEvaluatedCount() {
+		return this.order.length;
+	}
+	
+	/**
+	 * Returns the number of edges that close a cycle, and so read values from the previous
+	 * update.
+	 * 
+	 * @return count
+	 */
+	public int getRecurrentCount() {
+		return this.recurrent_count;
+	}
+	
+	/**
+	 * Returns the number of operations in each update: one for each neuron activation,
+	 * connection term, axoaxonal factor and Hebbian weight change.
+	 * 
+	 * @param optimized count for the network as compiled, otherwise for the network
+	 *   compiled with every effector as an output and no folding
+	 * @return count
+	 */
+	public int getOperationCount(boolean optimized) {
+		if (!optimized)
+			return this.plain_neurons + this.plain_terms + this.plain_factors + this.plain_learnable;
+		return this.order.length + this.order_start[this.order.length]
+				+ this.term_factor_start[this.order_start[this.order.length]] + this.learnable.length;
+	}
+	
+	/**
+	 * Returns a summary of the work removed from each update by pruning, folding and shared
+	 * parameters, one line per measure.
+	 * 
+	 * @return report
+	 */
+	public String getReport() {
+		int terms = this.order_start[this.order.length];
+		int factors = this.term_factor_start[terms];
+		int folded_neurons = 0;
+		for (int k = 0; k < this.fold.length; k++) {
+			if (this.constant[this.fold[k]])
+				folded_neurons++;
+		}
+		int before = getOperationCount(false), after = getOperationCount(true);
+		
+		StringBuilder result = new StringBuilder();
+		result.append(String.format("Neurons evaluated: %d -> %d (%d pruned, %d folded)\n",
+				this.plain_neurons, this.order.length, this.pruned_count, folded_neurons));
+		result.append(String.format("Connection terms: %d -> %d (%d folded)\n",
+				this.plain_terms, terms, this.term_from.length - terms));
+		result.append(String.format("Axoaxonal factors: %d -> %d\n", this.plain_factors, factors));
+		result.append(String.format("Hebbian updates: %d -> %d\n", this.plain_learnable, this.learnable.length));
+		result.append(String.format("Operations per update: %d -> %d (%d removed, %.1f%%)\n",
+				before, after, before - after, (before > 0) ? 100.0 * (before - after) / before : 0.0));
+		result.append(String.format("Weights per instance: %d -> %d\n",
+				this.connection_count + this.axo_count, this.param_count + this.axo_param_count));
+		return result.toString();
+	}
+}
@@ -1,8 +1,6 @@
 package nn;
 
-import java.util.HashMap;
 import java.util.Random;
-import java.util.Vector;
 
 /**
  * Class for a neural network instance. The neural network serves as the brain controller
@@ -11,21 +9,37 @@ import java.util.Vector;
  * before updating the network. The result of an update is the activation of effector
  * neurons, which collectively serve as the output of the network.
  * 
+ * The layout of the network is the compiled form of its base, shared by every instance.
+ * An instance holds only the activation of each neuron and the weight of each parameter,
+ * along with the sums of the constant terms folded out of each update.
+ * 
+ * Instances hold their values and weights in the precision of their base: as doubles, as
+ * floats, or as floats with each weight quantized to a byte. Quantized weights are steps of
+ * a scale shared by the network, and quantized instances do not learn. Weights are read and
+ * written as doubles, so genomes can be copied between instances of any precision.
+ * 
  * @author Justin Morgan
  *
  */
 public class NeuralNetwork {
-	private final double MUTATE_MAX = 1.5;
+	private final CompiledNetwork net;
+	private final Precision precision;
+	private final double learning_rate;
 	
-	private Vector<Neuron> neurons;
-	private Vector<Connection> connections;
-	private Vector<AxoConnection> axoconnections;
+	// Arrays of the instance's precision; the others are null
+	private final double[] value; // activation of each neuron
+	private final double[] weight; // weight of each connection parameter
+	private final double[] axo_weight; // weight of each axoaxonal connection parameter
+	private final double[] fold_input; // sum of the constant terms of each neuron
+	private final float[] value_f;
+	private final float[] weight_f;
+	private final float[] axo_weight_f;
+	private final float[] fold_input_f;
+	private final byte[] weight_q; // in steps of the network's connection scale
+	private final byte[] axo_weight_q; // in steps of the network's axoaxonal scale
+	private boolean folded = false; // constant terms are up to date
 	
-	private Vector<Integer> connection_links; //*
-	private Vector<Integer> axoconnection_links; //*
-
-	private HashMap<String,Neuron> neurons_by_name;
-	private HashMap<Neuron,String> names_by_neuron;
+	private NeuralNetworkBase base;
 	
 	Random random;
 	
@@ -35,93 +49,211 @@ public class NeuralNetwork {
 	 * @param base neural network base
 	 */
 	public NeuralNetwork(NeuralNetworkBase base) {
-		this.neurons = new Vector<Neuron>();
-		this.connections = new Vector<Connection>();
-		this.axoconnections = new Vector<AxoConnection>();
+		this.net = base.getCompiled();
+		this.precision = base.precision;
+		this.learning_rate = base.learning_rate;
 		
-		this.connection_links = new Vector<Integer>(); //*
-		this.axoconnection_links = new Vector<Integer>(); //*
-		
-		this.neurons_by_name = new HashMap<String,Neuron>();
-		this.names_by_neuron = new HashMap<Neuron,String>();
+		boolean doubles = this.precision == Precision.DOUBLE;
+		boolean floats = this.precision == Precision.FLOAT;
+		boolean quantized = this.precision == Precision.INT8;
+		this.value = doubles ? new double[this.net.neuron_count] : null;
+		this.weight = doubles ? new double[this.net.param_count] : null;
+		this.axo_weight = doubles ? new double[this.net.axo_param_count] : null;
+		this.fold_input = doubles ? new double[this.net.neuron_count] : null;
+		this.value_f = !doubles ? new float[this.net.neuron_count] : null;
+		this.weight_f = floats ? new float[this.net.param_count] : null;
+		this.axo_weight_f = floats ? new float[this.net.axo_param_count] : null;
+		this.fold_input_f = !doubles ? new float[this.net.neuron_count] : null;
+		this.weight_q = quantized ? new byte[this.net.param_count] : null;
+		this.axo_weight_q = quantized ? new byte[this.net.axo_param_count] : null;
 		
 		this.random = new Random();
+		this.base = base;
 		
-		for (NeuralNetworkBase.NeuronBase nb : base.neurons) {
-			Neuron n = new Neuron(nb.name, nb.type, nb.activation);
-			if (nb.default_value != null)
-				n.setValue(nb.default_value);
-			this.neurons.add(n);
-			this.neurons_by_name.put(nb.name, n);
-			this.names_by_neuron.put(n, nb.name);
-		}
-		
-		for (NeuralNetworkBase.ConnectionBase cb : base.connections){
-			Neuron from = this.neurons.elementAt(cb.from);
-			Neuron to = this.neurons.elementAt(cb.to);
-			
-			Connection c = new Connection(cb.name, from, to, cb.learnable, cb.min_weight, cb.max_weight);
-			if (cb.default_weight != null)
-				c.setDefaultWeight(cb.default_weight);
-			this.connections.add(c);
-			from.addOutputConnection(c);
-			to.addInputConnection(c);
-
-			this.connection_links.add(cb.link);
-		}
-		
-		for (NeuralNetworkBase.AxoConnectionBase ab : base.axoconnections) {
-			Neuron from = this.neurons.elementAt(ab.from);
-			Connection to = this.connections.elementAt(ab.to);
-			
-			AxoConnection a = new AxoConnection(ab.name, from, to, ab.min_weight, ab.max_weight);
-			this.axoconnections.add(a);
-			from.addOutputAxoConnection(a);
-			to.addAxoConnection(a);
-
-			this.axoconnection_links.add(ab.link);
-		}
+		reset();
 	}
 	
 	/**
-	 * Sets the weight of a connection.
+	 * Sets the weight of a connection, and of the connection linked to it.
 	 * 
 	 * @param i index in connection list
 	 * @param weight weight
 	 */
-	private void setConnectionWeight(Integer i, Double weight) { //*
-		this.connections.elementAt(i).setWeight(weight);
-		Integer link = this.connection_links.elementAt(i);
-		if (link != null)
-			this.connections.elementAt(link).setWeight(weight);
+	private void setConnectionWeight(int i, double weight) { //*
+		setWeight(i, weight);
+		int link = this.net.conn_link[i];
+		if (link != -1)
+			setWeight(link, weight);
 	}
 	
 	/**
-	 * Sets the weight of an axoaxonal connection.
+	 * Sets the weight of an axoaxonal connection, and of the axoaxonal connection linked to it.
 	 * 
 	 * @param i index in axoaxonal connection list
 	 * @param weight weight
 	 */
-	private void setAxoConnectionWeight(Integer i, Double weight) { //*
-		this.axoconnections.elementAt(i).setWeight(weight);
-		Integer link = this.axoconnection_links.elementAt(i);
-		if (link != null)
-			this.axoconnections.elementAt(link).setWeight(weight);
+	private void setAxoConnectionWeight(int i, double weight) { //*
+		setAxoWeight(i, weight);
+		int link = this.net.axo_link[i];
+		if (link != -1)
+			setAxoWeight(link, weight);
+	}
+	
+	/**
+	 * Sets the weight of a connection, kept within its range.
+	 */
+	private void setWeight(int i, double weight) {
+		if (weight < this.net.conn_min[i])
+			weight = this.net.conn_min[i];
+		if (weight > this.net.conn_max[i])
+			weight = this.net.conn_max[i];
+		putParam(this.net.conn_param[i], weight);
+		this.folded = false;
+	}
+	
+	/**
+	 * Sets the weight of an axoaxonal connection, kept within its range.
+	 */
+	private void setAxoWeight(int i, double weight) {
+		if (weight < this.net.axo_min[i])
+			weight = this.net.axo_min[i];
+		if (weight > this.net.axo_max[i])
+			weight = this.net.axo_max[i];
+		putAxoParam(this.net.axo_param[i], weight);
+		this.folded = false;
+	}
+	
+	/**
+	 * Returns the weight of a connection parameter.
+	 */
+	private double getParam(int p) {
+		switch (this.precision) {
+			case FLOAT:
+				return this.weight_f[p];
+			case INT8:
+				return this.weight_q[p] * this.net.conn_scale;
+			default:
+				return this.weight[p];
+		}
+	}
+	
+	/**
+	 * Stores the weight of a connection parameter in the precision of the instance.
+	 */
+	private void putParam(int p, double weight) {
+		switch (this.precision) {
+			case FLOAT:
+				this.weight_f[p] = (float)weight;
+				break;
+			case INT8:
+				this.weight_q[p] = quantize(weight, this.net.conn_scale);
+				break;
+			default:
+				this.weight[p] = weight;
+		}
+	}
+	
+	/**
+	 * Returns the weight of an axoaxonal connection parameter.
+	 */
+	private double getAxoParam(int p) {
+		switch (this.precision) {
+			case FLOAT:
+				return this.axo_weight_f[p];
+			case INT8:
+				return this.axo_weight_q[p] * this.net.axo_scale;
+			default:
+				return this.axo_weight[p];
+		}
+	}
+	
+	/**
+	 * Stores the weight of an axoaxonal connection parameter in the precision of the instance.
+	 */
+	private void putAxoParam(int p, double weight) {
+		switch (this.precision) {
+			case FLOAT:
+				this.axo_weight_f[p] = (float)weight;
+				break;
+			case INT8:
+				this.axo_weight_q[p] = quantize(weight, this.net.axo_scale);
+				break;
+			default:
+				this.axo_weight[p] = weight;
+		}
+	}
+	
+	/**
+	 * Rounds a weight to the nearest step of a scale, as a byte.
+	 */
+	private static byte quantize(double weight, double scale) {
+		long q = Math.round(weight / scale);
+		return (byte)Math.max(-127, Math.min(127, q));
+	}
+	
+	/**
+	 * Returns the weight of a connection.
+	 */
+	private double getConnectionWeight(int i) {
+		return getParam(this.net.conn_param[i]);
+	}
+	
+	/**
+	 * Returns the weight of an axoaxonal connection.
+	 */
+	private double getAxoConnectionWeight(int i) {
+		return getAxoParam(this.net.axo_param[i]);
+	}
+	
+	/**
+	 * Returns the activation of a neuron by index.
+	 */
+	private double getValue(int i) {
+		return (this.value != null) ? this.value[i] : this.value_f[i];
+	}
+	
+	/**
+	 * Restores all neuron values and connection weights to those of a new instance from the
+	 * same base, so that the network can be reused by a newly spawned animat. The weights
+	 * are then set with setRandomConnections(), inheritConnections() or copyConnections().
+	 */
+	public void reset() {
+		if (this.value != null)
+			System.arraycopy(this.net.default_value, 0, this.value, 0, this.value.length);
+		else {
+			for (int i = 0; i < this.value_f.length; i++)
+				this.value_f[i] = (float)this.net.default_value[i];
+		}
+		for (int i = 0; i < this.net.connection_count; i++) {
+			double w = this.net.conn_default[i];
+			putParam(this.net.conn_param[i], Double.isNaN(w) ? 0.0 : w);
+		}
+		for (int p = 0; p < this.net.axo_param_count; p++)
+			putAxoParam(p, 0.0);
+		this.folded = false;
 	}
 	
 	/**
 	 * Initializes the neural network with random weights.
 	 */
 	public void setRandomConnections() {
-		for (int i = 0; i < this.connections.size(); i++) {
-			Connection c = this.connections.elementAt(i);
-			if (!c.hasDefaultWeight())
-				this.setConnectionWeight(i, c.weight_min + this.random.nextDouble() * (c.weight_max - c.weight_min));
-		}
-		for (int i = 0; i < this.axoconnections.size(); i++) {
-			AxoConnection a = this.axoconnections.elementAt(i);
-			this.setAxoConnectionWeight(i, a.weight_min + this.random.nextDouble() * (a.weight_max - a.weight_min));
+		setRandomConnections(this.random);
+	}
+	
+	/**
+	 * Initializes the neural network with random weights drawn from the given random number
+	 * generator.
+	 * 
+	 * @param random random number generator
+	 */
+	public void setRandomConnections(Random random) {
+		CompiledNetwork n = this.net;
+		for (int i = 0; i < n.connection_count; i++) {
+			if (Double.isNaN(n.conn_default[i]))
+				this.setConnectionWeight(i, n.conn_min[i] + random.nextDouble() * (n.conn_max[i] - n.conn_min[i]));
 		}
+		for (int i = 0; i < n.axo_count; i++)
+			this.setAxoConnectionWeight(i, n.axo_min[i] + random.nextDouble() * (n.axo_max[i] - n.axo_min[i]));
 	}
 	
 	/**
@@ -130,24 +262,34 @@ public class NeuralNetwork {
 	 * @param parent neural network instance of parent
 	 */
 	public void inheritConnections(NeuralNetwork parent) {
-		for (int i = 0; i < this.connections.size(); i++) {
-			Connection c = this.connections.elementAt(i);
-			double weight_parent = parent.connections.elementAt(i).getWeight();
-			double min = -1 * Math.min(weight_parent - c.weight_min, MUTATE_MAX);
-			double max = Math.min(c.weight_max - weight_parent, MUTATE_MAX);
-			double weight_change = min + this.random.nextDouble() * (max - min);
-			if ((weight_parent <= c.weight_min && weight_change < 0)
-					|| (weight_parent >= c.weight_max && weight_change > 0))
+		inheritConnections(parent, this.random);
+	}
+	
+	/**
+	 * Copies and mutates the connecation and axoaxonal connection weights of a parent animat,
+	 * drawing the mutations from the given random number generator.
+	 * 
+	 * @param parent neural network instance of parent
+	 * @param random random number generator
+	 */
+	public void inheritConnections(NeuralNetwork parent, Random random) {
+		CompiledNetwork n = this.net;
+		for (int i = 0; i < n.connection_count; i++) {
+			double weight_parent = parent.getConnectionWeight(i);
+			double min = -1 * Math.min(weight_parent - n.conn_min[i], this.base.mutate_max);
+			double max = Math.min(n.conn_max[i] - weight_parent, this.base.mutate_max);
+			double weight_change = min + random.nextDouble() * (max - min);
+			if ((weight_parent <= n.conn_min[i] && weight_change < 0)
+					|| (weight_parent >= n.conn_max[i] && weight_change > 0))
 				weight_change *= -1.0;
 			this.setConnectionWeight(i, weight_parent + weight_change);
 		}
 		
-		for (int i = 0; i < this.axoconnections.size(); i++) {
-			AxoConnection a = this.axoconnections.elementAt(i);
-			double weight_parent = parent.axoconnections.elementAt(i).getWeight();
-			double weight_change = (-MUTATE_MAX + this.random.nextDouble() * (2 * MUTATE_MAX));
-			if ((weight_parent <= a.weight_min && weight_change < 0)
-					|| (weight_parent >= a.weight_max && weight_change > 0))
+		for (int i = 0; i < n.axo_count; i++) {
+			double weight_parent = parent.getAxoConnectionWeight(i);
+			double weight_change = (-this.base.mutate_max + random.nextDouble() * (2 * this.base.mutate_max));
+			if ((weight_parent <= n.axo_min[i] && weight_change < 0)
+					|| (weight_parent >= n.axo_max[i] && weight_change > 0))
 				weight_change *= -1.0;
 			this.setAxoConnectionWeight(i, weight_parent + weight_change);
 		}
@@ -159,27 +301,250 @@ public class NeuralNetwork {
 	 * @param parent neural network instance of parent
 	 */
 	public void copyConnections(NeuralNetwork parent) {
-		for (int i = 0; i < this.connections.size(); i++)
-			this.setConnectionWeight(i, parent.connections.elementAt(i).getWeight());
+		CompiledNetwork n = this.net;
+		for (int i = 0; i < n.connection_count; i++)
+			this.setConnectionWeight(i, parent.getConnectionWeight(i));
 		
-		for (int i = 0; i < this.axoconnections.size(); i++)
-			this.setAxoConnectionWeight(i, parent.axoconnections.elementAt(i).getWeight());
+		for (int i = 0; i < n.axo_count; i++)
+			this.setAxoConnectionWeight(i, parent.getAxoConnectionWeight(i));
+	}
+	
+	/**
+	 * Returns the connection weights followed by the axoaxonal connection weights.
+	 * 
+	 * @return weights
+	 */
+	public double[] getWeights() {
+		CompiledNetwork n = this.net;
+		double[] weights = new double[n.connection_count + n.axo_count];
+		for (int i = 0; i < n.connection_count; i++)
+			weights[i] = getConnectionWeight(i);
+		for (int i = 0; i < n.axo_count; i++)
+			weights[n.connection_count + i] = getAxoConnectionWeight(i);
+		return weights;
+	}
+	
+	/**
+	 * Sets the connection and axoaxonal connection weights, in the order returned by
+	 * getWeights().
+	 * 
+	 * @param weights weights
+	 * @throws IllegalArgumentException if the number of weights does not match the network
+	 */
+	public void setWeights(double[] weights) {
+		CompiledNetwork n = this.net;
+		if (weights.length != n.connection_count + n.axo_count)
+			throw new IllegalArgumentException("Expected " + (n.connection_count + n.axo_count)
+					+ " weights, got " + weights.length);
+		for (int i = 0; i < n.connection_count; i++)
+			setWeight(i, weights[i]);
+		for (int i = 0; i < n.axo_count; i++)
+			setAxoWeight(i, weights[n.connection_count + i]);
 	}
 	
 	/**
-	 * Updates the activation of all neurons in the neural network.
+	 * Returns the number of bytes of neuron values and weights held by the instance, not
+	 * counting the layout shared with the other instances of its base.
+	 * 
+	 * @return size in bytes
+	 */
+	public int getStateSize() {
+		int values = 2 * this.net.neuron_count; // activations and folded inputs
+		int weights = this.net.param_count + this.net.axo_param_count;
+		switch (this.precision) {
+			case FLOAT:
+				return 4 * (values + weights);
+			case INT8:
+				return 4 * values + weights;
+			default:
+				return 8 * (values + weights);
+		}
+	}
+	
+	/**
+	 * Returns a 64-bit hash of the connection and axoaxonal connection weights. Networks from
+	 * the same base with the same weights have the same hash. Learning changes the weights,
+	 * so the hash of an animat's genome should be taken before the network is first updated.
+	 * 
+	 * @return hash
+	 */
+	public long getGenomeHash() {
+		CompiledNetwork n = this.net;
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < n.connection_count; i++)
+			hash = hashWeight(hash, getConnectionWeight(i));
+		for (int i = 0; i < n.axo_count; i++)
+			hash = hashWeight(hash, getAxoConnectionWeight(i));
+		return hash;
+	}
+	
+	/**
+	 * Adds the bytes of a weight to an FNV-1a hash.
+	 */
+	private static long hashWeight(long hash, double weight) {
+		long bits = Double.doubleToLongBits(weight);
+		for (int i = 0; i < 8; i++) {
+			hash ^= (bits >>> (i * 8)) & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+	
+	/**
+	 * Updates the activation of all neurons that the effectors depend on, in the compiled
+	 * order, then applies Hebb's rule to the learnable connections. Each neuron's input is the
+	 * sum over its input connections of (activation of source * weight), multiplied by
+	 * (activation of source * weight) of each axoaxonal connection on the connection.
+	 * Connections that close a cycle read the activation of their source from the last update.
+	 * Constant terms are only evaluated again after the weights have changed. The Hebbian
+	 * update of a connection is:
+	 * 
+	 * delta w = (learning rate) * (source activation) * (destination value)
 	 */
 	public void update() {
-		for (Neuron n : this.neurons)
-			n.resetUpdated();
+		if (this.value == null) {
+			updateFloat();
+			return;
+		}
 		
-		for (Neuron n : this.neurons) {
-			if (n.getType() == NeuronType.EFFECTOR)
-				n.update();
+		CompiledNetwork n = this.net;
+		double[] value = this.value;
+		if (!this.folded) {
+			for (int k = 0; k < n.fold.length; k++) {
+				int i = n.fold[k];
+				double input = sumTerms(n.fold_start[k], n.fold_start[k + 1]);
+				if (n.constant[i])
+					value[i] = activate(i, input);
+				else
+					this.fold_input[i] = input;
+			}
+			this.folded = true;
 		}
 		
-		for (Connection c : this.connections)
-			c.applyHebbianRule();
+		for (int k = 0; k < n.order.length; k++) {
+			int i = n.order[k];
+			double input = sumTerms(n.order_start[k], n.order_start[k + 1]);
+			value[i] = activate(i, input + this.fold_input[i]);
+		}
+		
+		for (int k = 0; k < n.learnable.length; k++) {
+			int c = n.learnable[k];
+			int p = n.conn_param[c];
+			double w = this.weight[p] + value[n.conn_from[c]] * value[n.conn_to[c]] * this.learning_rate;
+			if (w > 5.0)
+				w = 5.0;
+			if (w < -5.0)
+				w = -5.0;
+			this.weight[p] = w;
+		}
+	}
+	
+	/**
+	 * Updates an instance with float values, and float or quantized weights. Quantized
+	 * instances do not learn.
+	 */
+	private void updateFloat() {
+		CompiledNetwork n = this.net;
+		float[] value = this.value_f;
+		boolean quantized = this.weight_q != null;
+		if (!this.folded) {
+			for (int k = 0; k < n.fold.length; k++) {
+				int i = n.fold[k];
+				float input = quantized ? sumTermsQuantized(n.fold_start[k], n.fold_start[k + 1])
+						: sumTermsFloat(n.fold_start[k], n.fold_start[k + 1]);
+				if (n.constant[i])
+					value[i] = activateFloat(i, input);
+				else
+					this.fold_input_f[i] = input;
+			}
+			this.folded = true;
+		}
+		
+		for (int k = 0; k < n.order.length; k++) {
+			int i = n.order[k];
+			float input = quantized ? sumTermsQuantized(n.order_start[k], n.order_start[k + 1])
+					: sumTermsFloat(n.order_start[k], n.order_start[k + 1]);
+			value[i] = activateFloat(i, input + this.fold_input_f[i]);
+		}
+		
+		if (quantized)
+			return;
+		float rate = (float)this.learning_rate;
+		for (int k = 0; k < n.learnable.length; k++) {
+			int c = n.learnable[k];
+			int p = n.conn_param[c];
+			float w = this.weight_f[p] + value[n.conn_from[c]] * value[n.conn_to[c]] * rate;
+			if (w > 5.0f)
+				w = 5.0f;
+			if (w < -5.0f)
+				w = -5.0f;
+			this.weight_f[p] = w;
+		}
+	}
+	
+	/**
+	 * Returns the sum of a range of compiled terms.
+	 */
+	private double sumTerms(int start, int end) {
+		CompiledNetwork n = this.net;
+		double input = 0.0;
+		for (int t = start; t < end; t++) {
+			double v = this.value[n.term_from[t]] * this.weight[n.term_param[t]];
+			for (int x = n.term_factor_start[t]; x < n.term_factor_start[t + 1]; x++)
+				v *= this.value[n.factor_from[x]] * this.axo_weight[n.factor_param[x]];
+			input += v;
+		}
+		return input;
+	}
+	
+	/**
+	 * Returns the sum of a range of compiled terms with float weights.
+	 */
+	private float sumTermsFloat(int start, int end) {
+		CompiledNetwork n = this.net;
+		float input = 0.0f;
+		for (int t = start; t < end; t++) {
+			float v = this.value_f[n.term_from[t]] * this.weight_f[n.term_param[t]];
+			for (int x = n.term_factor_start[t]; x < n.term_factor_start[t + 1]; x++)
+				v *= this.value_f[n.factor_from[x]] * this.axo_weight_f[n.factor_param[x]];
+			input += v;
+		}
+		return input;
+	}
+	
+	/**
+	 * Returns the sum of a range of compiled terms with quantized weights. The connection
+	 * scale is shared by every term, so it is applied once to the sum.
+	 */
+	private float sumTermsQuantized(int start, int end) {
+		CompiledNetwork n = this.net;
+		float axo_scale = (float)n.axo_scale;
+		float input = 0.0f;
+		for (int t = start; t < end; t++) {
+			float v = this.value_f[n.term_from[t]] * this.weight_q[n.term_param[t]];
+			for (int x = n.term_factor_start[t]; x < n.term_factor_start[t + 1]; x++)
+				v *= this.value_f[n.factor_from[x]] * (this.axo_weight_q[n.factor_param[x]] * axo_scale);
+			input += v;
+		}
+		return input * (float)n.conn_scale;
+	}
+	
+	/**
+	 * Returns the activation of a neuron for its input.
+	 */
+	private double activate(int i, double input) {
+		if (this.net.step[i])
+			return input >= 0.0 ? 1.0 : 0.0;
+		return 1.0 / (1.0 + Math.exp(-input));
+	}
+	
+	/**
+	 * Returns the activation of a neuron for its input, as a float.
+	 */
+	private float activateFloat(int i, float input) {
+		if (this.net.step[i])
+			return input >= 0.0f ? 1.0f : 0.0f;
+		return (float)(1.0 / (1.0 + Math.exp(-input)));
 	}
 	
 	/**
@@ -189,9 +554,15 @@ public class NeuralNetwork {
 	 * @param value value
 	 */
 	public void setNeuronValue(String name, Double value) {
-		Neuron n = this.neurons_by_name.get(name);
-		if (n != null)
-			n.setValue(value);
+		int i = this.net.getNeuronIndex(name);
+		if (i != -1) {
+			if (this.value != null)
+				this.value[i] = value;
+			else
+				this.value_f[i] = (float)(double)value;
+			if (this.net.constant[i])
+				this.folded = false;
+		}
 	}
 	
 	/**
@@ -201,9 +572,9 @@ public class NeuralNetwork {
 	 * @return value
 	 */
 	public Double getNeuronValue(String name) {
-		Neuron n = this.neurons_by_name.get(name);
-		if (n != null)
-			return n.getValue();
+		int i = this.net.getNeuronIndex(name);
+		if (i != -1)
+			return getValue(i);
 		return 0.0; //TODO: return null?
 	}
 	
@@ -214,19 +585,20 @@ public class NeuralNetwork {
 	@Override
 	public String toString() {
 		StringBuilder result = new StringBuilder();
-		for (Neuron n : this.neurons) {
-			result.append(String.format(this.names_by_neuron.get(n) + " = %.4f\n", n.getValue()));
-		}
-		for (Connection c : this.connections) {
-			String from = this.names_by_neuron.get(c.getFromNeuron());
-			String to = this.names_by_neuron.get(c.getToNeuron());
-			result.append(String.format(from + "->" + to + " = %.4f\n", c.getWeight()));
-		}
-		for (AxoConnection a : this.axoconnections){
-			String from = this.names_by_neuron.get(a.getFromNeuron());
-			String c_from = this.names_by_neuron.get(a.getToConnection().getFromNeuron());
-			String c_to = this.names_by_neuron.get(a.getToConnection().getToNeuron());
-			result.append(String.format(from + "->(" + c_from + "->" + c_to + ") = %.4f\n", a.getWeight()));
+		CompiledNetwork n = this.net;
+		for (int i = 0; i < n.neuron_count; i++) {
+			result.append(String.format(n.neuron_names[i] + " = %.4f\n", getValue(i)));
+		}
+		for (int c = 0; c < n.connection_count; c++) {
+			String from = n.neuron_names[n.conn_from[c]];
+			String to = n.neuron_names[n.conn_to[c]];
+			result.append(String.format(from + "->" + to + " = %.4f\n", getConnectionWeight(c)));
+		}
+		for (int a = 0; a < n.axo_count; a++){
+			String from = n.neuron_names[n.axo_from[a]];
+			String c_from = n.neuron_names[n.conn_from[n.axo_to[a]]];
+			String c_to = n.neuron_names[n.conn_to[n.axo_to[a]]];
+			result.append(String.format(from + "->(" + c_from + "->" + c_to + ") = %.4f\n", getAxoConnectionWeight(a)));
 		}
 		return result.toString();
 	}
@@ -3,6 +3,8 @@ package nn;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Vector;
 
 /**
@@ -18,11 +20,21 @@ public class NeuralNetworkBase {
 	public Vector<ConnectionBase> connections;
 	public Vector<AxoConnectionBase> axoconnections;
 	
+	public double mutate_max = 1.5; // largest weight change when a child inherits a connection
+	public double learning_rate = 0.005; // rate of Hebbian learning in learnable connections
+	public Precision precision = Precision.DOUBLE; // number format of new instances
+	
+	// Neurons the host sets and reads, or null if not declared
+	String[] inputs = null;
+	String[] outputs = null;
+	
+	private CompiledNetwork compiled = null;
+	
 	/**
 	 * Skeleton for a neuron instance.
 	 * 
 	 * @author Justin Morgan
-	 *
+	 * 
 	 */
 	public class NeuronBase {
 		String name;
@@ -50,7 +62,7 @@ public class NeuralNetworkBase {
 	 * Skeleton for a connection instance.
 	 * 
 	 * @author Justin Morgan
-	 *
+	 * 
 	 */
 	public class ConnectionBase {
 		public String name;
@@ -74,7 +86,7 @@ public class NeuralNetworkBase {
 			this.min_weight = min_weight;
 			this.max_weight = max_weight;
 			this.default_weight = default_weight;
-
+			
 			this.axo_connections = new Vector<Integer>();
 		}
 		
@@ -87,7 +99,7 @@ public class NeuralNetworkBase {
 	 * Skeleton for an axoaxonal connection.
 	 * 
 	 * @author Justin Morgan
-	 *
+	 * 
 	 */
 	public class AxoConnectionBase {
 		String name;
@@ -120,6 +132,39 @@ public class NeuralNetworkBase {
 		this.axoconnections = new Vector<AxoConnectionBase>();
 	}
 	
+	/**
+	 * Returns the compiled form of the network shared by all instances of the base. The base
+	 * is compiled when this is first called, so it should not be changed afterwards.
+	 * 
+	 * @return compiled network
+	 */
+	public synchronized CompiledNetwork getCompiled() {
+		if (this.compiled == null)
+			this.compiled = new CompiledNetwork(this);
+		return this.compiled;
+	}
+	
+	/**
+	 * Declares the neurons the host sets before each update and the neurons it reads after.
+	 * The compiled network then evaluates only the neurons that the outputs depend on, and
+	 * folds neurons that are never set, like a bias neuron, into constant terms. Without a
+	 * declaration every effector is an output and every neuron without input connections is
+	 * an input. Must be declared before the base is compiled; declaring the same neurons
+	 * again does nothing.
+	 * 
+	 * @param inputs names of the neurons set by the host
+	 * @param outputs names of the neurons read by the host
+	 * @throws IllegalStateException if the base was compiled with a different declaration
+	 */
+	public synchronized void setInterface(String[] inputs, String[] outputs) {
+		if (Arrays.equals(inputs, this.inputs) && Arrays.equals(outputs, this.outputs))
+			return;
+		if (this.compiled != null)
+			throw new IllegalStateException("Interface declared after the network was compiled");
+		this.inputs = inputs;
+		this.outputs = outputs;
+	}
+	
 	/**
 	 * Parses a neural network base from a text file.
 	 * 
@@ -128,6 +173,17 @@ public class NeuralNetworkBase {
 	 * @throws ParseException
 	 */
 	public void parseNetworkFromFile(BufferedReader nnFile) throws IOException, ParseException {
+		// Names of the components defined so far, so that large networks parse in linear time
+		HashMap<String,Integer> neuron_index = new HashMap<String,Integer>();
+		HashMap<String,Integer> connection_index = new HashMap<String,Integer>();
+		HashMap<String,Integer> axo_index = new HashMap<String,Integer>();
+		for (int i = 0; i < this.neurons.size(); i++)
+			neuron_index.put(this.neurons.elementAt(i).name, i);
+		for (int i = 0; i < this.connections.size(); i++)
+			connection_index.put(this.connections.elementAt(i).name, i);
+		for (int i = 0; i < this.axoconnections.size(); i++)
+			axo_index.put(this.axoconnections.elementAt(i).name, i);
+		
 		String line;
 		int line_count = 0;
 		while ((line = nnFile.readLine()) != null) {
@@ -147,6 +203,7 @@ public class NeuralNetworkBase {
 						n = new NeuronBase(parts[1], NeuronType.NORMAL, activation, null);
 					else
 						n = new NeuronBase(parts[1], NeuronType.NORMAL, activation, Double.parseDouble(parts[3]));
+					neuron_index.put(n.name, this.neurons.size());
 					this.neurons.add(n);
 				}
 				else
@@ -161,6 +218,7 @@ public class NeuralNetworkBase {
 						n = new NeuronBase(parts[1], NeuronType.SENSOR, activation, null);
 					else
 						n = new NeuronBase(parts[1], NeuronType.SENSOR, activation, Double.parseDouble(parts[3]));
+					neuron_index.put(n.name, this.neurons.size());
 					this.neurons.add(n);
 				}
 				else
@@ -175,6 +233,7 @@ public class NeuralNetworkBase {
 						n = new NeuronBase(parts[1], NeuronType.EFFECTOR, activation, null);
 					else
 						n = new NeuronBase(parts[1], NeuronType.EFFECTOR, activation, Double.parseDouble(parts[3]));
+					neuron_index.put(n.name, this.neurons.size());
 					this.neurons.add(n);
 				}
 				else
@@ -183,14 +242,7 @@ public class NeuralNetworkBase {
 			
 			else if (parts[0].equals("c")) { // Connection
 				if (parts.length == 7 || parts.length == 8) {
-					Integer from_index = null, to_index = null;
-					for (int i = 0; i < this.neurons.size(); i++) {
-						NeuronBase n = this.neurons.elementAt(i);
-						if (n.name.equals(parts[2]))
-							from_index = i;
-						else if (n.name.equals(parts[3]))
-							to_index = i;
-					}
+					Integer from_index = neuron_index.get(parts[2]), to_index = neuron_index.get(parts[3]);
 					if (from_index == null || to_index == null)
 						throw new ParseException("Neuron name not found", line_count);
 					
@@ -201,6 +253,7 @@ public class NeuralNetworkBase {
 					else
 						c = new ConnectionBase(parts[1], from_index, to_index, learnable, Double.parseDouble(parts[5]), Double.parseDouble(parts[6]), null);
 					int i = this.connections.size();
+					connection_index.put(c.name, i);
 					this.connections.add(c);
 					this.neurons.elementAt(from_index).input_conn.add(i);
 					this.neurons.elementAt(to_index).output_conn.add(i);
@@ -213,26 +266,17 @@ public class NeuralNetworkBase {
 				if (parts.length != 6)
 					throw new ParseException("Bad axoaxonal connection definition", line_count);
 				
-				Integer n_index = null;
-				for (int i = 0; i < this.neurons.size(); i++) {
-					NeuronBase n = this.neurons.elementAt(i);
-					if (n.name.equals(parts[2]))
-						n_index = i;
-				}
+				Integer n_index = neuron_index.get(parts[2]);
 				if (n_index == null)
 					throw new ParseException("Neuron name not found", line_count);
 				
-				Integer c_index = null;
-				for (int i = 0; i < this.connections.size(); i++) {
-					ConnectionBase c = this.connections.elementAt(i);
-					if (c.name.equals(parts[3]))
-						c_index = i;
-				}
+				Integer c_index = connection_index.get(parts[3]);
 				if (c_index == null)
 					throw new ParseException("Connection name not found", line_count);
 				
 				AxoConnectionBase x = new AxoConnectionBase(parts[1], n_index, c_index, Double.parseDouble(parts[4]), Double.parseDouble(parts[5]));
 				int i = this.axoconnections.size();
+				axo_index.put(x.name, i);
 				this.axoconnections.add(x);
 				this.neurons.elementAt(n_index).output_axo_conn.add(i);
 				this.connections.elementAt(c_index).axo_connections.add(i);
@@ -242,14 +286,7 @@ public class NeuralNetworkBase {
 				if (parts.length != 3)
 					throw new ParseException("Bad connection link definition", line_count);
 				
-				Integer from = null, to = null;
-				for (int i = 0; i < this.connections.size(); i++) {
-					ConnectionBase c = this.connections.elementAt(i);
-					if (c.name.equals(parts[1]))
-						from = i;
-					else if (c.name.equals(parts[2]))
-						to = i;
-				}
+				Integer from = connection_index.get(parts[1]), to = connection_index.get(parts[2]);
 				if (from == null || to == null)
 					throw new ParseException("Connection name not found", line_count);
 				
@@ -261,14 +298,7 @@ public class NeuralNetworkBase {
 				if (parts.length != 3)
 					throw new ParseException("Bad axoaxonal connection link definition", line_count);
 				
-				Integer from = null, to = null;
-				for (int i = 0; i < this.axoconnections.size(); i++) {
-					AxoConnectionBase x = this.axoconnections.elementAt(i);
-					if (x.name.equals(parts[1]))
-						from = i;
-					else if (x.name.equals(parts[2]))
-						to = i;
-				}
+				Integer from = axo_index.get(parts[1]), to = axo_index.get(parts[2]);
 				if (from == null || to == null)
 					throw new ParseException("Axoaxonal connection name not found", line_count);
 				
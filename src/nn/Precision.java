@@ -0,0 +1,16 @@
+package nn;
+
+/**
+ * Number formats a neural network instance can hold its neuron values and weights in. Double
+ * is the reference. Float halves the memory of an instance, and int8 stores each weight in a
+ * byte, in steps of a scale shared by the network, for networks that only need to be
+ * evaluated.
+ * 
+ * @author Justin Morgan
+ *
+ */
+public enum Precision {
+	DOUBLE, // values and weights as doubles
+	FLOAT, // values and weights as floats
+	INT8 // values as floats, weights as bytes; no Hebbian learning
+}